@@ -0,0 +1,39 @@
+package com.tasktorch.models;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Guards the data/ directory the benchmarks write to.
+ *
+ * TaskManager and UserManager always use data/ under the working directory, so
+ * the benchmarks must run from a scratch directory (e.g. benchmarks/). A
+ * marker file tells a benchmark-owned data/ apart from real application data,
+ * which is never overwritten.
+ */
+final class BenchmarkWorkspace {
+    private static final Path DATA_DIR = Paths.get("data");
+    private static final Path MARKER = DATA_DIR.resolve(".benchmark");
+
+    private BenchmarkWorkspace() {
+    }
+
+    /**
+     * Make sure data/ belongs to the benchmarks, creating it if needed.
+     *
+     * @throws IOException If the directory cannot be created
+     * @throws IllegalStateException If data/ holds application data
+     */
+    static void prepare() throws IOException {
+        if (Files.isDirectory(DATA_DIR) && !Files.exists(MARKER)) {
+            throw new IllegalStateException("Refusing to overwrite " + DATA_DIR.toAbsolutePath()
+                + "; run the benchmarks from the benchmarks/ directory");
+        }
+        Files.createDirectories(DATA_DIR);
+        if (!Files.exists(MARKER)) {
+            Files.createFile(MARKER);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.tasktorch.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and escaping single CSV fields and rows.
+ *
+ * Each invocation handles one row or field from a fixed pool, so the results
+ * are per row and independent of the data set size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBenchmark {
+    private static final int POOL_SIZE = 1024;
+
+    @Param({"0", "64", "512"})
+    private int notesLength;
+
+    @Param({"0.0", "0.05", "0.3"})
+    private double quoteDensity;
+
+    private TaskManager taskManager;
+    private String[] rows;
+    private String[] fields;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        taskManager = new TaskManager();
+        TaskDataGenerator generator = new TaskDataGenerator(42, notesLength, quoteDensity);
+        rows = generator.taskRows(POOL_SIZE).toArray(new String[0]);
+        List<Task> tasks = generator.tasks(POOL_SIZE);
+        fields = new String[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            fields[i] = tasks.get(i).getNotes();
+        }
+    }
+
+    @Benchmark
+    public String[] parseCSVLine() {
+        next = (next + 1) & (POOL_SIZE - 1);
+        return taskManager.parseCSVLine(rows[next]);
+    }
+
+    @Benchmark
+    public String escapeCSV() {
+        next = (next + 1) & (POOL_SIZE - 1);
+        return taskManager.escapeCSV(fields[next]);
+    }
+}
@@ -0,0 +1,68 @@
+package com.tasktorch.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter queries against the status/priority/class bitmap indexes, compared
+ * with the full scan they replace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskBitmapIndexBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int taskCount;
+
+    private TaskBitmapIndex index;
+    private List<Task> tasks;
+    private String className;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tasks = new TaskDataGenerator(42, 0, 0.0).tableTasks(taskCount);
+        index = new TaskBitmapIndex();
+        for (Task task : tasks) {
+            index.put(task);
+        }
+        className = tasks.get(0).getClassName();
+    }
+
+    @Benchmark
+    public int combinedFilter() {
+        return index.query(Status.PENDING, Priority.HIGH, className).cardinality();
+    }
+
+    @Benchmark
+    public int statusFilter() {
+        return index.query(Status.PENDING, null, null).cardinality();
+    }
+
+    @Benchmark
+    public int combinedFilterScan() {
+        int matches = 0;
+        for (Task task : tasks) {
+            if (task.getStatus() == Status.PENDING && task.getPriority() == Priority.HIGH
+                && className.equals(task.getClassName())) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public void updateTask() {
+        // Move one task between status bitmaps and back
+        Task task = tasks.get(0);
+        task.setStatus(Status.COMPLETED);
+        index.put(task);
+        task.setStatus(Status.PENDING);
+        index.put(task);
+    }
+}
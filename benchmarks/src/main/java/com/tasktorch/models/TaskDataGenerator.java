@@ -0,0 +1,135 @@
+package com.tasktorch.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Seeded generator of synthetic tasks and users for the benchmarks.
+ *
+ * The same seed always produces the same data set, so results from different
+ * runs and different commits are comparable. Notes lengths vary around the
+ * requested mean, and the quoting density controls how often titles and notes
+ * contain commas, quotes or line breaks that force CSV quoting.
+ */
+public class TaskDataGenerator {
+    private static final String[] WORDS = {
+        "read", "chapter", "problem", "set", "lab", "report", "essay", "draft",
+        "review", "quiz", "midterm", "final", "project", "slides", "notes", "outline"
+    };
+    private static final String[] SPECIALS = { ",", "\"", "\n" };
+    private static final String[] CLASSES = {
+        "CS 101", "MATH 221", "PHYS 140", "CHEM 110", "HIST 205", "ENGL 102", "BIO 150", "ECON 201"
+    };
+    private static final LocalDate FIRST_DUE_DATE = LocalDate.of(2024, 1, 1);
+    private static final int DUE_DATE_SPREAD_DAYS = 730;
+
+    private final Random random;
+    private final int notesLength;
+    private final double quoteDensity;
+
+    /**
+     * Create a generator.
+     *
+     * @param seed Random seed
+     * @param notesLength Mean notes length in characters
+     * @param quoteDensity Chance, per generated word, of a character that needs CSV quoting
+     */
+    public TaskDataGenerator(long seed, int notesLength, double quoteDensity) {
+        this.random = new Random(seed);
+        this.notesLength = notesLength;
+        this.quoteDensity = quoteDensity;
+    }
+
+    /**
+     * Generate tasks.
+     *
+     * @param count Number of tasks
+     * @return Generated tasks
+     */
+    public List<Task> tasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        Status[] statuses = Status.values();
+        Priority[] priorities = Priority.values();
+        for (int i = 0; i < count; i++) {
+            tasks.add(new Task(
+                new UUID(random.nextLong(), random.nextLong()).toString(),
+                text(8 + random.nextInt(40)),
+                FIRST_DUE_DATE.plusDays(random.nextInt(DUE_DATE_SPREAD_DAYS)),
+                CLASSES[random.nextInt(CLASSES.length)],
+                notesLength == 0 ? "" : text(random.nextInt(2 * notesLength + 1)),
+                statuses[random.nextInt(statuses.length)],
+                priorities[random.nextInt(priorities.length)],
+                random.nextInt(4) == 0 ? Long.toHexString(random.nextLong()) : ""
+            ));
+        }
+        return tasks;
+    }
+
+    /**
+     * Generate tasks stored in one shared table, as TaskRepository stores
+     * them; the indexes require this.
+     *
+     * @param count Number of tasks
+     * @return Generated tasks
+     */
+    public List<Task> tableTasks(int count) {
+        List<Task> tasks = tasks(count);
+        TaskTable table = new TaskTable(count);
+        for (Task task : tasks) {
+            task.moveTo(table, table.copyRow(task.table(), task.row()));
+        }
+        return tasks;
+    }
+
+    /**
+     * Generate CSV rows exactly as TaskManager writes them.
+     *
+     * @param count Number of rows
+     * @return Rows without line terminators
+     */
+    public List<String> taskRows(int count) {
+        TaskManager taskManager = new TaskManager();
+        List<String> rows = new ArrayList<>(count);
+        for (Task task : tasks(count)) {
+            rows.add(taskManager.formatTask(task));
+        }
+        return rows;
+    }
+
+    /**
+     * Generate users with distinct names.
+     *
+     * @param count Number of users
+     * @return Generated users
+     */
+    public List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User("user" + i, Long.toHexString(random.nextLong())));
+        }
+        return users;
+    }
+
+    /**
+     * Generate free text of roughly the given length.
+     *
+     * @param length Target length in characters
+     * @return Generated text
+     */
+    public String text(int length) {
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextDouble() < quoteDensity) {
+                sb.append(SPECIALS[random.nextInt(SPECIALS.length)]);
+            }
+        }
+        return sb.toString();
+    }
+}
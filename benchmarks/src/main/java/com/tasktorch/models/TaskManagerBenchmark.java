@@ -0,0 +1,50 @@
+package com.tasktorch.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and saving data/tasks.csv through TaskManager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TaskManagerBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int taskCount;
+
+    @Param({"0", "64", "512"})
+    private int notesLength;
+
+    @Param({"0.0", "0.05", "0.3"})
+    private double quoteDensity;
+
+    private TaskManager taskManager;
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkWorkspace.prepare();
+        taskManager = new TaskManager();
+        tasks = new TaskDataGenerator(42, notesLength, quoteDensity).tasks(taskCount);
+        if (!taskManager.saveTasks(tasks)) {
+            throw new IllegalStateException("Could not write data/tasks.csv");
+        }
+    }
+
+    @Benchmark
+    public List<Task> loadTasks() {
+        return taskManager.loadTasks();
+    }
+
+    @Benchmark
+    public boolean saveTasks() {
+        return taskManager.saveTasks(tasks);
+    }
+}
@@ -0,0 +1,58 @@
+package com.tasktorch.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text queries against the search index: a common word, a prefix
+ * still being typed, and a phrase.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskSearchIndexBenchmark {
+
+    @Param({"10000", "500000"})
+    private int taskCount;
+
+    private TaskSearchIndex index;
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tasks = new TaskDataGenerator(42, 120, 0.0).tableTasks(taskCount);
+        index = new TaskSearchIndex();
+        for (Task task : tasks) {
+            index.put(task);
+        }
+    }
+
+    @Benchmark
+    public List<Task> word() {
+        return index.search("midterm ", 200, null);
+    }
+
+    @Benchmark
+    public List<Task> prefix() {
+        return index.search("re", 200, null);
+    }
+
+    @Benchmark
+    public List<Task> phrase() {
+        return index.search("\"lab report draft\"", 200, null);
+    }
+
+    @Benchmark
+    public void updateTask() {
+        Task task = tasks.get(0);
+        task.setNotes(task.getNotes() + " x");
+        index.put(task);
+        task.setNotes(task.getNotes().substring(0, task.getNotes().length() - 2));
+        index.put(task);
+    }
+}
@@ -0,0 +1,46 @@
+package com.tasktorch.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging in through UserManager against data/users.csv.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserManagerBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int userCount;
+
+    private UserManager userManager;
+    private User lastUser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkWorkspace.prepare();
+        userManager = new UserManager();
+        List<User> users = new TaskDataGenerator(42, 0, 0.0).users(userCount);
+        userManager.saveUsers(users);
+        lastUser = users.get(users.size() - 1);
+    }
+
+    /**
+     * Worst case for a linear scan: the user is the last one in the file.
+     */
+    @Benchmark
+    public User authenticateLastUser() {
+        return userManager.authenticate(lastUser.getUsername(), lastUser.getPassword());
+    }
+
+    @Benchmark
+    public User authenticateUnknownUser() {
+        return userManager.authenticate("nobody", "wrong");
+    }
+}
@@ -1,5 +1,13 @@
 package com.tasktorch;
 
+import com.tasktorch.models.FileCommitter;
+import com.tasktorch.models.PersistenceExecutor;
+import com.tasktorch.models.ReminderScheduler;
+import com.tasktorch.models.TaskRepository;
+import com.tasktorch.models.UserStore;
+import com.tasktorch.utils.CalendarConnection;
+import com.tasktorch.utils.CalendarPullSync;
+import com.tasktorch.utils.CalendarSyncQueue;
 import com.tasktorch.utils.NavigationService;
 import com.tasktorch.utils.ThemeService;
 import javafx.application.Application;
@@ -25,6 +33,19 @@ public class TaskTorchApp extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        // Persist any edits still waiting for the background writer
+        ReminderScheduler.shutdownInstance();
+        CalendarPullSync.shutdownInstance();
+        CalendarSyncQueue.shutdownInstance();
+        CalendarConnection.shutdownInstance();
+        TaskRepository.shutdownInstance();
+        UserStore.shutdownInstance();
+        PersistenceExecutor.shutdown();
+        FileCommitter.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,191 +1,438 @@
 package com.tasktorch.controllers;
 
 import com.tasktorch.models.*;
+import com.tasktorch.utils.FxDispatcher;
 import com.tasktorch.utils.NavigationService;
+import com.tasktorch.utils.RefreshableView;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.Node;
 import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
 
 import java.net.URL;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Controller for the Calendar view.
- * Displays tasks organized by week and day.
+ * Displays tasks as a week row, a month grid or an infinitely scrolling agenda.
+ * Day cells and task rows are created once and rebound on navigation, and the
+ * weeks around the visible range are grouped in the background ahead of time.
  */
-public class CalendarController implements Initializable {
+public class CalendarController implements Initializable, RefreshableView {
     @FXML
     private VBox calendarGrid;
-    
+
     @FXML
     private Label weekLabel;
-    
+
     @FXML
     private Button prevWeekButton;
-    
+
     @FXML
     private Button nextWeekButton;
-    
+
+    @FXML
+    private ComboBox<CalendarMode> viewModeComboBox;
+
     @FXML
     private Button addTaskButton;
-    
+
     @FXML
     private Button dashboardButton;
-    
+
     @FXML
     private Button settingsButton;
-    
+
     @FXML
     private Button aboutButton;
-    
-    private TaskManager taskManager;
-    private LocalDate currentWeekStart;
-    private static final DateTimeFormatter WEEK_FORMAT = DateTimeFormatter.ofPattern("MMM d - MMM d, yyyy");
-    
+
+    /**
+     * Layouts the calendar can be shown in.
+     */
+    public enum CalendarMode {
+        WEEK("Week"),
+        MONTH("Month"),
+        AGENDA("Agenda");
+
+        private final String label;
+
+        CalendarMode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final int MONTH_WEEKS = 6;
+    private static final int MONTH_MAX_ROWS = 3;
+    private static final int AGENDA_CHUNK_DAYS = 90;
+    private static final int AGENDA_EDGE_DAYS = 14;
+    private static final int MAX_CACHED_WEEKS = 104;
+    private static final DateTimeFormatter DAY_RANGE_FORMAT = DateTimeFormatter.ofPattern("MMM d");
+    private static final DateTimeFormatter WEEK_FORMAT = DateTimeFormatter.ofPattern("MMM d, yyyy");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MMMM yyyy");
+
+    // Shared by all calendar views so navigating back and forth never leaks threads
+    private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tasktorch-calendar-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TaskRepository taskRepository;
+    private LocalDate currentDate;
+    private LocalDate today;
+    private CalendarMode mode = CalendarMode.WEEK;
+
+    // Tasks grouped by day for each week start, tagged with the repository version
+    private final Map<LocalDate, WeekBucket> weekCache = new ConcurrentHashMap<>();
+    private final Set<LocalDate> prefetching = ConcurrentHashMap.newKeySet();
+    // Weeks shown before their months were read; the view is refreshed once they are in
+    private final Set<LocalDate> waitingWeeks = ConcurrentHashMap.newKeySet();
+
+    // Scene graph for each layout, built on first use and then only rebound
+    private HBox weekRow;
+    private final List<CalendarDayCell> weekCells = new ArrayList<>();
+    private ScrollPane monthPane;
+    private final List<CalendarDayCell> monthCells = new ArrayList<>();
+    private ListView<LocalDate> agendaList;
+    private boolean extendingAgenda;
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        taskManager = new TaskManager();
-        currentWeekStart = LocalDate.now().with(DayOfWeek.MONDAY);
-        
+        taskRepository = TaskRepository.getInstance();
+        currentDate = AppClock.today();
+
         // Set up button handlers
-        addTaskButton.setOnAction(e -> {
-            NavigationService.openAddTask();
-            displayCalendar(); // Refresh after adding
-        });
+        // The navigation service refreshes this view when the dialog closes
+        addTaskButton.setOnAction(e -> NavigationService.openAddTask());
         dashboardButton.setOnAction(e -> NavigationService.navigateToDashboard());
         settingsButton.setOnAction(e -> NavigationService.openSettings());
         aboutButton.setOnAction(e -> NavigationService.openAbout());
-        
-        prevWeekButton.setOnAction(e -> {
-            currentWeekStart = currentWeekStart.minusWeeks(1);
-            displayCalendar();
-        });
-        
-        nextWeekButton.setOnAction(e -> {
-            currentWeekStart = currentWeekStart.plusWeeks(1);
+
+        prevWeekButton.setOnAction(e -> navigate(-1));
+        nextWeekButton.setOnAction(e -> navigate(1));
+
+        viewModeComboBox.getItems().addAll(CalendarMode.values());
+        viewModeComboBox.setValue(mode);
+        viewModeComboBox.setOnAction(e -> {
+            mode = viewModeComboBox.getValue();
             displayCalendar();
         });
-        
+
         displayCalendar();
     }
-    
+
+    /**
+     * Rebind the calendar when the cached view is shown again.
+     */
+    @Override
+    public void refresh() {
+        displayCalendar();
+    }
+
     /**
-     * Display the calendar for the current week.
+     * Move the calendar backwards or forwards by one page of the current layout.
+     */
+    private void navigate(int direction) {
+        if (mode == CalendarMode.MONTH) {
+            currentDate = currentDate.plusMonths(direction);
+        } else {
+            currentDate = currentDate.plusWeeks(direction);
+        }
+        displayCalendar();
+        if (mode == CalendarMode.AGENDA) {
+            scrollAgendaTo(currentDate.with(DayOfWeek.MONDAY));
+        }
+    }
+
+    /**
+     * Display the calendar in the current layout.
      */
     private void displayCalendar() {
-        calendarGrid.getChildren().clear();
-        
-        // Update week label
-        LocalDate weekEnd = currentWeekStart.plusDays(6);
-        weekLabel.setText(currentWeekStart.format(WEEK_FORMAT) + " - " + weekEnd.format(WEEK_FORMAT));
-        
-        // Load all tasks
-        List<Task> allTasks = taskManager.loadTasks();
-        
-        // Create a row for each day of the week
-        HBox weekRow = new HBox(10);
-        weekRow.setStyle("-fx-spacing: 10;");
-        
+        today = AppClock.today();
+        if (weekCache.size() > MAX_CACHED_WEEKS) {
+            weekCache.clear();
+        }
+
+        switch (mode) {
+            case MONTH:
+                displayMonth();
+                break;
+            case AGENDA:
+                displayAgenda();
+                break;
+            default:
+                displayWeek();
+        }
+    }
+
+    /**
+     * Show the seven days of the current week.
+     */
+    private void displayWeek() {
+        LocalDate weekStart = currentDate.with(DayOfWeek.MONDAY);
+        LocalDate weekEnd = weekStart.plusDays(6);
+        weekLabel.setText(weekStart.format(DAY_RANGE_FORMAT) + " - " + weekEnd.format(WEEK_FORMAT));
+        prevWeekButton.setText("← Previous Week");
+        nextWeekButton.setText("Next Week →");
+
+        if (weekRow == null) {
+            weekRow = new HBox(10);
+            for (int i = 0; i < 7; i++) {
+                CalendarDayCell cell = new CalendarDayCell(0, this::toggleTaskStatus, this::openEditTask);
+                cell.getStyleClass().add("calendar-week-day");
+                weekCells.add(cell);
+            }
+            weekRow.getChildren().addAll(weekCells);
+        }
+        setContent(weekRow);
+
         for (int i = 0; i < 7; i++) {
-            LocalDate day = currentWeekStart.plusDays(i);
-            VBox dayBox = createDayBox(day, allTasks);
-            weekRow.getChildren().add(dayBox);
-        }
-        
-        calendarGrid.getChildren().add(weekRow);
-    }
-    
-    /**
-     * Create a VBox for a specific day with its tasks.
-     */
-    private VBox createDayBox(LocalDate day, List<Task> allTasks) {
-        VBox dayBox = new VBox(5);
-        dayBox.getStyleClass().add("calendar-day");
-        dayBox.setStyle("-fx-min-width: 120; -fx-pref-width: 120;");
-        
-        // Day header
-        Label dayLabel = new Label(day.format(DateTimeFormatter.ofPattern("EEE M/d")));
-        dayLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
-        dayBox.getChildren().add(dayLabel);
-        
-        // Find tasks for this day
-        List<Task> dayTasks = new ArrayList<>();
-        for (Task task : allTasks) {
-            if (task.getDueDate() != null && task.getDueDate().equals(day)) {
-                dayTasks.add(task);
+            LocalDate day = weekStart.plusDays(i);
+            weekCells.get(i).show(day, tasksFor(day), today, false);
+        }
+
+        prefetchWeeks(weekStart.minusWeeks(1), 1);
+        prefetchWeeks(weekStart.plusWeeks(1), 1);
+    }
+
+    /**
+     * Show a six-week grid covering the current month.
+     */
+    private void displayMonth() {
+        YearMonth month = YearMonth.from(currentDate);
+        LocalDate gridStart = month.atDay(1).with(DayOfWeek.MONDAY);
+        weekLabel.setText(month.format(MONTH_FORMAT));
+        prevWeekButton.setText("← Previous Month");
+        nextWeekButton.setText("Next Month →");
+
+        if (monthPane == null) {
+            GridPane grid = new GridPane();
+            grid.setHgap(5);
+            grid.setVgap(5);
+            for (int i = 0; i < MONTH_WEEKS * 7; i++) {
+                CalendarDayCell cell = new CalendarDayCell(MONTH_MAX_ROWS, this::toggleTaskStatus, this::openEditTask);
+                cell.getStyleClass().add("calendar-month-day");
+                monthCells.add(cell);
+                grid.add(cell, i % 7, i / 7);
             }
+            monthPane = new ScrollPane(grid);
+            monthPane.setFitToWidth(true);
+            VBox.setVgrow(monthPane, javafx.scene.layout.Priority.ALWAYS);
         }
-        
-        // Add tasks to day box
-        for (Task task : dayTasks) {
-            HBox taskBox = createTaskBox(task);
-            dayBox.getChildren().add(taskBox);
+        setContent(monthPane);
+
+        for (int i = 0; i < monthCells.size(); i++) {
+            LocalDate day = gridStart.plusDays(i);
+            monthCells.get(i).show(day, tasksFor(day), today, !YearMonth.from(day).equals(month));
         }
-        
-        return dayBox;
+
+        // Warm the grids of the neighbouring months
+        prefetchWeeks(gridStart.minusWeeks(MONTH_WEEKS), MONTH_WEEKS);
+        prefetchWeeks(gridStart.plusWeeks(MONTH_WEEKS), MONTH_WEEKS);
     }
-    
+
     /**
-     * Create an HBox for a task with status dot.
+     * Show the scrolling agenda; rows are provided on demand by the ListView.
      */
-    private HBox createTaskBox(Task task) {
-        HBox taskBox = new HBox(5);
-        taskBox.setStyle("-fx-alignment: center-left; -fx-padding: 3px;");
-        
-        // Status dot
-        Circle statusDot = new Circle(5);
-        switch (task.getStatus()) {
-            case PENDING:
-                statusDot.setFill(Color.web("#F44336")); // Red
-                break;
-            case IN_PROGRESS:
-                statusDot.setFill(Color.web("#FFC107")); // Yellow
-                break;
-            case COMPLETED:
-                statusDot.setFill(Color.web("#4CAF50")); // Green
-                break;
+    private void displayAgenda() {
+        weekLabel.setText("Agenda");
+        prevWeekButton.setText("← Previous Week");
+        nextWeekButton.setText("Next Week →");
+
+        if (agendaList == null) {
+            agendaList = new ListView<>();
+            agendaList.getStyleClass().add("task-list");
+            agendaList.setCellFactory(list -> new AgendaCell());
+            VBox.setVgrow(agendaList, javafx.scene.layout.Priority.ALWAYS);
+            resetAgenda(currentDate.with(DayOfWeek.MONDAY));
+        } else {
+            // Rebind the visible cells only
+            agendaList.refresh();
+        }
+        setContent(agendaList);
+    }
+
+    /**
+     * Fill the agenda with a window of days centred on a date.
+     */
+    private void resetAgenda(LocalDate center) {
+        List<LocalDate> days = new ArrayList<>(2 * AGENDA_CHUNK_DAYS);
+        LocalDate start = center.minusDays(AGENDA_CHUNK_DAYS);
+        for (int i = 0; i < 2 * AGENDA_CHUNK_DAYS; i++) {
+            days.add(start.plusDays(i));
         }
-        
-        // Task label
-        Label taskLabel = new Label(task.getTitle());
-        taskLabel.setStyle("-fx-font-size: 11px;");
-        
-        // Apply strikethrough for completed tasks
-        if (task.getStatus() == Status.COMPLETED) {
-            taskLabel.setStyle("-fx-font-size: 11px; -fx-text-fill: #9E9E9E; -fx-strikethrough: true; -fx-opacity: 0.7;");
-        }
-        
-        taskBox.getChildren().addAll(statusDot, taskLabel);
-        
-        // Handle clicks
-        taskBox.setOnMouseClicked(e -> {
-            if (e.getClickCount() == 1) {
-                toggleTaskStatus(task);
-            } else if (e.getClickCount() == 2) {
-                NavigationService.openEditTask(task);
-                displayCalendar(); // Refresh after editing
+        agendaList.getItems().setAll(days);
+        agendaList.scrollTo(AGENDA_CHUNK_DAYS);
+    }
+
+    /**
+     * Scroll the agenda so a day is at the top, extending the window if needed.
+     */
+    private void scrollAgendaTo(LocalDate day) {
+        List<LocalDate> days = agendaList.getItems();
+        long index = ChronoUnit.DAYS.between(days.get(0), day);
+        if (index < 0 || index >= days.size()) {
+            resetAgenda(day);
+        } else {
+            agendaList.scrollTo((int) index);
+        }
+    }
+
+    /**
+     * Grow the agenda by another chunk of days when a cell near either end is shown.
+     */
+    private void extendAgendaIfNeeded(int index) {
+        if (extendingAgenda) {
+            return;
+        }
+        int size = agendaList.getItems().size();
+        if (index < AGENDA_EDGE_DAYS) {
+            extendingAgenda = true;
+            // Changing the items while a cell is being updated is not allowed
+            Platform.runLater(() -> {
+                LocalDate first = agendaList.getItems().get(0);
+                List<LocalDate> days = new ArrayList<>(AGENDA_CHUNK_DAYS);
+                for (int i = AGENDA_CHUNK_DAYS; i > 0; i--) {
+                    days.add(first.minusDays(i));
+                }
+                agendaList.getItems().addAll(0, days);
+                agendaList.scrollTo(index + AGENDA_CHUNK_DAYS);
+                extendingAgenda = false;
+            });
+        } else if (index >= size - AGENDA_EDGE_DAYS) {
+            extendingAgenda = true;
+            Platform.runLater(() -> {
+                LocalDate last = agendaList.getItems().get(agendaList.getItems().size() - 1);
+                List<LocalDate> days = new ArrayList<>(AGENDA_CHUNK_DAYS);
+                for (int i = 1; i <= AGENDA_CHUNK_DAYS; i++) {
+                    days.add(last.plusDays(i));
+                }
+                agendaList.getItems().addAll(days);
+                extendingAgenda = false;
+            });
+        }
+    }
+
+    /**
+     * Make a layout the only child of the calendar area, if it is not already.
+     */
+    private void setContent(Node content) {
+        if (calendarGrid.getChildren().size() != 1 || calendarGrid.getChildren().get(0) != content) {
+            calendarGrid.getChildren().setAll(content);
+        }
+    }
+
+    /**
+     * Get the tasks due on a day from the week cache. A week whose months
+     * are not in memory yet is read in the background and shown once it is
+     * in; until then the day shows what the cache had, if anything.
+     */
+    private List<Task> tasksFor(LocalDate day) {
+        LocalDate weekStart = day.with(DayOfWeek.MONDAY);
+        WeekBucket bucket = weekCache.get(weekStart);
+        if (bucket == null || bucket.version != taskRepository.getVersion()) {
+            if (!taskRepository.isLoaded(weekStart, weekStart.plusDays(6))) {
+                loadWeekLater(weekStart);
+                return bucket != null ? bucket.byDay.getOrDefault(day, List.of()) : List.of();
             }
-        });
-        
-        return taskBox;
+            bucket = loadWeek(weekStart);
+            weekCache.put(weekStart, bucket);
+        }
+        return bucket.byDay.getOrDefault(day, List.of());
+    }
+
+    /**
+     * Read a week's months and group its tasks in the background, then
+     * refresh the view.
+     */
+    private void loadWeekLater(LocalDate weekStart) {
+        waitingWeeks.add(weekStart);
+        if (prefetching.add(weekStart)) {
+            PREFETCHER.execute(() -> prefetchWeek(weekStart));
+        }
+    }
+
+    /**
+     * Group a week's tasks by day with a single range query. Months not in
+     * memory yet are read first, so call this off the FX thread unless the
+     * week is loaded.
+     */
+    private WeekBucket loadWeek(LocalDate weekStart) {
+        taskRepository.loadMonths(weekStart, weekStart.plusDays(6));
+        // Read the version first so a concurrent change can only make the bucket look stale
+        long version = taskRepository.getVersion();
+        Map<LocalDate, List<Task>> byDay = new HashMap<>();
+        for (Task task : taskRepository.tasksBetween(weekStart, weekStart.plusDays(6))) {
+            byDay.computeIfAbsent(task.getDueDate(), d -> new ArrayList<>()).add(task);
+        }
+        return new WeekBucket(version, byDay);
+    }
+
+    /**
+     * Group upcoming weeks in the background so paging to them is instant.
+     */
+    private void prefetchWeeks(LocalDate firstWeekStart, int weeks) {
+        long version = taskRepository.getVersion();
+        for (int i = 0; i < weeks; i++) {
+            LocalDate weekStart = firstWeekStart.plusWeeks(i);
+            WeekBucket cached = weekCache.get(weekStart);
+            if ((cached == null || cached.version != version) && prefetching.add(weekStart)) {
+                PREFETCHER.execute(() -> prefetchWeek(weekStart));
+            }
+        }
     }
-    
+
+    /**
+     * Group a week on the prefetch thread, refreshing the view if it is
+     * waiting for that week.
+     */
+    private void prefetchWeek(LocalDate weekStart) {
+        try {
+            weekCache.put(weekStart, loadWeek(weekStart));
+        } finally {
+            prefetching.remove(weekStart);
+        }
+        if (waitingWeeks.remove(weekStart)) {
+            FxDispatcher.requestRefresh(this);
+        }
+    }
+
+    /**
+     * Open a task for editing; the view is refreshed when the dialog closes.
+     */
+    private void openEditTask(Task task) {
+        NavigationService.openEditTask(task);
+    }
+
     /**
      * Toggle task status.
      */
     private void toggleTaskStatus(Task task) {
         Status currentStatus = task.getStatus();
         Status newStatus;
-        
+
         switch (currentStatus) {
             case PENDING:
                 newStatus = Status.IN_PROGRESS;
@@ -199,21 +446,49 @@ public class CalendarController implements Initializable {
             default:
                 newStatus = Status.PENDING;
         }
-        
-        task.setStatus(newStatus);
-        
-        // Save changes
-        List<Task> allTasks = taskManager.loadTasks();
-        for (Task t : allTasks) {
-            if (t.getTaskId().equals(task.getTaskId())) {
-                t.setStatus(newStatus);
-                break;
+
+        // Update the shared repository; it persists the change in the background
+        // and its change listener schedules a coalesced refresh of this view
+        taskRepository.setStatus(task.getTaskId(), newStatus);
+    }
+
+    /**
+     * Tasks of one week grouped by due date.
+     */
+    private static final class WeekBucket {
+        private final long version;
+        private final Map<LocalDate, List<Task>> byDay;
+
+        WeekBucket(long version, Map<LocalDate, List<Task>> byDay) {
+            this.version = version;
+            this.byDay = byDay;
+        }
+    }
+
+    /**
+     * Agenda row; the ListView recycles these cells while scrolling.
+     */
+    private class AgendaCell extends ListCell<LocalDate> {
+        private final CalendarDayCell dayCell =
+            new CalendarDayCell(0, CalendarController.this::toggleTaskStatus, CalendarController.this::openEditTask);
+
+        AgendaCell() {
+            dayCell.getStyleClass().add("agenda-day");
+        }
+
+        @Override
+        protected void updateItem(LocalDate day, boolean empty) {
+            super.updateItem(day, empty);
+
+            if (empty || day == null) {
+                setGraphic(null);
+            } else {
+                dayCell.show(day, tasksFor(day), today, false);
+                setGraphic(dayCell);
+                LocalDate weekStart = day.with(DayOfWeek.MONDAY);
+                prefetchWeeks(weekStart.minusWeeks(1), 3);
+                extendAgendaIfNeeded(getIndex());
             }
         }
-        taskManager.saveTasks(allTasks);
-        
-        // Refresh calendar
-        displayCalendar();
     }
 }
-
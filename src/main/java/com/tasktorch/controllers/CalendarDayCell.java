@@ -0,0 +1,149 @@
+package com.tasktorch.controllers;
+
+import com.tasktorch.models.Status;
+import com.tasktorch.models.Task;
+import javafx.css.PseudoClass;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.shape.Circle;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A reusable calendar cell showing one day and its tasks.
+ *
+ * The cell keeps a pool of task rows and rebinds them when it is moved to a
+ * different day, so paging through the calendar updates text and pseudo-class
+ * state instead of rebuilding the scene graph.
+ */
+public class CalendarDayCell extends VBox {
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("EEE M/d");
+    private static final PseudoClass PENDING = PseudoClass.getPseudoClass("pending");
+    private static final PseudoClass IN_PROGRESS = PseudoClass.getPseudoClass("in-progress");
+    private static final PseudoClass COMPLETED = PseudoClass.getPseudoClass("completed");
+    private static final PseudoClass TODAY = PseudoClass.getPseudoClass("today");
+    private static final PseudoClass OUTSIDE_MONTH = PseudoClass.getPseudoClass("outside-month");
+
+    private final Label dayLabel = new Label();
+    private final Label moreLabel = new Label();
+    private final List<TaskRow> rows = new ArrayList<>();
+    private final int maxRows;
+    private final Consumer<Task> onClick;
+    private final Consumer<Task> onDoubleClick;
+    private LocalDate day;
+    private int shownRows;
+    private boolean moreShown;
+
+    /**
+     * Constructor for CalendarDayCell.
+     *
+     * @param maxRows Maximum number of task rows to show (0 for no limit)
+     * @param onClick Called when a task row is clicked once
+     * @param onDoubleClick Called when a task row is double-clicked
+     */
+    public CalendarDayCell(int maxRows, Consumer<Task> onClick, Consumer<Task> onDoubleClick) {
+        super(5);
+        this.maxRows = maxRows;
+        this.onClick = onClick;
+        this.onDoubleClick = onDoubleClick;
+        getStyleClass().add("calendar-day");
+        dayLabel.getStyleClass().add("calendar-day-header");
+        moreLabel.getStyleClass().add("calendar-day-more");
+        getChildren().add(dayLabel);
+    }
+
+    /**
+     * Bind the cell to a day and its tasks, reusing existing rows.
+     *
+     * @param day Day to display
+     * @param tasks Tasks due on that day
+     * @param today Today's date, highlighted when it matches
+     * @param outsideMonth True to dim the cell in a month grid
+     */
+    public void show(LocalDate day, List<Task> tasks, LocalDate today, boolean outsideMonth) {
+        if (!day.equals(this.day)) {
+            this.day = day;
+            dayLabel.setText(day.format(DAY_FORMAT));
+        }
+        pseudoClassStateChanged(TODAY, day.equals(today));
+        pseudoClassStateChanged(OUTSIDE_MONTH, outsideMonth);
+
+        int visible = maxRows > 0 ? Math.min(tasks.size(), maxRows) : tasks.size();
+        while (rows.size() < visible) {
+            rows.add(new TaskRow());
+        }
+        for (int i = 0; i < visible; i++) {
+            rows.get(i).bind(tasks.get(i));
+        }
+
+        // Only touch the child list when the number of rows changes
+        if (shownRows != visible) {
+            getChildren().remove(1, getChildren().size());
+            getChildren().addAll(rows.subList(0, visible));
+            shownRows = visible;
+            moreShown = false;
+        }
+        int hidden = tasks.size() - visible;
+        if (hidden > 0) {
+            moreLabel.setText("+" + hidden + " more");
+            if (!moreShown) {
+                getChildren().add(moreLabel);
+                moreShown = true;
+            }
+        } else if (moreShown) {
+            getChildren().remove(moreLabel);
+            moreShown = false;
+        }
+    }
+
+    /**
+     * Get the day currently shown by this cell.
+     *
+     * @return The bound day, or null if the cell has not been shown yet
+     */
+    public LocalDate getDay() {
+        return day;
+    }
+
+    /**
+     * A single task line with a status dot; rebound rather than recreated.
+     */
+    private class TaskRow extends HBox {
+        private final Circle statusDot = new Circle(5);
+        private final Label titleLabel = new Label();
+        private Task task;
+
+        TaskRow() {
+            super(5);
+            getStyleClass().add("task-row");
+            statusDot.getStyleClass().add("status-dot");
+            getChildren().addAll(statusDot, titleLabel);
+
+            // Handle clicks for whichever task the row currently shows
+            setOnMouseClicked(e -> {
+                if (task == null) {
+                    return;
+                }
+                if (e.getClickCount() == 1) {
+                    onClick.accept(task);
+                } else if (e.getClickCount() == 2) {
+                    onDoubleClick.accept(task);
+                }
+            });
+        }
+
+        void bind(Task task) {
+            this.task = task;
+            titleLabel.setText(task.getTitle());
+            Status status = task.getStatus();
+            pseudoClassStateChanged(PENDING, status == Status.PENDING);
+            pseudoClassStateChanged(IN_PROGRESS, status == Status.IN_PROGRESS);
+            pseudoClassStateChanged(COMPLETED, status == Status.COMPLETED);
+        }
+    }
+}
@@ -1,30 +1,52 @@
 package com.tasktorch.controllers;
 
 import com.tasktorch.models.*;
+import com.tasktorch.utils.FxDispatcher;
 import com.tasktorch.utils.NavigationService;
+import com.tasktorch.utils.RefreshableView;
+import javafx.animation.PauseTransition;
+import javafx.css.PseudoClass;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
-import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.util.Callback;
+import javafx.util.Duration;
 
 import java.net.URL;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 /**
  * Controller for the Dashboard view.
  * Displays upcoming tasks and allows navigation to other views.
  */
-public class DashboardController implements Initializable {
+public class DashboardController implements Initializable, RefreshableView {
     @FXML
     private ListView<Task> upcomingTasksList;
     
+    @FXML
+    private Label listTitle;
+    
+    @FXML
+    private TextField searchField;
+    
+    @FXML
+    private CheckBox archiveCheckBox;
+    
+    @FXML
+    private ComboBox<String> statusFilter;
+    
+    @FXML
+    private ComboBox<String> priorityFilter;
+    
+    @FXML
+    private ComboBox<String> classFilter;
+    
     @FXML
     private Button addTaskButton;
     
@@ -37,12 +59,26 @@ public class DashboardController implements Initializable {
     @FXML
     private Button aboutButton;
     
-    private TaskManager taskManager;
-    private List<Task> upcomingTasks;
+    private static final String ALL_STATUSES = "All statuses";
+    private static final String ALL_PRIORITIES = "All priorities";
+    private static final String ALL_CLASSES = "All classes";
+    private static final int SEARCH_LIMIT = 200;
+    private static final long SEARCH_DELAY_MS = 250;
+    
+    private TaskRepository taskRepository;
+    private boolean updatingFilters;
+    // Ids of the archived tasks shown in the search results
+    private final Set<String> archivedIds = new HashSet<>();
+    // Bumped on every reload, so background results of an older query are dropped
+    private long reloads;
+    // Restarted on every keystroke; the search runs once typing pauses
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(SEARCH_DELAY_MS));
+    // Read by every cell; set once per refresh (and so once per day at midnight)
+    private long todayEpochDay;
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        taskManager = new TaskManager();
+        taskRepository = TaskRepository.getInstance();
         
         // Set up button handlers
         addTaskButton.setOnAction(e -> NavigationService.openAddTask());
@@ -50,6 +86,27 @@ public class DashboardController implements Initializable {
         settingsButton.setOnAction(e -> NavigationService.openSettings());
         aboutButton.setOnAction(e -> NavigationService.openAbout());
         
+        // Filters: the first entry of each means "any"
+        statusFilter.getItems().add(ALL_STATUSES);
+        for (Status status : Status.values()) {
+            statusFilter.getItems().add(displayName(status.name()));
+        }
+        priorityFilter.getItems().add(ALL_PRIORITIES);
+        for (Priority priority : Priority.values()) {
+            priorityFilter.getItems().add(displayName(priority.name()));
+        }
+        classFilter.getItems().add(ALL_CLASSES);
+        statusFilter.getSelectionModel().selectFirst();
+        priorityFilter.getSelectionModel().selectFirst();
+        classFilter.getSelectionModel().selectFirst();
+        statusFilter.setOnAction(e -> loadUpcomingTasks());
+        priorityFilter.setOnAction(e -> loadUpcomingTasks());
+        classFilter.setOnAction(e -> loadUpcomingTasks());
+        // Search as the user types; an empty box shows upcoming tasks again
+        searchDelay.setOnFinished(e -> loadUpcomingTasks());
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+        archiveCheckBox.setOnAction(e -> loadUpcomingTasks());
+        
         // Load and display tasks
         loadUpcomingTasks();
         
@@ -63,7 +120,11 @@ public class DashboardController implements Initializable {
         
         // Handle task clicks
         upcomingTasksList.setOnMouseClicked(e -> {
-            if (e.getClickCount() == 1) {
+            Task clicked = upcomingTasksList.getSelectionModel().getSelectedItem();
+            if (clicked != null && archivedIds.contains(clicked.getTaskId())) {
+                // Archived results are read-only; a click brings the task back
+                restoreArchived(clicked);
+            } else if (e.getClickCount() == 1) {
                 Task selected = upcomingTasksList.getSelectionModel().getSelectedItem();
                 if (selected != null) {
                     toggleTaskStatus(selected);
@@ -71,41 +132,125 @@ public class DashboardController implements Initializable {
             } else if (e.getClickCount() == 2) {
                 Task selected = upcomingTasksList.getSelectionModel().getSelectedItem();
                 if (selected != null) {
+                    // The navigation service refreshes this view when the dialog closes
                     NavigationService.openEditTask(selected);
-                    loadUpcomingTasks(); // Refresh after editing
                 }
             }
         });
     }
     
     /**
-     * Load upcoming tasks (within 2 weeks).
+     * Reload the task list when the cached view is shown again.
+     */
+    @Override
+    public void refresh() {
+        loadUpcomingTasks();
+    }
+    
+    /**
+     * Load upcoming tasks (within 2 weeks), or the search results if there
+     * is search text.
      */
     private void loadUpcomingTasks() {
-        List<Task> allTasks = taskManager.loadTasks();
-        LocalDate today = LocalDate.now();
+        if (updatingFilters) {
+            return;
+        }
+        updateClassFilter();
+        long reload = ++reloads;
+        archivedIds.clear();
+        LocalDate today = AppClock.today();
+        todayEpochDay = today.toEpochDay();
         LocalDate twoWeeksLater = today.plusWeeks(2);
         LocalDate twoWeeksAgo = today.minusWeeks(2);
         
-        upcomingTasks = new ArrayList<>();
-        for (Task task : allTasks) {
-            LocalDate dueDate = task.getDueDate();
-            if (dueDate != null && 
-                (dueDate.isAfter(twoWeeksAgo) || dueDate.isEqual(twoWeeksAgo)) &&
-                (dueDate.isBefore(twoWeeksLater) || dueDate.isEqual(twoWeeksLater))) {
-                upcomingTasks.add(task);
+        // The date index returns the window already sorted by due date;
+        // the repository's bitmap indexes apply the filters
+        int statusIndex = statusFilter.getSelectionModel().getSelectedIndex();
+        int priorityIndex = priorityFilter.getSelectionModel().getSelectedIndex();
+        String className = classFilter.getValue();
+        Status status = statusIndex > 0 ? Status.values()[statusIndex - 1] : null;
+        Priority priority = priorityIndex > 0 ? Priority.values()[priorityIndex - 1] : null;
+        String classFilterValue = className != null && !ALL_CLASSES.equals(className) ? className : null;
+        String query = searchField.getText();
+        if (query != null && !query.isBlank()) {
+            // Search every task, not just the two-week window, best matches first.
+            // The first search may read every month's partition, so it runs in the background
+            listTitle.setText("Search Results");
+            boolean withArchive = archiveCheckBox.isSelected();
+            PersistenceExecutor.submit(() -> {
+                taskRepository.loadAllMonths();
+                return taskRepository.search(query, SEARCH_LIMIT, status, priority, classFilterValue);
+            }).thenAcceptAsync(results -> {
+                if (reload != reloads) {
+                    return;
+                }
+                upcomingTasksList.getItems().setAll(results);
+                if (withArchive) {
+                    searchArchive(reload, query, status, priority, classFilterValue);
+                }
+            }, FxDispatcher.FX_THREAD);
+        } else {
+            listTitle.setText("Upcoming Tasks");
+            if (taskRepository.isLoaded(twoWeeksAgo, twoWeeksLater)) {
+                upcomingTasksList.getItems().setAll(taskRepository.tasksBetween(twoWeeksAgo, twoWeeksLater,
+                    status, priority, classFilterValue));
+            } else {
+                // Read the window's months in the background and show them once they are in
+                upcomingTasksList.getItems().clear();
+                PersistenceExecutor.run(() -> taskRepository.loadMonths(twoWeeksAgo, twoWeeksLater))
+                    .thenRun(() -> FxDispatcher.requestRefresh(this));
             }
         }
-        
-        // Sort by due date
-        upcomingTasks.sort((t1, t2) -> {
-            if (t1.getDueDate() == null && t2.getDueDate() == null) return 0;
-            if (t1.getDueDate() == null) return 1;
-            if (t2.getDueDate() == null) return -1;
-            return t1.getDueDate().compareTo(t2.getDueDate());
-        });
-        
-        upcomingTasksList.getItems().setAll(upcomingTasks);
+    }
+    
+    /**
+     * Read matching archived tasks in the background and append them to the
+     * search results, unless the list was reloaded in the meantime.
+     */
+    private void searchArchive(long reload, String query, Status status, Priority priority, String className) {
+        PersistenceExecutor.submit(() -> taskRepository.searchArchive(query, SEARCH_LIMIT, status, priority, className))
+            .thenAcceptAsync(archived -> {
+                if (reload != reloads) {
+                    return;
+                }
+                for (Task task : archived) {
+                    archivedIds.add(task.getTaskId());
+                }
+                upcomingTasksList.getItems().addAll(archived);
+            }, FxDispatcher.FX_THREAD);
+    }
+    
+    /**
+     * Move an archived task back into the working set; the repository's
+     * change listener then refreshes this view.
+     */
+    private void restoreArchived(Task task) {
+        PersistenceExecutor.run(() -> taskRepository.restoreArchived(task.getTaskId()));
+    }
+    
+    /**
+     * Offer the class names currently in use, keeping the selection.
+     */
+    private void updateClassFilter() {
+        List<String> classNames = taskRepository.getClassNames();
+        if (classFilter.getItems().size() == classNames.size() + 1
+            && classFilter.getItems().subList(1, classFilter.getItems().size()).equals(classNames)) {
+            return;
+        }
+        String selected = classFilter.getValue();
+        updatingFilters = true;
+        classFilter.getItems().setAll(ALL_CLASSES);
+        classFilter.getItems().addAll(classNames);
+        classFilter.setValue(classFilter.getItems().contains(selected) ? selected : ALL_CLASSES);
+        updatingFilters = false;
+    }
+    
+    /**
+     * Turn an enum constant name such as IN_PROGRESS into "In progress".
+     */
+    private static String displayName(String name) {
+        String words = name.replace('_', ' ').toLowerCase();
+        return Character.toUpperCase(words.charAt(0)) + words.substring(1);
     }
     
     /**
@@ -129,26 +274,33 @@ public class DashboardController implements Initializable {
                 newStatus = Status.PENDING;
         }
         
-        task.setStatus(newStatus);
-        
-        // Save changes
-        List<Task> allTasks = taskManager.loadTasks();
-        for (Task t : allTasks) {
-            if (t.getTaskId().equals(task.getTaskId())) {
-                t.setStatus(newStatus);
-                break;
-            }
-        }
-        taskManager.saveTasks(allTasks);
-        
-        // Refresh display
-        loadUpcomingTasks();
+        // Update the shared repository; it persists the change in the background
+        // and its change listener schedules a coalesced refresh of this view
+        taskRepository.setStatus(task.getTaskId(), newStatus);
     }
     
     /**
      * Custom ListCell for displaying tasks with status dots.
+     * The graphic is built once per cell; updates only change text and
+     * pseudo-class state so scrolling does not rebuild nodes or reparse CSS.
      */
     private class TaskListCell extends ListCell<Task> {
+        private static final PseudoClass PENDING = PseudoClass.getPseudoClass("pending");
+        private static final PseudoClass IN_PROGRESS = PseudoClass.getPseudoClass("in-progress");
+        private static final PseudoClass COMPLETED = PseudoClass.getPseudoClass("completed");
+        private static final PseudoClass OVERDUE = PseudoClass.getPseudoClass("overdue");
+        
+        private final HBox hbox = new HBox(10);
+        private final Circle statusDot = new Circle(6);
+        private final Label taskLabel = new Label();
+        private final StringBuilder text = new StringBuilder();
+        
+        TaskListCell() {
+            hbox.getStyleClass().add("task-row");
+            statusDot.getStyleClass().add("status-dot");
+            hbox.getChildren().addAll(statusDot, taskLabel);
+        }
+        
         @Override
         protected void updateItem(Task task, boolean empty) {
             super.updateItem(task, empty);
@@ -156,47 +308,35 @@ public class DashboardController implements Initializable {
             if (empty || task == null) {
                 setText(null);
                 setGraphic(null);
-            } else {
-                HBox hbox = new HBox(10);
-                
-                // Status dot
-                Circle statusDot = new Circle(6);
-                switch (task.getStatus()) {
-                    case PENDING:
-                        statusDot.setFill(Color.web("#F44336")); // Red
-                        break;
-                    case IN_PROGRESS:
-                        statusDot.setFill(Color.web("#FFC107")); // Yellow
-                        break;
-                    case COMPLETED:
-                        statusDot.setFill(Color.web("#4CAF50")); // Green
-                        break;
-                }
-                
-                // Task text
-                String taskText = task.getTitle() + " - " + task.getClassName();
-                if (task.getDueDate() != null) {
-                    long days = ChronoUnit.DAYS.between(LocalDate.now(), task.getDueDate());
-                    if (days < 0) {
-                        taskText += " (" + Math.abs(days) + " days overdue)";
-                    } else if (days == 0) {
-                        taskText += " (Due today)";
-                    } else {
-                        taskText += " (" + days + " days)";
-                    }
-                }
-                
-                Label taskLabel = new Label(taskText);
-                
-                // Apply strikethrough for completed tasks
-                if (task.getStatus() == Status.COMPLETED) {
-                    taskLabel.setStyle("-fx-text-fill: #9E9E9E; -fx-strikethrough: true; -fx-opacity: 0.7;");
+                return;
+            }
+            
+            Status status = task.getStatus();
+            long days = Long.MIN_VALUE;
+            
+            // Task text
+            text.setLength(0);
+            text.append(task.getTitle()).append(" - ").append(task.getClassName());
+            if (archivedIds.contains(task.getTaskId())) {
+                text.append(" [archived]");
+            }
+            if (task.getDueDate() != null) {
+                days = task.getDueDate().toEpochDay() - todayEpochDay;
+                if (days < 0) {
+                    text.append(" (").append(-days).append(" days overdue)");
+                } else if (days == 0) {
+                    text.append(" (Due today)");
+                } else {
+                    text.append(" (").append(days).append(" days)");
                 }
-                
-                hbox.getChildren().addAll(statusDot, taskLabel);
-                setGraphic(hbox);
             }
+            taskLabel.setText(text.toString());
+            
+            hbox.pseudoClassStateChanged(PENDING, status == Status.PENDING);
+            hbox.pseudoClassStateChanged(IN_PROGRESS, status == Status.IN_PROGRESS);
+            hbox.pseudoClassStateChanged(COMPLETED, status == Status.COMPLETED);
+            hbox.pseudoClassStateChanged(OVERDUE, status != Status.COMPLETED && days != Long.MIN_VALUE && days < 0);
+            setGraphic(hbox);
         }
     }
 }
-
@@ -1,8 +1,16 @@
 package com.tasktorch.controllers;
 
+import com.tasktorch.models.PersistenceExecutor;
+import com.tasktorch.models.ReminderScheduler;
+import com.tasktorch.models.TaskManager;
+import com.tasktorch.models.TaskRepository;
 import com.tasktorch.models.User;
-import com.tasktorch.models.UserManager;
+import com.tasktorch.models.UserStore;
+import com.tasktorch.utils.CalendarPullSync;
+import com.tasktorch.utils.CalendarSyncQueue;
+import com.tasktorch.utils.FxDispatcher;
 import com.tasktorch.utils.NavigationService;
+import com.tasktorch.utils.ReminderNotifier;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
@@ -30,14 +38,35 @@ public class LoginController {
     @FXML
     private Label errorLabel;
     
-    private UserManager userManager;
+    /**
+     * Outcome of a background login request.
+     */
+    private static class LoginResult {
+        private final boolean usernameFound;
+        private final User user;
+        
+        LoginResult(boolean usernameFound, User user) {
+            this.usernameFound = usernameFound;
+            this.user = user;
+        }
+    }
+    
+    /**
+     * Outcome of a background sign-up request.
+     */
+    private enum SignUpResult {
+        CREATED,
+        USERNAME_TAKEN,
+        FAILED
+    }
     
     /**
      * Initialize the login controller.
      */
     @FXML
     public void initialize() {
-        userManager = new UserManager();
+        // Build the user index in the background while the user types
+        PersistenceExecutor.run(UserStore::getInstance);
         
         // Set up button handlers
         loginButton.setOnAction(e -> handleLogin());
@@ -68,22 +97,29 @@ public class LoginController {
             return;
         }
         
-        // Check if any users exist
-        if (!userManager.usernameExists(username)) {
-            showError("Username not found. Please sign up first or check your username.");
-            return;
-        }
-        
-        // Authenticate user
-        User user = userManager.authenticate(username, password);
-        
-        if (user != null) {
-            // Login successful - navigate to dashboard
-            NavigationService.setCurrentUser(user);
-            NavigationService.navigateToDashboard();
-        } else {
-            showError("Invalid password. Please try again.");
-        }
+        // Look the user up off the FX thread; the users file may be slow to read
+        setBusy(true);
+        PersistenceExecutor.submit(() -> {
+            UserStore store = UserStore.getInstance();
+            // Tries every account with the name; a hand-edited file may hold several
+            User user = store.authenticate(username, password);
+            if (user != null) {
+                return new LoginResult(true, user);
+            }
+            // Only picks the error message
+            return new LoginResult(store.usernameExists(username), null);
+        }).thenAcceptAsync(result -> {
+            if (!result.usernameFound) {
+                setBusy(false);
+                showError("Username not found. Please sign up first or check your username.");
+            } else if (result.user == null) {
+                setBusy(false);
+                showError("Invalid password. Please try again.");
+            } else {
+                // Login successful - navigate to dashboard
+                openDashboard(result.user);
+            }
+        }, FxDispatcher.FX_THREAD).exceptionally(this::handleFailure);
     }
     
     /**
@@ -112,34 +148,74 @@ public class LoginController {
             return;
         }
         
-        // Check if username already exists
-        if (userManager.usernameExists(username)) {
-            showError("Username already exists. Please choose a different one or login.");
-            return;
-        }
-        
-        // Create new user
-        boolean success = userManager.addUser(username, password);
-        
-        if (success) {
-            // Sign up successful - show message and login
-            Alert alert = new Alert(Alert.AlertType.INFORMATION);
-            alert.setTitle("Account Created");
-            alert.setHeaderText(null);
-            alert.setContentText("Account created successfully! Logging you in...");
-            alert.showAndWait();
-            
-            // Automatically log in the new user
-            User newUser = userManager.authenticate(username, password);
-            if (newUser != null) {
-                NavigationService.setCurrentUser(newUser);
-                NavigationService.navigateToDashboard();
+        setBusy(true);
+        PersistenceExecutor.submit(() -> {
+            // Check if username already exists
+            if (UserStore.getInstance().usernameExists(username)) {
+                return SignUpResult.USERNAME_TAKEN;
+            }
+            // Create new user
+            return UserStore.getInstance().addUser(username, password) ? SignUpResult.CREATED : SignUpResult.FAILED;
+        }).thenAcceptAsync(result -> {
+            setBusy(false);
+            if (result == SignUpResult.USERNAME_TAKEN) {
+                showError("Username already exists. Please choose a different one or login.");
+            } else if (result == SignUpResult.CREATED) {
+                // Sign up successful - show message and login
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Account Created");
+                alert.setHeaderText(null);
+                alert.setContentText("Account created successfully! Logging you in...");
+                alert.showAndWait();
+                
+                // Automatically log in the new user
+                openDashboard(new User(username, password));
             } else {
-                showError("Account created but login failed. Please try logging in manually.");
+                showError("Failed to create account. Please try again.");
             }
-        } else {
-            showError("Failed to create account. Please try again.");
-        }
+        }, FxDispatcher.FX_THREAD).exceptionally(this::handleFailure);
+    }
+    
+    /**
+     * Load the task repository in the background, then show the dashboard.
+     * 
+     * @param user The logged-in user
+     */
+    private void openDashboard(User user) {
+        setBusy(true);
+        NavigationService.setCurrentUser(user);
+        TaskRepository.loadAsync().thenRun(() -> {
+            // Resume calendar changes left in the outbox by the last session,
+            // start pulling changes made in the calendar, and schedule reminders
+            CalendarSyncQueue.getInstance();
+            CalendarPullSync.getInstance().start(user.getUsername());
+            ReminderNotifier.install();
+            ReminderScheduler.getInstance().applySettings(new TaskManager().loadSettings());
+        }).thenRunAsync(() -> {
+            setBusy(false);
+            NavigationService.navigateToDashboard();
+        }, FxDispatcher.FX_THREAD).exceptionally(this::handleFailure);
+    }
+    
+    /**
+     * Report an unexpected background failure and re-enable the form.
+     */
+    private Void handleFailure(Throwable error) {
+        FxDispatcher.runOnFxThread(() -> {
+            setBusy(false);
+            showError("Something went wrong: " + error.getMessage());
+        });
+        return null;
+    }
+    
+    /**
+     * Disable the form while a background request is running.
+     * 
+     * @param busy True while waiting
+     */
+    private void setBusy(boolean busy) {
+        loginButton.setDisable(busy);
+        signupButton.setDisable(busy);
     }
     
     /**
@@ -3,17 +3,27 @@ package com.tasktorch.controllers;
 import com.tasktorch.models.Theme;
 import com.tasktorch.models.UserSettings;
 import com.tasktorch.models.TaskManager;
+import com.tasktorch.models.PersistenceExecutor;
+import com.tasktorch.models.ReminderScheduler;
+import com.tasktorch.models.TaskRepository;
+import com.tasktorch.utils.FxDispatcher;
 import com.tasktorch.utils.ThemeService;
 import com.tasktorch.utils.GoogleCalendarService;
+import com.tasktorch.utils.RefreshableView;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Controller for the Settings view.
  * Loads/saves user settings, theme selection, and reminders.
  */
-public class SettingsController {
+public class SettingsController implements RefreshableView {
     @FXML
     private ComboBox<Theme> themeComboBox;
     
@@ -23,6 +33,12 @@ public class SettingsController {
     @FXML
     private Spinner<Integer> remindDaysSpinner;
     
+    @FXML
+    private CheckBox partitionedStorageCheckBox;
+    
+    @FXML
+    private Spinner<Integer> archiveDaysSpinner;
+    
     @FXML
     private Button saveButton;
     
@@ -38,8 +54,14 @@ public class SettingsController {
     @FXML
     private Label googleCalendarStatusLabel;
     
+    @FXML
+    private Button importIcsButton;
+    
+    @FXML
+    private Button exportIcsButton;
+    
     private TaskManager taskManager;
-    private UserSettings currentSettings;
+    private UserSettings currentSettings = new UserSettings();
 
     /**
      * Initialize the settings controller.
@@ -56,6 +78,10 @@ public class SettingsController {
             new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 30, 1);
         remindDaysSpinner.setValueFactory(factory);
         
+        // Days past due before completed tasks are archived (0 = never)
+        archiveDaysSpinner.setValueFactory(
+            new SpinnerValueFactory.IntegerSpinnerValueFactory(0, 3650, 180, 30));
+        
         // Load current settings
         loadSettings();
         
@@ -64,20 +90,47 @@ public class SettingsController {
         cancelButton.setOnAction(e -> handleCancel());
         connectGoogleCalendarButton.setOnAction(e -> handleConnectGoogleCalendar());
         disconnectGoogleCalendarButton.setOnAction(e -> handleDisconnectGoogleCalendar());
+        importIcsButton.setOnAction(e -> handleImportIcs());
+        exportIcsButton.setOnAction(e -> handleExportIcs());
         
         // Update Google Calendar status
         updateGoogleCalendarStatus();
     }
 
     /**
-     * Load user settings from file.
+     * Reload settings and connection status each time the cached dialog opens.
+     */
+    @Override
+    public void refresh() {
+        loadSettings();
+        updateGoogleCalendarStatus();
+    }
+
+    /**
+     * Load user settings from file in the background and show them when read.
      */
     private void loadSettings() {
-        currentSettings = taskManager.loadSettings();
-        
-        themeComboBox.setValue(currentSettings.getTheme());
-        dailyReminderCheckBox.setSelected(currentSettings.isDailyReminder());
-        remindDaysSpinner.getValueFactory().setValue(currentSettings.getRemindDaysBeforeDue());
+        PersistenceExecutor.submit(taskManager::loadSettings).thenAcceptAsync(settings -> {
+            currentSettings = settings;
+            
+            themeComboBox.setValue(currentSettings.getTheme());
+            dailyReminderCheckBox.setSelected(currentSettings.isDailyReminder());
+            remindDaysSpinner.getValueFactory().setValue(currentSettings.getRemindDaysBeforeDue());
+            partitionedStorageCheckBox.setSelected(currentSettings.isPartitionedStorage());
+            archiveDaysSpinner.getValueFactory().setValue(currentSettings.getArchiveAfterDays());
+        }, FxDispatcher.FX_THREAD);
+    }
+
+    /**
+     * Queue settings for the next group commit. The file content is built
+     * here on the FX thread and commitLater does not block, so saves reach
+     * the file in the order they were made and later edits of the settings
+     * object cannot leak into an earlier save.
+     *
+     * @param settings Settings to save
+     */
+    private void saveSettings(UserSettings settings) {
+        taskManager.saveSettings(settings);
     }
 
     /**
@@ -89,8 +142,13 @@ public class SettingsController {
         settings.setTheme(selectedTheme);
         settings.setDailyReminder(dailyReminderCheckBox.isSelected());
         settings.setRemindDaysBeforeDue(remindDaysSpinner.getValue());
+        settings.setPartitionedStorage(partitionedStorageCheckBox.isSelected());
+        settings.setArchiveAfterDays(archiveDaysSpinner.getValue());
         
-        taskManager.saveSettings(settings);
+        saveSettings(settings);
+        currentSettings = settings;
+        ReminderScheduler.getInstance().applySettings(settings);
+        TaskRepository.getInstance().applySettings(settings);
         
         // Apply the new theme
         ThemeService.setTheme(selectedTheme);
@@ -127,7 +185,7 @@ public class SettingsController {
                 
                 // Update settings
                 currentSettings.setGoogleCalendarEnabled(true);
-                taskManager.saveSettings(currentSettings);
+                saveSettings(currentSettings);
                 
                 updateGoogleCalendarStatus();
             } else {
@@ -154,7 +212,7 @@ public class SettingsController {
     private void handleDisconnectGoogleCalendar() {
         GoogleCalendarService.disconnect();
         currentSettings.setGoogleCalendarEnabled(false);
-        taskManager.saveSettings(currentSettings);
+        saveSettings(currentSettings);
         updateGoogleCalendarStatus();
         
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -164,6 +222,100 @@ public class SettingsController {
         alert.showAndWait();
     }
     
+    /**
+     * Handle import button click: read tasks from an iCalendar file in the background.
+     */
+    private void handleImportIcs() {
+        File file = newIcsChooser("Import Tasks").showOpenDialog(importIcsButton.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        setTransferBusy(true);
+        PersistenceExecutor.submit(() -> {
+            try {
+                return TaskRepository.getInstance().importIcs(file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })
+            .whenCompleteAsync((result, error) -> {
+                setTransferBusy(false);
+                if (error != null) {
+                    showTransferError("Could not import " + file.getName() + ": " + rootMessage(error));
+                    return;
+                }
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Import Complete");
+                alert.setHeaderText(null);
+                alert.setContentText("Imported " + result.imported + " task(s).\n"
+                    + result.duplicates + " already existed and " + result.skipped + " had no date or were cancelled.");
+                alert.showAndWait();
+            }, FxDispatcher.FX_THREAD);
+    }
+    
+    /**
+     * Handle export button click: write all tasks to an iCalendar file in the background.
+     */
+    private void handleExportIcs() {
+        FileChooser chooser = newIcsChooser("Export Tasks");
+        chooser.setInitialFileName("tasktorch.ics");
+        File file = chooser.showSaveDialog(exportIcsButton.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        setTransferBusy(true);
+        PersistenceExecutor.submit(() -> {
+            try {
+                return TaskRepository.getInstance().exportIcs(file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })
+            .whenCompleteAsync((count, error) -> {
+                setTransferBusy(false);
+                if (error != null) {
+                    showTransferError("Could not export to " + file.getName() + ": " + rootMessage(error));
+                    return;
+                }
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Export Complete");
+                alert.setHeaderText(null);
+                alert.setContentText("Exported " + count + " task(s) to " + file.getName() + ".");
+                alert.showAndWait();
+            }, FxDispatcher.FX_THREAD);
+    }
+    
+    private FileChooser newIcsChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("iCalendar files (*.ics)", "*.ics"));
+        return chooser;
+    }
+    
+    private void setTransferBusy(boolean busy) {
+        importIcsButton.setDisable(busy);
+        exportIcsButton.setDisable(busy);
+    }
+    
+    private void showTransferError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+    
+    /**
+     * Unwrap the exception thrown inside a background task.
+     */
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+    
     /**
      * Update Google Calendar status display.
      */
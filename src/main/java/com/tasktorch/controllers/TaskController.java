@@ -1,13 +1,15 @@
 package com.tasktorch.controllers;
 
 import com.tasktorch.models.*;
-import com.tasktorch.utils.GoogleCalendarService;
+import com.tasktorch.utils.CalendarSyncQueue;
+import com.tasktorch.utils.FxDispatcher;
 import com.tasktorch.utils.NavigationService;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -43,17 +45,19 @@ public class TaskController {
     @FXML
     private Button deleteButton;
     
-    private TaskManager taskManager;
+    private TaskRepository taskRepository;
     private CourseManager courseManager;
     private Task currentTask;
     private boolean isEditMode;
+    // False while the edited task's notes are still being read from disk
+    private boolean notesLoaded = true;
 
     /**
      * Initialize the task controller.
      */
     @FXML
     public void initialize() {
-        taskManager = new TaskManager();
+        taskRepository = TaskRepository.getInstance();
         courseManager = new CourseManager();
         
         // Initialize priority combo box
@@ -65,13 +69,12 @@ public class TaskController {
         statusComboBox.setValue(Status.PENDING);
         
         // Set default due date to today
-        dueDatePicker.setValue(LocalDate.now());
+        dueDatePicker.setValue(AppClock.today());
         
         // Make class name combo box editable so users can type class names
         classNameComboBox.setEditable(true);
         
-        // Load course names into combo box
-        loadCourseNames();
+        // Course names are loaded each time the dialog is opened for a task
         
         // Set up button handlers
         saveButton.setOnAction(e -> handleSave());
@@ -90,13 +93,14 @@ public class TaskController {
     public void setTaskForEditing(Task task) {
         this.currentTask = task;
         this.isEditMode = true;
+        loadCourseNames();
         
         if (task != null) {
             titleField.setText(task.getTitle());
             dueDatePicker.setValue(task.getDueDate());
             classNameComboBox.setValue(task.getClassName());
             classNameComboBox.getEditor().setText(task.getClassName());
-            notesArea.setText(task.getNotes());
+            loadNotes(task);
             priorityComboBox.setValue(task.getPriority());
             statusComboBox.setValue(task.getStatus());
             deleteButton.setVisible(true);
@@ -109,25 +113,51 @@ public class TaskController {
     public void setNewTaskMode() {
         this.currentTask = null;
         this.isEditMode = false;
+        loadCourseNames();
         
         titleField.clear();
-        dueDatePicker.setValue(LocalDate.now());
+        dueDatePicker.setValue(AppClock.today());
         classNameComboBox.getSelectionModel().clearSelection();
         classNameComboBox.getEditor().clear();
         notesArea.clear();
+        notesArea.setEditable(true);
+        notesLoaded = true;
         priorityComboBox.setValue(Priority.MEDIUM);
         statusComboBox.setValue(Status.PENDING);
         deleteButton.setVisible(false);
     }
 
+    /**
+     * Read a task's notes in the background; they are not kept in memory.
+     * The notes area stays read-only until they arrive.
+     */
+    private void loadNotes(Task task) {
+        notesLoaded = false;
+        notesArea.clear();
+        notesArea.setEditable(false);
+        PersistenceExecutor.submit(() -> taskRepository.getNotes(task.getTaskId())).thenAcceptAsync(notes -> {
+            // The dialog is reused; ignore notes of a task that is no longer shown
+            if (currentTask != task) {
+                return;
+            }
+            notesArea.setText(notes);
+            notesArea.setEditable(true);
+            notesLoaded = true;
+        }, FxDispatcher.FX_THREAD);
+    }
+
     /**
      * Load course names into the combo box.
      */
     private void loadCourseNames() {
-        List<Course> courses = courseManager.loadCourses();
-        for (Course course : courses) {
-            classNameComboBox.getItems().add(course.getName());
-        }
+        // Read classes.csv in the background; the dialog is reused, so replace rather than append
+        PersistenceExecutor.submit(courseManager::loadCourses).thenAcceptAsync(courses -> {
+            List<String> names = new ArrayList<>();
+            for (Course course : courses) {
+                names.add(course.getName());
+            }
+            classNameComboBox.getItems().setAll(names);
+        }, FxDispatcher.FX_THREAD);
     }
 
     /**
@@ -159,36 +189,21 @@ public class TaskController {
             return;
         }
 
-        List<Task> tasks = taskManager.loadTasks();
-        
         if (isEditMode && currentTask != null) {
-            // Update existing task in the list
-            tasks.stream()
-                .filter(task -> task.getTaskId().equals(currentTask.getTaskId()))
-                .findFirst()
-                .ifPresent(updatedTask -> {
-                    updatedTask.setTitle(title);
-                    updatedTask.setDueDate(dueDate);
-                    updatedTask.setClassName(className);
-                    updatedTask.setNotes(notesArea.getText());
-                    updatedTask.setPriority(priorityComboBox.getValue());
-                    updatedTask.setStatus(statusComboBox.getValue());
-                    
-                    // Sync with Google Calendar if connected
-                    if (GoogleCalendarService.isConnected()) {
-                        String eventId = updatedTask.getGoogleCalendarEventId();
-                        if (eventId != null && !eventId.isEmpty()) {
-                            // Update existing event
-                            GoogleCalendarService.updateEvent(eventId, updatedTask);
-                        } else {
-                            // Create new event
-                            String newEventId = GoogleCalendarService.createEvent(updatedTask);
-                            if (newEventId != null) {
-                                updatedTask.setGoogleCalendarEventId(newEventId);
-                            }
-                        }
-                    }
-                });
+            // Notes that have not arrived yet were never shown, so keep the stored ones
+            String notes = notesLoaded ? notesArea.getText() : null;
+            // Update the existing task in the shared repository
+            taskRepository.updateTask(currentTask.getTaskId(), updatedTask -> {
+                updatedTask.setTitle(title);
+                updatedTask.setDueDate(dueDate);
+                updatedTask.setClassName(className);
+                if (notes != null) {
+                    updatedTask.setNotes(notes);
+                }
+                updatedTask.setPriority(priorityComboBox.getValue());
+                updatedTask.setStatus(statusComboBox.getValue());
+            });
+            syncToCalendar(currentTask.getTaskId());
         } else {
             // Create new task
             String taskId = UUID.randomUUID().toString();
@@ -202,21 +217,23 @@ public class TaskController {
                 priorityComboBox.getValue()
             );
             
-            // Sync with Google Calendar if connected
-            if (GoogleCalendarService.isConnected()) {
-                String eventId = GoogleCalendarService.createEvent(newTask);
-                if (eventId != null) {
-                    newTask.setGoogleCalendarEventId(eventId);
-                }
-            }
-            
-            tasks.add(newTask);
+            taskRepository.addTask(newTask);
+            syncToCalendar(taskId);
         }
         
-        taskManager.saveTasks(tasks);
         closeWindow();
     }
 
+    /**
+     * Queue a saved task for Google Calendar sync; the queue sends it in the
+     * background and writes a newly created event id back into the repository.
+     * 
+     * @param taskId Id of the task to sync
+     */
+    private void syncToCalendar(String taskId) {
+        CalendarSyncQueue.getInstance().enqueueUpsert(taskId);
+    }
+
     /**
      * Handle cancel button click.
      */
@@ -236,16 +253,11 @@ public class TaskController {
             
             alert.showAndWait().ifPresent(response -> {
                 if (response == ButtonType.OK) {
-                    // Delete from Google Calendar if connected
-                    if (GoogleCalendarService.isConnected() && 
-                        currentTask.getGoogleCalendarEventId() != null && 
-                        !currentTask.getGoogleCalendarEventId().isEmpty()) {
-                        GoogleCalendarService.deleteEvent(currentTask.getGoogleCalendarEventId());
-                    }
+                    // Delete from Google Calendar in the background if connected
+                    CalendarSyncQueue.getInstance().enqueueDelete(
+                        currentTask.getTaskId(), currentTask.getGoogleCalendarEventId());
                     
-                    List<Task> tasks = taskManager.loadTasks();
-                    tasks.removeIf(t -> t.getTaskId().equals(currentTask.getTaskId()));
-                    taskManager.saveTasks(tasks);
+                    taskRepository.deleteTask(currentTask.getTaskId());
                     closeWindow();
                 }
             });
@@ -0,0 +1,159 @@
+package com.tasktorch.models;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared day-granular clock.
+ *
+ * Views that render due-date text for many rows ask this clock for today's
+ * date instead of calling LocalDate.now() per row; the date is recomputed
+ * only after midnight has passed. Once a DayChangeListener is registered,
+ * a single timer fires at each midnight so views can update their overdue
+ * and due-today labels without user input.
+ *
+ * The underlying Clock can be replaced, e.g. with Clock.fixed in a test.
+ */
+public final class AppClock {
+    // The timer's delay clock may stand still while the machine sleeps; re-check at least this often
+    private static final long MAX_SLEEP_MS = 60 * 60 * 1000;
+
+    private static final List<DayChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile Clock clock = Clock.systemDefaultZone();
+    private static volatile LocalDate today;
+    private static volatile long nextMidnightMillis;
+    // Date listeners last heard about; today() may move on before the timer runs
+    private static LocalDate announcedDate;
+    private static ScheduledThreadPoolExecutor timer;
+    private static ScheduledFuture<?> rollover;
+
+    private AppClock() {
+    }
+
+    /**
+     * Get today's date.
+     *
+     * @return The current date in the clock's time zone
+     */
+    public static LocalDate today() {
+        if (clock.millis() >= nextMidnightMillis) {
+            refresh();
+        }
+        return today;
+    }
+
+    /**
+     * Get today's date as an epoch day, for cheap day arithmetic.
+     *
+     * @return Days since 1970-01-01
+     */
+    public static long todayEpochDay() {
+        return today().toEpochDay();
+    }
+
+    /**
+     * Get the clock all application time is read from.
+     *
+     * @return The current clock
+     */
+    public static Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replace the clock, e.g. with a fixed clock in tests. Listeners are
+     * notified if this changes the current date.
+     *
+     * @param newClock Clock to use from now on
+     */
+    public static void setClock(Clock newClock) {
+        synchronized (AppClock.class) {
+            clock = newClock;
+            nextMidnightMillis = 0;
+        }
+        rollOver();
+    }
+
+    /**
+     * Register a listener for date changes, starting the midnight timer on
+     * first use.
+     *
+     * @param listener Listener to add
+     */
+    public static void addDayChangeListener(DayChangeListener listener) {
+        listeners.add(listener);
+        LocalDate current = today();
+        synchronized (AppClock.class) {
+            if (timer == null) {
+                announcedDate = current;
+                timer = new ScheduledThreadPoolExecutor(1, r -> {
+                    Thread thread = new Thread(r, "tasktorch-clock");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                timer.setRemoveOnCancelPolicy(true);
+                scheduleRollover();
+            }
+        }
+    }
+
+    /**
+     * Unregister a listener added with addDayChangeListener.
+     *
+     * @param listener Listener to remove
+     */
+    public static void removeDayChangeListener(DayChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static synchronized void refresh() {
+        ZoneId zone = clock.getZone();
+        LocalDate date = LocalDate.now(clock);
+        // Publish the date before the deadline so readers never see a stale pair
+        today = date;
+        nextMidnightMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Arm the timer for the next midnight. Must hold the class lock.
+     */
+    private static void scheduleRollover() {
+        if (timer == null) {
+            return;
+        }
+        if (rollover != null) {
+            rollover.cancel(false);
+        }
+        long delay = Math.max(0, nextMidnightMillis - clock.millis());
+        rollover = timer.schedule(AppClock::rollOver, Math.min(delay, MAX_SLEEP_MS), TimeUnit.MILLISECONDS);
+    }
+
+    private static void rollOver() {
+        LocalDate current = today();
+        boolean changed;
+        synchronized (AppClock.class) {
+            changed = announcedDate != null && !announcedDate.equals(current);
+            announcedDate = current;
+            scheduleRollover();
+        }
+        if (changed) {
+            notifyListeners(current);
+        }
+    }
+
+    private static void notifyListeners(LocalDate date) {
+        for (DayChangeListener listener : listeners) {
+            try {
+                listener.dayChanged(date);
+            } catch (RuntimeException e) {
+                System.err.println("Error handling date change: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.tasktorch.models;
+
+import java.time.LocalDate;
+
+/**
+ * Notified by AppClock when the current date changes, normally at midnight.
+ *
+ * Called on the clock's background thread; implementations that touch the
+ * UI must hand the work to the JavaFX Application Thread.
+ */
+public interface DayChangeListener {
+
+    /**
+     * Called after the date changed.
+     *
+     * @param today The new current date
+     */
+    void dayChanged(LocalDate today);
+}
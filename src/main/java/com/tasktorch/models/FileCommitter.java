@@ -0,0 +1,259 @@
+package com.tasktorch.models;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crash-safe replacement of data files, with group commit.
+ *
+ * Every file is written to a temporary file next to it, forced to disk and
+ * renamed over the original with ATOMIC_MOVE, and the directory is then
+ * forced so the rename itself survives a crash. A crash or a full disk at
+ * any point leaves either the old or the new file, never a truncated one.
+ *
+ * Saves requested with commitLater are held for GROUP_COMMIT_MS and then
+ * committed together: each file is written once with its latest content,
+ * and each directory is forced once for the whole group, so a burst of
+ * edits pays for one commit. A commit made with commit() takes the waiting
+ * saves along with it.
+ */
+public final class FileCommitter {
+    private static final long GROUP_COMMIT_MS = 50;
+    private static final Object commitLock = new Object();
+    private static final Map<Path, PendingWrite> pending = new LinkedHashMap<>();
+    // Files whose group is being written, so readers can wait for it
+    private static final Set<Path> committing = new HashSet<>();
+    private static final ScheduledExecutorService committer = createExecutor();
+    private static ScheduledFuture<?> scheduledCommit;
+
+    private FileCommitter() {
+    }
+
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    /**
+     * A save waiting for its group to be committed.
+     */
+    private static final class PendingWrite {
+        final Path target;
+        Content content;
+        // Callers of commit() report their own failures
+        final boolean logFailure;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(Path target, Content content, boolean logFailure) {
+            this.target = target;
+            this.content = content;
+            this.logFailure = logFailure;
+        }
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "tasktorch-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        return pool;
+    }
+
+    /**
+     * Replace a file and wait until the new content is durable. Saves
+     * waiting for their group are committed in the same round.
+     *
+     * @param target File to create or replace
+     * @param content Writes the new content
+     * @throws IOException If the file could not be written
+     */
+    public static void commit(Path target, Content content) throws IOException {
+        PendingWrite write = new PendingWrite(target, content, false);
+        commitGroup(write);
+        try {
+            write.done.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Replace a file as part of the next group commit. A later save of the
+     * same file before the group is committed replaces this one. Failures
+     * are logged.
+     *
+     * @param target File to create or replace
+     * @param content New content; captured now, so later changes to the
+     *                caller's objects do not leak into the file
+     * @return Future completed once the new content is durable
+     */
+    public static CompletableFuture<Void> commitLater(Path target, String content) {
+        synchronized (pending) {
+            PendingWrite write = pending.get(target);
+            if (write != null) {
+                write.content = out -> out.write(content);
+                return write.done;
+            }
+            write = new PendingWrite(target, out -> out.write(content), true);
+            pending.put(target, write);
+            if (scheduledCommit == null) {
+                scheduledCommit = committer.schedule(() -> commitGroup(null), GROUP_COMMIT_MS, TimeUnit.MILLISECONDS);
+            }
+            return write.done;
+        }
+    }
+
+    /**
+     * Commit any pending save of a file now and wait for it, so a following
+     * read sees the latest content.
+     *
+     * @param target File about to be read
+     */
+    public static void awaitPending(Path target) {
+        boolean waiting;
+        synchronized (pending) {
+            waiting = pending.containsKey(target) || committing.contains(target);
+        }
+        if (waiting) {
+            commitGroup(null);
+        }
+    }
+
+    /**
+     * Commit everything still pending; called when the application exits.
+     */
+    public static void shutdown() {
+        commitGroup(null);
+        committer.shutdown();
+    }
+
+    /**
+     * Commit the pending saves, plus one more write if given.
+     */
+    private static void commitGroup(PendingWrite extra) {
+        synchronized (commitLock) {
+            List<PendingWrite> group;
+            synchronized (pending) {
+                if (scheduledCommit != null) {
+                    scheduledCommit.cancel(false);
+                    scheduledCommit = null;
+                }
+                group = new ArrayList<>(pending.values());
+                pending.clear();
+                if (extra != null) {
+                    for (Iterator<PendingWrite> it = group.iterator(); it.hasNext(); ) {
+                        PendingWrite write = it.next();
+                        if (write.target.equals(extra.target)) {
+                            // Superseded by the newer explicit write; finish with it
+                            it.remove();
+                            extra.done.whenComplete((result, error) -> {
+                                if (error == null) {
+                                    write.done.complete(null);
+                                } else {
+                                    write.done.completeExceptionally(error);
+                                }
+                            });
+                        }
+                    }
+                    group.add(extra);
+                }
+                for (PendingWrite write : group) {
+                    committing.add(write.target);
+                }
+            }
+            try {
+                write(group);
+            } finally {
+                synchronized (pending) {
+                    committing.clear();
+                }
+            }
+        }
+    }
+
+    private static void write(List<PendingWrite> group) {
+        // Force every new file, then rename them all, then force each directory once
+        List<PendingWrite> written = new ArrayList<>();
+        for (PendingWrite write : group) {
+            try {
+                Path temp = tempFile(write.target);
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 1 << 16);
+                    write.content.writeTo(out);
+                    out.flush();
+                    channel.force(true);
+                }
+                written.add(write);
+            } catch (IOException | RuntimeException e) {
+                fail(write, e);
+            }
+        }
+        Set<Path> directories = new HashSet<>();
+        List<PendingWrite> moved = new ArrayList<>();
+        for (PendingWrite write : written) {
+            try {
+                Files.move(tempFile(write.target), write.target,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                directories.add(write.target.toAbsolutePath().getParent());
+                moved.add(write);
+            } catch (IOException e) {
+                fail(write, e);
+            }
+        }
+        for (Path directory : directories) {
+            forceDirectory(directory);
+        }
+        for (PendingWrite write : moved) {
+            write.done.complete(null);
+        }
+    }
+
+    private static Path tempFile(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    private static void fail(PendingWrite write, Exception e) {
+        if (write.logFailure) {
+            System.err.println("Error saving " + write.target + ": " + e.getMessage());
+        }
+        write.done.completeExceptionally(e);
+    }
+
+    /**
+     * Force a directory's entries to disk, where the platform allows it.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform (e.g. Windows); the rename is still atomic
+        }
+    }
+}
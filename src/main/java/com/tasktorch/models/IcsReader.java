@@ -0,0 +1,239 @@
+package com.tasktorch.models;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads tasks from an iCalendar (RFC 5545) file one component at a time.
+ *
+ * Every VTODO and VEVENT becomes a task: UID is the taskId, SUMMARY the
+ * title, DUE (or DTSTART) the due date, the first CATEGORIES value the class
+ * and DESCRIPTION the notes. Only the component being read is held in
+ * memory, so files with hundreds of thousands of events can be imported.
+ * Components without a date, and cancelled ones, are skipped.
+ */
+public class IcsReader implements Closeable {
+    // Longest unfolded content line kept; the rest of a longer line is dropped
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private final BufferedReader reader;
+    private final Map<String, String> properties = new HashMap<>();
+    private String lookahead;
+    private String component;
+    private int nestedDepth;
+    private int skippedCount;
+
+    /**
+     * Create a reader.
+     *
+     * @param reader Source of the calendar text
+     */
+    public IcsReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Read the next task.
+     *
+     * @return The next task, or null at end of file
+     * @throws IOException If the file could not be read
+     */
+    public Task next() throws IOException {
+        String line;
+        while ((line = nextContentLine()) != null) {
+            int colon = valueStart(line);
+            if (colon < 0) {
+                continue;
+            }
+            String nameAndParams = line.substring(0, colon);
+            String value = line.substring(colon + 1);
+            int semicolon = nameAndParams.indexOf(';');
+            String name = (semicolon >= 0 ? nameAndParams.substring(0, semicolon) : nameAndParams)
+                .trim().toUpperCase(Locale.ROOT);
+
+            if ("BEGIN".equals(name)) {
+                String type = value.trim().toUpperCase(Locale.ROOT);
+                if (component != null) {
+                    nestedDepth++; // e.g. a VALARM inside a VTODO
+                } else if ("VTODO".equals(type) || "VEVENT".equals(type)) {
+                    component = type;
+                    properties.clear();
+                }
+            } else if ("END".equals(name) && component != null) {
+                if (nestedDepth > 0) {
+                    nestedDepth--;
+                } else {
+                    component = null;
+                    Task task = buildTask();
+                    if (task != null) {
+                        return task;
+                    }
+                    skippedCount++;
+                }
+            } else if (component != null && nestedDepth == 0) {
+                // Keep the first occurrence, as for DUE/DTSTART and CATEGORIES
+                properties.putIfAbsent(name, value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of components that could not be turned into tasks.
+     *
+     * @return Components skipped so far
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Task buildTask() {
+        String status = properties.getOrDefault("STATUS", "").trim().toUpperCase(Locale.ROOT);
+        if ("CANCELLED".equals(status)) {
+            return null;
+        }
+        LocalDate dueDate = parseDate(properties.get("DUE"));
+        if (dueDate == null) {
+            dueDate = parseDate(properties.get("DTSTART"));
+        }
+        if (dueDate == null) {
+            return null;
+        }
+
+        String uid = unescapeText(properties.get("UID"), false);
+        String className = unescapeText(properties.get("CATEGORIES"), true);
+        String title = unescapeText(properties.get("SUMMARY"), false);
+        if (!className.isEmpty() && title.startsWith(className + ": ")) {
+            // Events pushed by the calendar sync carry the class in the summary
+            title = title.substring(className.length() + 2);
+        }
+        if (title.isEmpty()) {
+            title = "Untitled";
+        }
+
+        Status taskStatus = Status.PENDING;
+        if ("COMPLETED".equals(status) || properties.containsKey("COMPLETED")) {
+            taskStatus = Status.COMPLETED;
+        } else if ("IN-PROCESS".equals(status)) {
+            taskStatus = Status.IN_PROGRESS;
+        }
+
+        return new Task(
+            uid.isEmpty() ? UUID.randomUUID().toString() : uid,
+            title,
+            dueDate,
+            className,
+            unescapeText(properties.get("DESCRIPTION"), false),
+            taskStatus,
+            parsePriority(properties.get("PRIORITY"))
+        );
+    }
+
+    /**
+     * Read the next logical line, joining folded continuation lines.
+     */
+    private String nextContentLine() throws IOException {
+        String line = lookahead != null ? lookahead : reader.readLine();
+        lookahead = null;
+        if (line == null) {
+            return null;
+        }
+        StringBuilder unfolded = null;
+        String next;
+        while ((next = reader.readLine()) != null
+                && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+            if (unfolded == null) {
+                unfolded = new StringBuilder(line);
+            }
+            if (unfolded.length() < MAX_LINE_LENGTH) {
+                unfolded.append(next, 1, Math.min(next.length(), 1 + MAX_LINE_LENGTH - unfolded.length()));
+            }
+        }
+        lookahead = next;
+        return unfolded != null ? unfolded.toString() : line;
+    }
+
+    /**
+     * Find the colon separating name and parameters from the value,
+     * ignoring colons inside quoted parameter values.
+     */
+    private static int valueStart(String line) {
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ':' && !inQuotes) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a DATE or DATE-TIME value; a date-time contributes its date.
+     */
+    private static LocalDate parseDate(String value) {
+        if (value == null || value.trim().length() < 8) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.trim().substring(0, 8), IcsWriter.DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Priority parsePriority(String value) {
+        int priority;
+        try {
+            priority = value != null ? Integer.parseInt(value.trim()) : 0;
+        } catch (NumberFormatException e) {
+            priority = 0;
+        }
+        if (priority >= 1 && priority <= 4) {
+            return Priority.HIGH;
+        } else if (priority >= 6 && priority <= 9) {
+            return Priority.LOW;
+        }
+        return Priority.MEDIUM;
+    }
+
+    /**
+     * Undo TEXT escaping.
+     *
+     * @param value Escaped value, may be null
+     * @param firstOnly Stop at the first unescaped comma (for list values)
+     */
+    private static String unescapeText(String value, boolean firstOnly) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                sb.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else if (c == ',' && firstOnly) {
+                break;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,173 @@
+package com.tasktorch.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes tasks as an iCalendar (RFC 5545) file, one VTODO per task.
+ *
+ * Each task is written as soon as it is passed in, so exporting a large
+ * repository never holds more than one task's text in memory. The UID of
+ * every VTODO is the taskId, which lets IcsReader recognise the same tasks
+ * when the file is imported again.
+ */
+public class IcsWriter implements Closeable {
+    static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter STAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private final Writer writer;
+    private final String stamp;
+    private boolean started;
+
+    /**
+     * Create a writer. The caller should wrap the target in a buffered writer.
+     *
+     * @param writer Destination of the calendar text
+     */
+    public IcsWriter(Writer writer) {
+        this.writer = writer;
+        this.stamp = ZonedDateTime.now(ZoneOffset.UTC).format(STAMP_FORMAT);
+    }
+
+    /**
+     * Write one task, starting the calendar on the first call.
+     *
+     * @param task Task to write
+     * @throws IOException If the text could not be written
+     */
+    public void write(Task task) throws IOException {
+        begin();
+        writeLine("BEGIN:VTODO");
+        writeLine("UID:" + escapeText(task.getTaskId()));
+        writeLine("DTSTAMP:" + stamp);
+        writeLine("SUMMARY:" + escapeText(task.getTitle()));
+        if (task.getDueDate() != null) {
+            writeLine("DUE;VALUE=DATE:" + task.getDueDate().format(DATE_FORMAT));
+        }
+        if (task.getClassName() != null && !task.getClassName().isEmpty()) {
+            writeLine("CATEGORIES:" + escapeText(task.getClassName()));
+        }
+        if (task.getNotes() != null && !task.getNotes().isEmpty()) {
+            writeLine("DESCRIPTION:" + escapeText(task.getNotes()));
+        }
+        writeLine("STATUS:" + statusValue(task.getStatus()));
+        writeLine("PRIORITY:" + priorityValue(task.getPriority()));
+        writeLine("END:VTODO");
+    }
+
+    /**
+     * End the calendar and close the underlying writer.
+     *
+     * @throws IOException If the text could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            begin(); // An empty export is still a valid calendar
+            writeLine("END:VCALENDAR");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void begin() throws IOException {
+        if (started) {
+            return;
+        }
+        writeLine("BEGIN:VCALENDAR");
+        writeLine("VERSION:2.0");
+        writeLine("PRODID:-//TaskTorch//TaskTorch//EN");
+        started = true;
+    }
+
+    /**
+     * Write a content line, folding it so no physical line exceeds 75 octets.
+     */
+    private void writeLine(String line) throws IOException {
+        int octets = 0;
+        int start = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            int size = utf8Length(line, i);
+            if (octets + size > MAX_LINE_OCTETS) {
+                writer.write(line, start, i - start);
+                writer.write("\r\n ");
+                start = i;
+                octets = 1; // The leading space of the continuation line
+            }
+            octets += size;
+            if (Character.isHighSurrogate(c) && i + 1 < line.length()) {
+                i++; // Never split a surrogate pair
+            }
+        }
+        writer.write(line, start, line.length() - start);
+        writer.write("\r\n");
+    }
+
+    private static int utf8Length(String line, int index) {
+        char c = line.charAt(index);
+        if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800) {
+            return 2;
+        } else if (Character.isHighSurrogate(c)) {
+            return 4;
+        }
+        return 3;
+    }
+
+    /**
+     * Escape a TEXT value: backslash, semicolon, comma and newlines.
+     */
+    static String escapeText(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    sb.append('\\').append(c);
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String statusValue(Status status) {
+        switch (status) {
+            case COMPLETED:
+                return "COMPLETED";
+            case IN_PROGRESS:
+                return "IN-PROCESS";
+            default:
+                return "NEEDS-ACTION";
+        }
+    }
+
+    private static int priorityValue(Priority priority) {
+        switch (priority) {
+            case HIGH:
+                return 1;
+            case LOW:
+                return 9;
+            default:
+                return 5;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.tasktorch.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Reads a CSV file from a single buffer without copying lines.
+ *
+ * The reader scans field boundaries directly over the file's bytes and only
+ * records their offsets. Strings are created when a caller asks for a field,
+ * so columns that are skipped or matched against known values (status,
+ * priority, dates) never allocate. Quoted fields may contain commas, newlines
+ * and escaped quotes ("").
+ * A reader can also wrap bytes already in memory, such as a decompressed
+ * archive block.
+ *
+ * Files are read into a heap buffer in one go rather than mapped: a mapping
+ * lives until the buffer is garbage collected, and on Windows a mapped file
+ * cannot be replaced, which would break the atomic rewrite of tasks.csv.
+ */
+public class MappedCsvReader {
+    private static final int INITIAL_FIELDS = 16;
+    private static final int POOL_SIZE = 1024;
+    private static final int MAX_POOLED_LENGTH = 64;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private int recordStart;
+
+    // Field boundaries of the current record
+    private int fieldCount;
+    private int[] starts = new int[INITIAL_FIELDS];
+    private int[] ends = new int[INITIAL_FIELDS];
+    private boolean[] escaped = new boolean[INITIAL_FIELDS];
+    private byte[] scratch = new byte[256];
+
+    // Small cache of recently materialized values for low-cardinality columns
+    private final String[] pooledStrings = new String[POOL_SIZE];
+    private final byte[][] pooledBytes = new byte[POOL_SIZE][];
+
+    private MappedCsvReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.position = 0;
+    }
+
+    /**
+     * Read a file into memory. The file is closed before this method
+     * returns, so it can be replaced while the reader is still in use.
+     *
+     * @param path File to read
+     * @return A reader positioned before the first record
+     * @throws IOException If the file cannot be read
+     */
+    public static MappedCsvReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("CSV file too large to read: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            // Read only the size seen above, even if the file grows meanwhile
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading
+            }
+            buffer.flip();
+            return new MappedCsvReader(buffer);
+        }
+    }
+
+    /**
+     * Read CSV data held in memory.
+     *
+     * @param bytes UTF-8 CSV data
+     * @param length Number of bytes to read
+     * @return A reader positioned before the first record
+     */
+    public static MappedCsvReader wrap(byte[] bytes, int length) {
+        return new MappedCsvReader(ByteBuffer.wrap(bytes, 0, length));
+    }
+
+    /**
+     * Advance to the next record, skipping blank lines.
+     *
+     * @return True if a record was read, false at end of file
+     */
+    public boolean nextRecord() {
+        while (position < limit) {
+            recordStart = position;
+            scanRecord();
+            if (fieldCount > 1 || ends[0] > starts[0]) {
+                return true;
+            }
+        }
+        fieldCount = 0;
+        return false;
+    }
+
+    /**
+     * Get the number of fields in the current record.
+     *
+     * @return Field count
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Get the byte offset of the current record.
+     *
+     * @return Offset of its first byte
+     */
+    public int recordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Get the byte offset just past the current record, including its
+     * line break.
+     *
+     * @return Offset of the next record's first byte
+     */
+    public int recordEnd() {
+        return position;
+    }
+
+    /**
+     * Check whether the current record ends with a line break, rather than
+     * being cut off by the end of the file.
+     *
+     * @return True if the record is complete
+     */
+    public boolean recordTerminated() {
+        return position > 0 && buffer.get(position - 1) == '\n';
+    }
+
+    /**
+     * Check whether the current record starts with a character, such as a
+     * marker written over records that are no longer valid.
+     *
+     * @param c ASCII character to check for
+     * @return True if the record's first byte is that character
+     */
+    public boolean startsWith(char c) {
+        return recordStart < limit && buffer.get(recordStart) == c;
+    }
+
+    /**
+     * Get the byte offset where a field's content starts (after any
+     * opening quote).
+     *
+     * @param index Field index
+     * @return Offset in the file
+     */
+    public int fieldStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Get the byte offset where a field's content ends (before any
+     * closing quote).
+     *
+     * @param index Field index
+     * @return Offset in the file
+     */
+    public int fieldEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Check whether a quoted field contains escaped quotes ("").
+     *
+     * @param index Field index
+     * @return True if the raw bytes need unescaping
+     */
+    public boolean fieldEscaped(int index) {
+        return index < fieldCount && escaped[index];
+    }
+
+    /**
+     * Check whether a field is missing or empty.
+     *
+     * @param index Field index
+     * @return True if the field has no content
+     */
+    public boolean isEmpty(int index) {
+        return index >= fieldCount || ends[index] == starts[index];
+    }
+
+    /**
+     * Materialize a field as a String.
+     *
+     * @param index Field index
+     * @return The unescaped field value, or "" if the field is missing
+     */
+    public String field(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        int length = copyField(index);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Materialize a field, reusing an earlier String with identical content.
+     *
+     * Meant for columns such as class names where most rows repeat a handful
+     * of values; the file then costs one String per distinct value.
+     *
+     * @param index Field index
+     * @return The unescaped field value, or "" if the field is missing
+     */
+    public String pooledField(int index) {
+        if (index >= fieldCount) {
+            return "";
+        }
+        int length = copyField(index);
+        if (length > MAX_POOLED_LENGTH) {
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + scratch[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (POOL_SIZE - 1);
+        byte[] bytes = pooledBytes[slot];
+        if (bytes != null && Arrays.equals(bytes, 0, bytes.length, scratch, 0, length)) {
+            return pooledStrings[slot];
+        }
+        String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        pooledBytes[slot] = Arrays.copyOf(scratch, length);
+        pooledStrings[slot] = value;
+        return value;
+    }
+
+    /**
+     * Compare a field with an ASCII value, ignoring case and trailing
+     * spaces (fixed-width columns are padded with them), without allocating.
+     *
+     * @param index Field index
+     * @param value Value to compare against
+     * @return True if the field equals the value
+     */
+    public boolean fieldEqualsIgnoreCase(int index, String value) {
+        if (index >= fieldCount || escaped[index]) {
+            return index < fieldCount && field(index).stripTrailing().equalsIgnoreCase(value);
+        }
+        int start = starts[index];
+        int end = trimEnd(start, ends[index]);
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            int b = buffer.get(start + i);
+            if (Character.toLowerCase(b) != Character.toLowerCase(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a field holding an ISO date (yyyy-MM-dd) without allocating.
+     *
+     * @param index Field index
+     * @return The parsed date
+     * @throws java.time.DateTimeException If the field is not a valid date
+     */
+    public LocalDate dateField(int index) {
+        int start = index < fieldCount ? starts[index] : 0;
+        if (index < fieldCount && ends[index] - start == 10
+                && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        // Unusual formatting; let the standard parser report or handle it
+        return LocalDate.parse(field(index));
+    }
+
+    /**
+     * Scan one record starting at the current position.
+     */
+    private void scanRecord() {
+        fieldCount = 0;
+        while (true) {
+            ensureFieldCapacity();
+            int field = fieldCount++;
+            escaped[field] = false;
+
+            if (position < limit && buffer.get(position) == '"') {
+                // Quoted field: runs to the next quote that is not doubled
+                int start = ++position;
+                int end = limit;
+                while (position < limit) {
+                    byte b = buffer.get(position);
+                    if (b == '"') {
+                        if (position + 1 < limit && buffer.get(position + 1) == '"') {
+                            escaped[field] = true;
+                            position += 2;
+                            continue;
+                        }
+                        end = position++;
+                        break;
+                    }
+                    position++;
+                }
+                starts[field] = start;
+                ends[field] = end;
+                // Skip anything between the closing quote and the delimiter
+                while (position < limit && buffer.get(position) != ',' && buffer.get(position) != '\n') {
+                    position++;
+                }
+            } else {
+                int start = position;
+                while (position < limit) {
+                    byte b = buffer.get(position);
+                    if (b == ',' || b == '\n') {
+                        break;
+                    }
+                    position++;
+                }
+                starts[field] = start;
+                ends[field] = trimEnd(start, position);
+            }
+
+            if (position >= limit) {
+                return;
+            }
+            if (buffer.get(position++) == '\n') {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drop a trailing carriage return from an unquoted field.
+     */
+    private int trimEnd(int start, int end) {
+        while (end > start && (buffer.get(end - 1) == '\r')) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Copy a field into the scratch array, collapsing escaped quotes.
+     *
+     * @return Number of bytes copied
+     */
+    private int copyField(int index) {
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        if (!escaped[index]) {
+            return length;
+        }
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            scratch[out++] = scratch[i];
+            if (scratch[i] == '"' && i + 1 < length && scratch[i + 1] == '"') {
+                i++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Parse a run of ASCII digits.
+     *
+     * @return The value, or -1 if a non-digit is found
+     */
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = buffer.get(start + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private void ensureFieldCapacity() {
+        if (fieldCount == starts.length) {
+            int size = starts.length * 2;
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            escaped = Arrays.copyOf(escaped, size);
+        }
+    }
+}
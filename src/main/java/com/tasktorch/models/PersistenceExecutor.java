@@ -0,0 +1,92 @@
+package com.tasktorch.models;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Small shared thread pool that runs all model file I/O.
+ *
+ * Controllers submit loads and saves here instead of running them on the
+ * JavaFX Application Thread, and get a CompletableFuture back. Results are
+ * handed to the UI with FxDispatcher (see com.tasktorch.utils).
+ */
+public final class PersistenceExecutor {
+    private static final int THREADS = 2;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ScheduledExecutorService executor = createExecutor();
+
+    private PersistenceExecutor() {
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(THREADS, r -> {
+            Thread thread = new Thread(r, "tasktorch-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Cancelled write-behind flushes should not linger in the queue
+        pool.setRemoveOnCancelPolicy(true);
+        return pool;
+    }
+
+    /**
+     * Run a load or save in the background.
+     *
+     * @param work Work that produces a result
+     * @return Future completed with the result, or exceptionally on failure
+     */
+    public static <T> CompletableFuture<T> submit(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, executor);
+    }
+
+    /**
+     * Run a save in the background.
+     *
+     * @param work Work without a result
+     * @return Future completed when the work has finished
+     */
+    public static CompletableFuture<Void> run(Runnable work) {
+        return CompletableFuture.runAsync(work, executor);
+    }
+
+    /**
+     * Run work once after a delay.
+     *
+     * @param work Work to run
+     * @param delay Delay before running
+     * @param unit Unit of the delay
+     * @return Handle that can cancel the work
+     */
+    public static ScheduledFuture<?> schedule(Runnable work, long delay, TimeUnit unit) {
+        return executor.schedule(work, delay, unit);
+    }
+
+    /**
+     * Run work repeatedly with a fixed delay between runs.
+     *
+     * @param work Work to run
+     * @param delay Delay before the first run and between runs
+     * @param unit Unit of the delay
+     * @return Handle that can cancel the work
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(Runnable work, long delay, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(work, delay, delay, unit);
+    }
+
+    /**
+     * Stop accepting work; queued saves still run to completion.
+     */
+    public static void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
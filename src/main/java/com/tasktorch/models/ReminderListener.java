@@ -0,0 +1,19 @@
+package com.tasktorch.models;
+
+import java.util.List;
+
+/**
+ * Notified by ReminderScheduler when task reminders are due.
+ *
+ * Called on the scheduler's background thread; implementations that touch
+ * the UI must hand the work to the JavaFX Application Thread.
+ */
+public interface ReminderListener {
+
+    /**
+     * Called once for all reminders that fall due together.
+     *
+     * @param tasks Copies of the tasks to remind about, ordered by due date
+     */
+    void remindersDue(List<Task> tasks);
+}
@@ -0,0 +1,321 @@
+package com.tasktorch.models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires task reminders a configured number of days before they are due.
+ *
+ * Each open task with a due date has one reminder at REMIND_AT on the day
+ * (dueDate - remindDaysBeforeDue). Reminders are kept in a priority queue
+ * ordered by fire time and updated from repository change events, so adding
+ * or editing a task costs O(log n). The scheduler thread sleeps until the
+ * earliest reminder and then hands every reminder due within BATCH_WINDOW_MS
+ * to the listeners as one batch.
+ *
+ * The due date each task was last reminded about is saved in
+ * data/reminders.csv, so a restart does not show the same reminders again.
+ *
+ * All queue state is confined to the scheduler thread.
+ */
+public class ReminderScheduler {
+    private static final LocalTime REMIND_AT = LocalTime.of(9, 0);
+    private static final long BATCH_WINDOW_MS = 60 * 1000;
+    // The delay clock may stand still while the machine sleeps; re-check at least this often
+    private static final long MAX_SLEEP_MS = 60 * 60 * 1000;
+    private static final Path REMINDED_FILE = Paths.get("data/reminders.csv");
+    private static ReminderScheduler instance;
+
+    private final TaskRepository repository;
+    private final ScheduledThreadPoolExecutor worker;
+    private final List<ReminderListener> listeners = new CopyOnWriteArrayList<>();
+    private final TaskChangeListener changeListener;
+
+    private final PriorityQueue<Reminder> queue = new PriorityQueue<>();
+    // Current reminder per task; queue entries not in here are stale and skipped
+    private final Map<String, Reminder> scheduled = new HashMap<>();
+    // Due date each task was last reminded about, so edits don't repeat a reminder
+    private final Map<String, LocalDate> remindedDueDates = new HashMap<>();
+    private boolean enabled;
+    private int daysBefore;
+    private ScheduledFuture<?> wakeUp;
+    private long wakeUpAt = Long.MAX_VALUE;
+
+    /**
+     * One pending reminder.
+     */
+    private static final class Reminder implements Comparable<Reminder> {
+        final String taskId;
+        final LocalDate dueDate;
+        final long fireAt;
+
+        Reminder(String taskId, LocalDate dueDate, long fireAt) {
+            this.taskId = taskId;
+            this.dueDate = dueDate;
+            this.fireAt = fireAt;
+        }
+
+        @Override
+        public int compareTo(Reminder other) {
+            return Long.compare(fireAt, other.fireAt);
+        }
+    }
+
+    /**
+     * Create a scheduler for a repository. Reminders stay off until
+     * applySettings enables them.
+     *
+     * @param repository Repository whose tasks are watched
+     */
+    public ReminderScheduler(TaskRepository repository) {
+        this.repository = repository;
+        this.worker = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "tasktorch-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.setRemoveOnCancelPolicy(true);
+        this.changeListener = taskId -> {
+            try {
+                worker.execute(() -> taskChanged(taskId));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        };
+        repository.addChangeListener(changeListener);
+        // Runs before any rebuild, as the worker has a single thread
+        worker.execute(this::loadReminded);
+    }
+
+    /**
+     * Get the shared scheduler for the shared repository.
+     *
+     * @return The shared ReminderScheduler
+     */
+    public static synchronized ReminderScheduler getInstance() {
+        if (instance == null) {
+            instance = new ReminderScheduler(TaskRepository.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the scheduler. Called when the application exits.
+     */
+    public static void shutdownInstance() {
+        ReminderScheduler scheduler;
+        synchronized (ReminderScheduler.class) {
+            scheduler = instance;
+        }
+        if (scheduler != null) {
+            scheduler.repository.removeChangeListener(scheduler.changeListener);
+            scheduler.worker.shutdownNow();
+        }
+    }
+
+    /**
+     * Register a listener for due reminders.
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(ReminderListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener added with addListener.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(ReminderListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Turn reminders on or off and set how early they fire, rebuilding the
+     * queue from all tasks.
+     *
+     * @param settings Settings holding dailyReminder and remindDaysBeforeDue
+     */
+    public void applySettings(UserSettings settings) {
+        boolean enable = settings.isDailyReminder();
+        int days = Math.max(0, settings.getRemindDaysBeforeDue());
+        worker.execute(() -> rebuild(enable, days));
+    }
+
+    private void rebuild(boolean enable, int days) {
+        enabled = enable;
+        daysBefore = days;
+        queue.clear();
+        scheduled.clear();
+        cancelWakeUp();
+        if (!enabled) {
+            return;
+        }
+        // Past due dates never fire, so older tasks need not be visited
+        for (Task task : repository.tasksFrom(AppClock.today())) {
+            Task snapshot = repository.getTaskSnapshot(task.getTaskId());
+            if (snapshot != null) {
+                schedule(snapshot);
+            }
+        }
+    }
+
+    private void taskChanged(String taskId) {
+        Task task = repository.getTaskSnapshot(taskId);
+        if (task == null) {
+            scheduled.remove(taskId);
+            remindedDueDates.remove(taskId);
+        } else {
+            schedule(task);
+        }
+        if (queue.size() > 2 * scheduled.size() + 64) {
+            // Too many stale entries from edits; drop them
+            queue.clear();
+            queue.addAll(scheduled.values());
+        }
+    }
+
+    /**
+     * Queue (or re-queue) the reminder for a task.
+     */
+    private void schedule(Task task) {
+        String taskId = task.getTaskId();
+        scheduled.remove(taskId);
+        LocalDate dueDate = task.getDueDate();
+        if (!enabled || dueDate == null || task.getStatus() == Status.COMPLETED
+            || dueDate.isBefore(AppClock.today()) || dueDate.equals(remindedDueDates.get(taskId))) {
+            return;
+        }
+        long fireAt = dueDate.minusDays(daysBefore).atTime(REMIND_AT)
+            .atZone(AppClock.getClock().getZone()).toInstant().toEpochMilli();
+        Reminder reminder = new Reminder(taskId, dueDate, fireAt);
+        scheduled.put(taskId, reminder);
+        queue.add(reminder);
+        if (fireAt < wakeUpAt) {
+            wakeUpAt(fireAt);
+        }
+    }
+
+    /**
+     * Deliver every reminder due now or within the batch window, then sleep
+     * until the next one.
+     */
+    private void fire() {
+        wakeUp = null;
+        wakeUpAt = Long.MAX_VALUE;
+        long now = AppClock.getClock().millis();
+        List<Task> due = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().fireAt <= now + BATCH_WINDOW_MS) {
+            Reminder reminder = queue.poll();
+            if (scheduled.get(reminder.taskId) != reminder) {
+                continue;
+            }
+            scheduled.remove(reminder.taskId);
+            Task task = repository.getTaskSnapshot(reminder.taskId);
+            if (task != null && task.getStatus() != Status.COMPLETED && reminder.dueDate.equals(task.getDueDate())) {
+                remindedDueDates.put(reminder.taskId, reminder.dueDate);
+                due.add(task);
+            }
+        }
+
+        if (!due.isEmpty()) {
+            saveReminded();
+            due.sort(Comparator.comparing(Task::getDueDate));
+            List<Task> batch = Collections.unmodifiableList(due);
+            for (ReminderListener listener : listeners) {
+                try {
+                    listener.remindersDue(batch);
+                } catch (RuntimeException e) {
+                    System.err.println("Error delivering reminders: " + e.getMessage());
+                }
+            }
+        }
+
+        while (!queue.isEmpty() && scheduled.get(queue.peek().taskId) != queue.peek()) {
+            queue.poll();
+        }
+        if (!queue.isEmpty()) {
+            wakeUpAt(queue.peek().fireAt);
+        }
+    }
+
+    /**
+     * Read the due dates reminded about in earlier runs. Each line is
+     * "dueDate,taskId"; the id runs to the end of the line.
+     */
+    private void loadReminded() {
+        if (!Files.exists(REMINDED_FILE)) {
+            return;
+        }
+        FileCommitter.awaitPending(REMINDED_FILE);
+        try (BufferedReader reader = Files.newBufferedReader(REMINDED_FILE, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", 2);
+                if (parts.length == 2) {
+                    try {
+                        remindedDueDates.put(parts[1], LocalDate.parse(parts[0]));
+                    } catch (DateTimeParseException e) {
+                        // Skip a damaged line; at worst that reminder shows again
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading reminders: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Save the reminded due dates in the next group commit. Past due dates
+     * never fire again, so they are dropped.
+     */
+    private void saveReminded() {
+        LocalDate today = AppClock.today();
+        remindedDueDates.values().removeIf(dueDate -> dueDate.isBefore(today));
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LocalDate> entry : remindedDueDates.entrySet()) {
+            sb.append(entry.getValue()).append(',').append(entry.getKey()).append('\n');
+        }
+        try {
+            Files.createDirectories(REMINDED_FILE.toAbsolutePath().getParent());
+            FileCommitter.commitLater(REMINDED_FILE, sb.toString());
+        } catch (IOException e) {
+            System.err.println("Error saving reminders: " + e.getMessage());
+        }
+    }
+
+    private void wakeUpAt(long fireAt) {
+        cancelWakeUp();
+        long delay = Math.max(0, fireAt - AppClock.getClock().millis());
+        wakeUpAt = fireAt;
+        wakeUp = worker.schedule(this::fire, Math.min(delay, MAX_SLEEP_MS), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelWakeUp() {
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+            wakeUp = null;
+        }
+        wakeUpAt = Long.MAX_VALUE;
+    }
+}
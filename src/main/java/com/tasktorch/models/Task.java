@@ -1,20 +1,19 @@
 package com.tasktorch.models;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 
 /**
  * Represents a homework or assignment task.
+ *
+ * A Task is a view over one row of a TaskTable. Tasks created with the
+ * public constructors own a private one-row table; TaskRepository moves
+ * them into its shared table when they are added, and back out into a
+ * private copy when they are deleted, so a removed task keeps its values.
+ * Notes of stored tasks may be read from disk by getNotes (see TaskTable).
  */
 public class Task {
-    private String taskId;
-    private String title;
-    private LocalDate dueDate;
-    private String className;
-    private String notes;
-    private Status status;
-    private Priority priority;
-    private String googleCalendarEventId; // ID of corresponding Google Calendar event
+    // Replaced as a whole by moveTo, so a reader never pairs one table with another's row
+    private volatile Location location;
 
     /**
      * Constructor for Task.
@@ -29,33 +28,115 @@ public class Task {
      */
     public Task(String taskId, String title, LocalDate dueDate, String className, 
                 String notes, Status status, Priority priority) {
-        this.taskId = taskId;
-        this.title = title;
-        this.dueDate = dueDate;
-        this.className = className;
-        this.notes = notes != null ? notes : "";
-        this.status = status != null ? status : Status.PENDING;
-        this.priority = priority != null ? priority : Priority.MEDIUM;
-        this.googleCalendarEventId = null;
+        this(taskId, title, dueDate, className, notes, status, priority, null);
     }
     
     public Task(String taskId, String title, LocalDate dueDate, String className, 
                 String notes, Status status, Priority priority, String googleCalendarEventId) {
-        this.taskId = taskId;
-        this.title = title;
-        this.dueDate = dueDate;
-        this.className = className;
-        this.notes = notes != null ? notes : "";
-        this.status = status != null ? status : Status.PENDING;
-        this.priority = priority != null ? priority : Priority.MEDIUM;
-        this.googleCalendarEventId = googleCalendarEventId;
+        TaskTable own = new TaskTable(1);
+        int row = own.add(taskId, title, dueDate, className,
+            notes != null ? notes : "",
+            status != null ? status : Status.PENDING,
+            priority != null ? priority : Priority.MEDIUM,
+            googleCalendarEventId);
+        this.location = new Location(own, row);
+    }
+
+    /**
+     * Create a view over an existing row.
+     *
+     * @param table Table holding the task
+     * @param row Row of the task
+     */
+    Task(TaskTable table, int row) {
+        this.location = new Location(table, row);
+    }
+
+    TaskTable table() {
+        return location.table;
+    }
+
+    int row() {
+        return location.row;
+    }
+
+    /**
+     * Get the due date as an epoch day, without creating a LocalDate.
+     *
+     * @return Days since 1970-01-01, or TaskTable.NO_DATE
+     */
+    int dueDay() {
+        Location at = location;
+        int day = at.table.dueDay(at.row);
+        while (at != location) {
+            at = location;
+            day = at.table.dueDay(at.row);
+        }
+        return day;
+    }
+
+    /**
+     * Point this view at another row, e.g. after copying it into a shared table.
+     *
+     * @param newTable Table now holding the task
+     * @param newRow Row of the task in that table
+     */
+    void moveTo(TaskTable newTable, int newRow) {
+        this.location = new Location(newTable, newRow);
+    }
+
+    /**
+     * Copy this task's values out of a shared table into a private one.
+     * The old row must only be reused after this returns.
+     */
+    void detach() {
+        Location at = location;
+        TaskTable own = new TaskTable(1);
+        own.copyRow(at.table, at.row);
+        moveTo(own, 0);
+    }
+
+    /**
+     * Read a field from wherever the task is stored. If the task moved while
+     * it was read, its old row may already hold another task, so the field
+     * is read again from the new location.
+     */
+    private <T> T read(Field<T> field) {
+        Location at = location;
+        T value = field.get(at.table, at.row);
+        while (at != location) {
+            at = location;
+            value = field.get(at.table, at.row);
+        }
+        return value;
+    }
+
+    /**
+     * Accessor of one column of a TaskTable.
+     */
+    @FunctionalInterface
+    private interface Field<T> {
+        T get(TaskTable table, int row);
+    }
+
+    /**
+     * Table and row holding the task's values.
+     */
+    private static final class Location {
+        private final TaskTable table;
+        private final int row;
+
+        Location(TaskTable table, int row) {
+            this.table = table;
+            this.row = row;
+        }
     }
 
     /**
      * Mark the task as completed.
      */
     public void markCompleted() {
-        this.status = Status.COMPLETED;
+        setStatus(Status.COMPLETED);
     }
 
     /**
@@ -64,8 +145,7 @@ public class Task {
      * @return Number of days until due date (negative if overdue)
      */
     public int daysUntilDue() {
-        LocalDate today = LocalDate.now();
-        return (int) ChronoUnit.DAYS.between(today, dueDate);
+        return (int) (dueDay() - AppClock.todayEpochDay());
     }
 
     /**
@@ -85,72 +165,79 @@ public class Task {
             daysText = days + " days remaining";
         }
         
-        return title + " (" + className + ") - " + daysText + " - " + priority.getValue().toUpperCase();
+        return getTitle() + " (" + getClassName() + ") - " + daysText + " - " + getPriority().getValue().toUpperCase();
     }
 
     // Getters and Setters
     public String getTaskId() {
-        return taskId;
+        return read(TaskTable::taskId);
     }
 
     public void setTaskId(String taskId) {
-        this.taskId = taskId;
+        Location at = location;
+        at.table.setTaskId(at.row, taskId);
     }
 
     public String getTitle() {
-        return title;
+        return read(TaskTable::title);
     }
 
     public void setTitle(String title) {
-        this.title = title;
+        Location at = location;
+        at.table.setTitle(at.row, title);
     }
 
     public LocalDate getDueDate() {
-        return dueDate;
+        return read(TaskTable::dueDate);
     }
 
     public void setDueDate(LocalDate dueDate) {
-        this.dueDate = dueDate;
+        Location at = location;
+        at.table.setDueDate(at.row, dueDate);
     }
 
     public String getClassName() {
-        return className;
+        return read(TaskTable::className);
     }
 
     public void setClassName(String className) {
-        this.className = className;
+        Location at = location;
+        at.table.setClassName(at.row, className);
     }
 
     public String getNotes() {
-        return notes;
+        return read(TaskTable::notes);
     }
 
     public void setNotes(String notes) {
-        this.notes = notes;
+        Location at = location;
+        at.table.setNotes(at.row, notes);
     }
 
     public Status getStatus() {
-        return status;
+        return read(TaskTable::status);
     }
 
     public void setStatus(Status status) {
-        this.status = status;
+        Location at = location;
+        at.table.setStatus(at.row, status);
     }
 
     public Priority getPriority() {
-        return priority;
+        return read(TaskTable::priority);
     }
 
     public void setPriority(Priority priority) {
-        this.priority = priority;
+        Location at = location;
+        at.table.setPriority(at.row, priority);
     }
     
     public String getGoogleCalendarEventId() {
-        return googleCalendarEventId;
+        return read(TaskTable::eventId);
     }
     
     public void setGoogleCalendarEventId(String googleCalendarEventId) {
-        this.googleCalendarEventId = googleCalendarEventId;
+        Location at = location;
+        at.table.setEventId(at.row, googleCalendarEventId);
     }
 }
-
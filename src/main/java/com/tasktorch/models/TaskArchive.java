@@ -0,0 +1,530 @@
+package com.tasktorch.models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed cold storage for tasks moved out of the working set.
+ *
+ * data/archive/ holds a blocks file and its index. Each block is up to
+ * BLOCK_ROWS tasks in the tasks.csv format, deflate-compressed. The index
+ * lists the live blocks with their position, row count and a Bloom filter
+ * of their task ids and search words, so lookups and searches only
+ * decompress the blocks that may match.
+ *
+ * Blocks are never changed in place: removing tasks appends a replacement
+ * block and drops the old one from the index, and once most of the file is
+ * dropped blocks the live ones are copied to a new file. The index names
+ * the blocks file it describes and is replaced atomically after that file
+ * is synced, so a crash leaves at worst unreferenced bytes behind.
+ *
+ * The same task may briefly be stored twice after a crash while tasks were
+ * moving in or out; lookups and searches return the newest copy.
+ */
+public class TaskArchive {
+    private static final String DIRECTORY = "archive";
+    private static final String INDEX_FILE = "index";
+    private static final int INDEX_MAGIC = 0x54544149; // "TTAI"
+    private static final int INDEX_VERSION = 1;
+    private static final int BLOCK_ROWS = 512;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 6;
+    // Prefix queries are tested against word prefixes of this length
+    private static final int BLOOM_PREFIX_LENGTH = 3;
+    private static final long REWRITE_MIN_BYTES = 1024 * 1024;
+
+    private final TaskManager taskManager;
+    private final Path directory;
+    private final Path indexFile;
+    // Live blocks, oldest first
+    private final List<Block> blocks = new ArrayList<>();
+    private int generation;
+    private long fileSize;
+
+    /**
+     * Index entry of one compressed block.
+     */
+    private static final class Block {
+        final long offset;
+        final int length;
+        final int rawLength;
+        final int rows;
+        final long[] bloom;
+
+        Block(long offset, int length, int rawLength, int rows, long[] bloom) {
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.rows = rows;
+            this.bloom = bloom;
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            int mask = bloom.length * 64 - 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Check whether every word of a query may occur in this block.
+         */
+        boolean mightMatch(Map<String, Boolean> words) {
+            for (Map.Entry<String, Boolean> entry : words.entrySet()) {
+                String word = entry.getKey();
+                if (!entry.getValue()) {
+                    if (!mightContain(word)) {
+                        return false;
+                    }
+                } else if (word.length() >= BLOOM_PREFIX_LENGTH
+                    && !mightContain(prefixKey(word))) {
+                    return false;
+                }
+                // Shorter prefixes cannot be tested; assume they match
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Open the archive, reading its index.
+     *
+     * @param taskManager TaskManager used to format and parse task rows
+     */
+    public TaskArchive(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        this.directory = taskManager.getDataDirectory().resolve(DIRECTORY);
+        this.indexFile = directory.resolve(INDEX_FILE);
+        readIndex();
+    }
+
+    /**
+     * Get the number of archived tasks.
+     *
+     * @return Rows in all live blocks
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (Block block : blocks) {
+            size += block.rows;
+        }
+        return size;
+    }
+
+    /**
+     * Add tasks to the archive. The tasks are synced to disk before this
+     * returns, so callers may then remove them from the working set.
+     *
+     * @param tasks Tasks to add; they are copied, not kept
+     * @throws IOException If the tasks could not be written
+     */
+    public synchronized void append(List<Task> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        List<Block> added = new ArrayList<>();
+        try (FileChannel channel = openBlocks()) {
+            for (int start = 0; start < tasks.size(); start += BLOCK_ROWS) {
+                added.add(writeBlock(channel, tasks.subList(start, Math.min(tasks.size(), start + BLOCK_ROWS))));
+            }
+            channel.force(false);
+        }
+        blocks.addAll(added);
+        writeIndex();
+    }
+
+    /**
+     * Look up an archived task.
+     *
+     * @param taskId Id of the task
+     * @return A copy of the task, or null if it is not archived
+     * @throws IOException If a block could not be read
+     */
+    public synchronized Task find(String taskId) throws IOException {
+        String key = idKey(taskId);
+        // Newest first, so the latest copy wins
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            Block block = blocks.get(i);
+            if (!block.mightContain(key)) {
+                continue;
+            }
+            for (Task task : readBlock(block, new TaskTable(block.rows))) {
+                if (task.getTaskId().equals(taskId)) {
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Search the titles, class names and notes of archived tasks, with the
+     * same query syntax as TaskSearchIndex. Blocks are searched newest
+     * first until enough matches are found, so the results are the best of
+     * the most recently archived matches rather than of the whole archive.
+     *
+     * @param query Query text
+     * @param limit Maximum number of results
+     * @param filter Condition results must also meet
+     * @return Copies of the best matching tasks, best first
+     * @throws IOException If a block could not be read
+     */
+    public synchronized List<Task> search(String query, int limit, Predicate<Task> filter) throws IOException {
+        Map<String, Boolean> words = TaskSearchIndex.queryWords(query);
+        if (words.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        TaskTable matchTable = new TaskTable(limit);
+        TaskSearchIndex matches = new TaskSearchIndex();
+        Set<String> seen = new HashSet<>();
+        int matchCount = 0;
+        for (int i = blocks.size() - 1; i >= 0 && matchCount < limit; i--) {
+            Block block = blocks.get(i);
+            if (!block.mightMatch(words)) {
+                continue;
+            }
+            TaskSearchIndex blockIndex = new TaskSearchIndex();
+            List<Task> blockTasks = readBlock(block, new TaskTable(block.rows));
+            for (Task task : blockTasks) {
+                blockIndex.put(task);
+            }
+            for (Task task : blockIndex.search(query, block.rows, filter)) {
+                // Newest copy first, so an older duplicate is skipped
+                if (seen.add(task.getTaskId())) {
+                    matches.put(new Task(matchTable, matchTable.copyRow(task.table(), task.row())));
+                    matchCount++;
+                }
+            }
+        }
+        // Rank the matches against each other
+        List<Task> results = new ArrayList<>();
+        for (Task task : matches.search(query, limit, null)) {
+            task.detach();
+            results.add(task);
+        }
+        return results;
+    }
+
+    /**
+     * Remove tasks from the archive, e.g. after restoring them.
+     *
+     * @param taskIds Ids of the tasks to remove; unknown ids are ignored
+     * @throws IOException If the archive could not be rewritten
+     */
+    public synchronized void remove(Collection<String> taskIds) throws IOException {
+        List<Block> affected = new ArrayList<>();
+        for (Block block : blocks) {
+            for (String taskId : taskIds) {
+                if (block.mightContain(idKey(taskId))) {
+                    affected.add(block);
+                    break;
+                }
+            }
+        }
+        if (affected.isEmpty()) {
+            return;
+        }
+        Set<String> ids = new HashSet<>(taskIds);
+        List<Block> dropped = new ArrayList<>();
+        List<Block> replacements = new ArrayList<>();
+        try (FileChannel channel = openBlocks()) {
+            for (Block block : affected) {
+                List<Task> kept = new ArrayList<>();
+                for (Task task : readBlock(block, new TaskTable(block.rows))) {
+                    if (!ids.contains(task.getTaskId())) {
+                        kept.add(task);
+                    }
+                }
+                if (kept.size() == block.rows) {
+                    continue; // A false positive of the filter
+                }
+                dropped.add(block);
+                if (!kept.isEmpty()) {
+                    replacements.add(writeBlock(channel, kept));
+                }
+            }
+            channel.force(false);
+        }
+        if (dropped.isEmpty()) {
+            return;
+        }
+        blocks.removeAll(dropped);
+        blocks.addAll(replacements);
+        long liveBytes = 0;
+        for (Block block : blocks) {
+            liveBytes += block.length;
+        }
+        if (fileSize >= REWRITE_MIN_BYTES && liveBytes < fileSize / 2) {
+            rewriteBlocks();
+        } else {
+            writeIndex();
+        }
+    }
+
+    private Path blocksFile(int generation) {
+        return directory.resolve("blocks." + generation);
+    }
+
+    private static String idKey(String taskId) {
+        return "#" + taskId;
+    }
+
+    private static String prefixKey(String word) {
+        return ">" + word.substring(0, Math.min(word.length(), BLOOM_PREFIX_LENGTH));
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a string's characters.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private FileChannel openBlocks() throws IOException {
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(blocksFile(generation),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Write after the last block, overwriting bytes left by an interrupted append
+        channel.position(fileSize);
+        return channel;
+    }
+
+    /**
+     * Compress tasks into a new block at the channel's position.
+     */
+    private Block writeBlock(FileChannel channel, List<Task> tasks) throws IOException {
+        StringBuilder csv = new StringBuilder();
+        Set<String> keys = new HashSet<>();
+        for (Task task : tasks) {
+            csv.append(taskManager.formatTask(task)).append('\n');
+            keys.add(idKey(task.getTaskId()));
+            addWords(keys, task.getTitle());
+            addWords(keys, task.getClassName());
+            addWords(keys, task.getNotes());
+        }
+        byte[] raw = csv.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(raw);
+        long offset = channel.position();
+        ByteBuffer buffer = ByteBuffer.wrap(compressed);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        fileSize = channel.position();
+        return new Block(offset, compressed.length, raw.length, tasks.size(), bloomOf(keys));
+    }
+
+    private static void addWords(Set<String> keys, String text) {
+        for (String word : TaskSearchIndex.tokenize(text)) {
+            keys.add(word);
+            keys.add(prefixKey(word));
+        }
+    }
+
+    private static long[] bloomOf(Set<String> keys) {
+        // A power of two number of bits, so positions can be masked
+        int bits = Integer.highestOneBit(Math.max(64, keys.size() * BLOOM_BITS_PER_KEY - 1)) << 1;
+        long[] bloom = new long[bits / 64];
+        for (String key : keys) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (h1 + i * h2) & (bits - 1);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return bloom;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, raw.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress a block into rows of a task table.
+     */
+    private List<Task> readBlock(Block block, TaskTable table) throws IOException {
+        byte[] compressed = new byte[block.length];
+        try (FileChannel channel = FileChannel.open(blocksFile(generation), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(compressed);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, block.offset + buffer.position()) < 0) {
+                    throw new IOException("Archive block truncated");
+                }
+            }
+        }
+        byte[] raw = new byte[block.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, raw.length - length);
+                if (read == 0 && inflater.needsInput()) {
+                    throw new IOException("Archive block truncated");
+                }
+                length += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Archive block corrupt: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        List<Task> tasks = new ArrayList<>(block.rows);
+        MappedCsvReader reader = MappedCsvReader.wrap(raw, raw.length);
+        while (reader.nextRecord()) {
+            Task task = taskManager.readTask(reader, table);
+            if (task != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Copy the live blocks into a new blocks file and switch to it.
+     */
+    private void rewriteBlocks() throws IOException {
+        int next = generation + 1;
+        List<Block> moved = new ArrayList<>(blocks.size());
+        long position = 0;
+        try (FileChannel source = FileChannel.open(blocksFile(generation), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(blocksFile(next), StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Block block : blocks) {
+                long copied = 0;
+                while (copied < block.length) {
+                    copied += source.transferTo(block.offset + copied, block.length - copied, target);
+                }
+                moved.add(new Block(position, block.length, block.rawLength, block.rows, block.bloom));
+                position += block.length;
+            }
+            target.force(false);
+        }
+        int previous = generation;
+        blocks.clear();
+        blocks.addAll(moved);
+        generation = next;
+        fileSize = position;
+        writeIndex();
+        Files.deleteIfExists(blocksFile(previous));
+    }
+
+    private void readIndex() {
+        try {
+            if (Files.exists(indexFile)) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+                    if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                        throw new IOException("Unknown archive index format");
+                    }
+                    generation = in.readInt();
+                    fileSize = in.readLong();
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        long offset = in.readLong();
+                        int length = in.readInt();
+                        int rawLength = in.readInt();
+                        int rows = in.readInt();
+                        long[] bloom = new long[in.readInt()];
+                        for (int j = 0; j < bloom.length; j++) {
+                            bloom[j] = in.readLong();
+                        }
+                        blocks.add(new Block(offset, length, rawLength, rows, bloom));
+                    }
+                }
+            }
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            // Remove blocks files left by an interrupted rewrite
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "blocks.*")) {
+                for (Path file : files) {
+                    if (!file.equals(blocksFile(generation))) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading task archive index: " + e.getMessage());
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        Files.createDirectories(directory);
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(generation);
+            out.writeLong(fileSize);
+            out.writeInt(blocks.size());
+            for (Block block : blocks) {
+                out.writeLong(block.offset);
+                out.writeInt(block.length);
+                out.writeInt(block.rawLength);
+                out.writeInt(block.rows);
+                out.writeInt(block.bloom.length);
+                for (long word : block.bloom) {
+                    out.writeLong(word);
+                }
+            }
+            out.flush();
+            channel.force(false);
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,199 @@
+package com.tasktorch.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Bitmap indexes on status, priority and class name.
+ *
+ * Each status, each priority and each class name has a bitmap with one bit
+ * per task table row, built from the table's own columns: class bitmaps are
+ * keyed by the table's class dictionary code. A filter is answered by
+ * intersecting the bitmaps involved, a few thousand word operations even
+ * for a million tasks, instead of scanning every task. The table reuses
+ * rows of removed tasks, so the bitmaps stay dense.
+ * Not thread-safe; TaskRepository guards it with its own lock.
+ */
+public class TaskBitmapIndex {
+    private Task[] rows = new Task[1024];
+    private final BitSet live = new BitSet();
+
+    private final EnumMap<Status, BitSet> byStatus = new EnumMap<>(Status.class);
+    private final EnumMap<Priority, BitSet> byPriority = new EnumMap<>(Priority.class);
+    // Indexed by TaskTable class code; null until a row uses the code
+    private final List<BitSet> byClass = new ArrayList<>();
+
+    /**
+     * Create an empty index.
+     */
+    public TaskBitmapIndex() {
+        for (Status status : Status.values()) {
+            byStatus.put(status, new BitSet());
+        }
+        for (Priority priority : Priority.values()) {
+            byPriority.put(priority, new BitSet());
+        }
+    }
+
+    /**
+     * Add a task, or move its bits if its status, priority or class changed.
+     *
+     * @param task Task to index; must belong to the repository's table
+     */
+    public void put(Task task) {
+        int ordinal = task.row();
+        if (live.get(ordinal)) {
+            clearBits(ordinal);
+        } else {
+            ensureCapacity(ordinal);
+        }
+        TaskTable table = task.table();
+        rows[ordinal] = task;
+        live.set(ordinal);
+        byStatus.get(table.status(ordinal)).set(ordinal);
+        byPriority.get(table.priority(ordinal)).set(ordinal);
+        int code = table.classCode(ordinal);
+        if (code != TaskTable.NO_CLASS) {
+            while (byClass.size() <= code) {
+                byClass.add(null);
+            }
+            if (byClass.get(code) == null) {
+                byClass.set(code, new BitSet());
+            }
+            byClass.get(code).set(ordinal);
+        }
+    }
+
+    /**
+     * Remove a task from the index.
+     *
+     * @param task Task to remove
+     */
+    public void remove(Task task) {
+        int ordinal = task.row();
+        if (!live.get(ordinal)) {
+            return;
+        }
+        clearBits(ordinal);
+        rows[ordinal] = null;
+    }
+
+    /**
+     * Get the rows matching every given criterion.
+     *
+     * @param status Required status, or null for any
+     * @param priority Required priority, or null for any
+     * @param className Required class name, or null for any
+     * @return A new bitmap of matching row ordinals
+     */
+    public BitSet query(Status status, Priority priority, String className) {
+        BitSet result = (BitSet) live.clone();
+        if (status != null) {
+            result.and(byStatus.get(status));
+        }
+        if (priority != null) {
+            result.and(byPriority.get(priority));
+        }
+        if (className != null) {
+            BitSet bits = classBits(TaskTable.findClassCode(className));
+            if (bits == null) {
+                return new BitSet();
+            }
+            result.and(bits);
+        }
+        return result;
+    }
+
+    /**
+     * Get the tasks in a bitmap returned by query.
+     *
+     * @param matches Row ordinals
+     * @return A new list of tasks in row order
+     */
+    public List<Task> tasks(BitSet matches) {
+        List<Task> result = new ArrayList<>(matches.cardinality());
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            result.add(rows[ordinal]);
+        }
+        return result;
+    }
+
+    /**
+     * Check whether a task is in a bitmap returned by query.
+     *
+     * @param task Task to check
+     * @param matches Row ordinals
+     * @return True if the task's row is set
+     */
+    public boolean contains(Task task, BitSet matches) {
+        return matches.get(task.row());
+    }
+
+    /**
+     * Get the class names used by at least one task.
+     *
+     * @return Sorted class names
+     */
+    public List<String> classNames() {
+        TreeSet<String> names = new TreeSet<>();
+        for (int code = 0; code < byClass.size(); code++) {
+            BitSet bits = byClass.get(code);
+            if (bits != null && !bits.isEmpty()) {
+                String name = TaskTable.classNameOf(code);
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Remove every task from the index.
+     */
+    public void clear() {
+        Arrays.fill(rows, null);
+        live.clear();
+        for (BitSet bits : byStatus.values()) {
+            bits.clear();
+        }
+        for (BitSet bits : byPriority.values()) {
+            bits.clear();
+        }
+        byClass.clear();
+    }
+
+    /**
+     * Clear a row from every bitmap. The row's old values are already gone
+     * from the table, so each bitmap is cleared; there are only a handful of
+     * statuses and priorities, and one bitmap per class name in use.
+     */
+    private void clearBits(int ordinal) {
+        live.clear(ordinal);
+        for (BitSet bits : byStatus.values()) {
+            bits.clear(ordinal);
+        }
+        for (BitSet bits : byPriority.values()) {
+            bits.clear(ordinal);
+        }
+        for (BitSet bits : byClass) {
+            if (bits != null) {
+                bits.clear(ordinal);
+            }
+        }
+    }
+
+    private BitSet classBits(int code) {
+        return code != TaskTable.NO_CLASS && code < byClass.size() ? byClass.get(code) : null;
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal >= rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(ordinal + 1, rows.length * 2));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.tasktorch.models;
+
+/**
+ * Notified by TaskRepository whenever a task is added, changed or removed.
+ *
+ * Listeners are called while the repository lock is held, possibly from a
+ * background thread, so they must be quick and must not call back into the
+ * repository from another thread and wait for it.
+ */
+public interface TaskChangeListener {
+
+    /**
+     * Called after a task changed.
+     *
+     * @param taskId Id of the task that was added, changed or removed
+     */
+    void taskChanged(String taskId);
+}
@@ -0,0 +1,184 @@
+package com.tasktorch.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of tasks by due date.
+ *
+ * Range queries only visit the dates inside the range, so rendering a week
+ * costs time proportional to that week's tasks rather than the full history.
+ * Each date holds a plain array of task table rows, and every per-task array
+ * here is indexed by row, so no per-task map entries are needed.
+ * Not thread-safe; TaskRepository guards it with its own lock.
+ */
+public class TaskDateIndex {
+    private final NavigableMap<Integer, DayRows> byDay = new TreeMap<>();
+    private final BitSet indexed = new BitSet();
+    private Task[] tasks = new Task[1024];
+    private int[] indexedDays = new int[1024];
+    // Position of each row within its day's array, for constant-time removal
+    private int[] positions = new int[1024];
+
+    /**
+     * Table rows of the tasks due on one day, in no particular order.
+     */
+    private static final class DayRows {
+        int[] rows = new int[4];
+        int size;
+    }
+
+    /**
+     * Add a task, or move it if its due date changed since it was indexed.
+     *
+     * @param task Task to index; must belong to the repository's table
+     */
+    public void put(Task task) {
+        int row = task.row();
+        removeRow(row);
+        int day = task.dueDay();
+        if (day == TaskTable.NO_DATE) {
+            return;
+        }
+        ensureCapacity(row);
+        DayRows dayRows = byDay.computeIfAbsent(day, d -> new DayRows());
+        if (dayRows.size == dayRows.rows.length) {
+            dayRows.rows = Arrays.copyOf(dayRows.rows, dayRows.size * 2);
+        }
+        positions[row] = dayRows.size;
+        dayRows.rows[dayRows.size++] = row;
+        tasks[row] = task;
+        indexedDays[row] = day;
+        indexed.set(row);
+    }
+
+    /**
+     * Remove a task from the index.
+     *
+     * @param task Task to remove
+     */
+    public void remove(Task task) {
+        removeRow(task.row());
+    }
+
+    /**
+     * Remove every task from the index.
+     */
+    public void clear() {
+        byDay.clear();
+        indexed.clear();
+        Arrays.fill(tasks, null);
+    }
+
+    /**
+     * Get the tasks due within a date range, ordered by due date.
+     *
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     * @return A new list of matching tasks
+     */
+    public List<Task> tasksBetween(LocalDate from, LocalDate to) {
+        return tasksBetween(from, to, null);
+    }
+
+    /**
+     * Get the tasks due within a date range whose rows are in a bitmap,
+     * ordered by due date.
+     *
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     * @param rows Table rows to include, or null for all
+     * @return A new list of matching tasks
+     */
+    public List<Task> tasksBetween(LocalDate from, LocalDate to, BitSet rows) {
+        List<Task> result = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+        for (DayRows dayRows : byDay.subMap((int) from.toEpochDay(), true, (int) to.toEpochDay(), true).values()) {
+            for (int i = 0; i < dayRows.size; i++) {
+                int row = dayRows.rows[i];
+                if (rows == null || rows.get(row)) {
+                    result.add(tasks[row]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the tasks due on or after a date, ordered by due date.
+     *
+     * @param from First day (inclusive)
+     * @return A new list of matching tasks
+     */
+    public List<Task> tasksFrom(LocalDate from) {
+        List<Task> result = new ArrayList<>();
+        for (DayRows dayRows : byDay.tailMap((int) from.toEpochDay(), true).values()) {
+            for (int i = 0; i < dayRows.size; i++) {
+                result.add(tasks[dayRows.rows[i]]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the tasks due before a date whose rows are in a bitmap.
+     *
+     * @param before Day after the last included day
+     * @param rows Table rows to include
+     * @return A new list of matching tasks
+     */
+    public List<Task> tasksBefore(LocalDate before, BitSet rows) {
+        List<Task> result = new ArrayList<>();
+        for (DayRows dayRows : byDay.headMap((int) before.toEpochDay(), false).values()) {
+            for (int i = 0; i < dayRows.size; i++) {
+                int row = dayRows.rows[i];
+                if (rows.get(row)) {
+                    result.add(tasks[row]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the tasks due on a single day.
+     *
+     * @param day Day to look up
+     * @return A new list of matching tasks
+     */
+    public List<Task> tasksOn(LocalDate day) {
+        return tasksBetween(day, day, null);
+    }
+
+    private void removeRow(int row) {
+        if (!indexed.get(row)) {
+            return;
+        }
+        DayRows dayRows = byDay.get(indexedDays[row]);
+        // Move the day's last row into the gap
+        int last = dayRows.rows[--dayRows.size];
+        dayRows.rows[positions[row]] = last;
+        positions[last] = positions[row];
+        if (dayRows.size == 0) {
+            byDay.remove(indexedDays[row]);
+        }
+        tasks[row] = null;
+        indexed.clear(row);
+    }
+
+    private void ensureCapacity(int row) {
+        if (row >= tasks.length) {
+            int capacity = Math.max(row + 1, tasks.length * 2);
+            tasks = Arrays.copyOf(tasks, capacity);
+            indexedDays = Arrays.copyOf(indexedDays, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package com.tasktorch.models;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row-offset index into tasks.csv, used to update the file in place.
+ *
+ * tasks.csv is written with status and priority padded to a fixed width
+ * (see TaskManager.formatStoredTask), so a task whose status or priority
+ * changed only has those bytes overwritten. Any other change appends the
+ * new row at the end and turns the old one into a tombstone by overwriting
+ * its first byte with TaskManager.TOMBSTONE; deleted tasks are tombstoned
+ * the same way, and readers skip tombstones. Once tombstones would make up
+ * half of the file, or too many rows changed at once, the file is
+ * rewritten from scratch instead.
+ *
+ * Patches are not atomic, but the task journal keeps every change until
+ * the patch is forced to disk, so a crash part-way through is repaired by
+ * replaying it. A last row without a line break makes the next save a full
+ * rewrite.
+ *
+ * Notes are not read into memory at load. The table keeps a pointer to
+ * each task's notes column and reads it through a NotesFile held open on
+ * that version of tasks.csv, which stays readable after the file has been
+ * replaced. Notes edited since the load stay in memory until the next full
+ * rewrite, when every unchanged row is pointed at the new file.
+ *
+ * Offsets are kept by task table row; the table reports rows it releases.
+ * Not thread-safe; TaskRepository guards it with its own lock and only
+ * writes a prepared Patch or rewrite outside it.
+ */
+public class TaskFileIndex {
+    private static final int FLAGS_WIDTH = TaskManager.STATUS_WIDTH + 1 + TaskManager.PRIORITY_WIDTH;
+    // Beyond this many appended rows, rewriting the file beats formatting them under the lock
+    private static final int MAX_PATCH_ROWS = 1000;
+
+    private final TaskManager taskManager;
+    private final Path file;
+    // Per table row: offset of its saved row (0 if none), the row's length in
+    // bytes, and where its status column starts within it (0 if not padded)
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int[] statusOffsets = new int[1024];
+    // Saved rows of released table rows, still to be tombstoned
+    private long[] released = new long[64];
+    private int releasedCount;
+    private long fileSize;
+    private long deadBytes;
+    private boolean rewriteNeeded = true;
+    private NotesFile notesFile;
+
+    /**
+     * Reads notes columns out of one version of tasks.csv.
+     *
+     * Pointers pack the column's offset, its length in bytes and whether it
+     * holds escaped quotes into one long, so a row stores 8 bytes rather
+     * than a String. Reads are positional and safe from any thread.
+     */
+    static final class NotesFile {
+        private static final int MAX_LENGTH = (1 << 23) - 1;
+        private static final long MAX_OFFSET = (1L << 40) - 1;
+
+        private final Path path;
+        private final Object fileKey;
+        private FileChannel channel;
+        private boolean closed;
+
+        private NotesFile(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        }
+
+        static NotesFile open(Path path) throws IOException {
+            return new NotesFile(path);
+        }
+
+        /**
+         * Make a pointer to a notes column.
+         *
+         * @return The pointer, or 0 if the column is empty or too large to point at
+         */
+        static long pointer(long offset, int length, boolean escaped) {
+            if (length <= 0 || length > MAX_LENGTH || offset > MAX_OFFSET) {
+                return 0;
+            }
+            return offset << 24 | (long) length << 1 | (escaped ? 1 : 0);
+        }
+
+        /**
+         * Read the notes a pointer refers to.
+         *
+         * @return The notes, or "" if they could not be read
+         */
+        String read(long pointer) {
+            long offset = pointer >>> 24;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (pointer >>> 1) & MAX_LENGTH);
+            // An interrupt during a read would close the channel for every reader
+            boolean interrupted = Thread.interrupted();
+            try {
+                FileChannel current = channel();
+                while (buffer.hasRemaining() && current.read(buffer, offset + buffer.position()) >= 0) {
+                    // Keep reading
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading task notes: " + e.getMessage());
+                return "";
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String value = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+            return (pointer & 1) != 0 ? value.replace("\"\"", "\"") : value;
+        }
+
+        /**
+         * Get the channel, reopening it if an interrupt closed it and the
+         * path still names the same file.
+         */
+        private synchronized FileChannel channel() throws IOException {
+            if (!channel.isOpen() && !closed) {
+                Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                if (key == null || !key.equals(fileKey)) {
+                    throw new IOException(path + " was replaced");
+                }
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            return channel;
+        }
+
+        synchronized void close() {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to read from it
+            }
+        }
+    }
+
+    /**
+     * Writes that bring tasks.csv up to date, prepared under the lock.
+     */
+    static final class Patch {
+        final long appendAt;
+        final byte[] appended;
+        final long[] flagOffsets;
+        // FLAGS_WIDTH bytes per entry of flagOffsets
+        final byte[] flags;
+        final long[] tombstones;
+
+        Patch(long appendAt, byte[] appended, long[] flagOffsets, byte[] flags, long[] tombstones) {
+            this.appendAt = appendAt;
+            this.appended = appended;
+            this.flagOffsets = flagOffsets;
+            this.flags = flags;
+            this.tombstones = tombstones;
+        }
+
+        boolean isEmpty() {
+            return appended.length == 0 && flagOffsets.length == 0 && tombstones.length == 0;
+        }
+    }
+
+    /**
+     * Where each task landed in a rewritten tasks.csv.
+     */
+    static final class Layout {
+        final String[] taskIds;
+        final int[] rows;
+        final long[] offsets;
+        final int[] lengths;
+        final int[] statusOffsets;
+        final long[] notes;
+        int count;
+        long size;
+        NotesFile notesFile;
+
+        Layout(int capacity) {
+            taskIds = new String[capacity];
+            rows = new int[capacity];
+            offsets = new long[capacity];
+            lengths = new int[capacity];
+            statusOffsets = new int[capacity];
+            notes = new long[capacity];
+        }
+    }
+
+    /**
+     * Constructor for TaskFileIndex.
+     *
+     * @param taskManager TaskManager used to read and format task rows
+     */
+    public TaskFileIndex(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        this.file = taskManager.getTasksFile();
+    }
+
+    /**
+     * Load tasks.csv into rows of a task table, recording where each row is
+     * stored. The rows are marked as saved, and their notes are left in the
+     * file.
+     *
+     * @param table Table to add the rows to
+     * @return Views over the new rows
+     */
+    List<Task> load(TaskTable table) {
+        List<Task> tasks = new ArrayList<>();
+        try {
+            Files.createDirectories(file.getParent());
+            if (!Files.exists(file)) {
+                return tasks;
+            }
+
+            MappedCsvReader reader = MappedCsvReader.open(file);
+            if (!reader.nextRecord()) { // Skip header
+                return tasks;
+            }
+            notesFile = NotesFile.open(file);
+            table.setNotesFile(notesFile);
+
+            boolean unterminated = false;
+            while (reader.nextRecord()) {
+                int length = reader.recordEnd() - reader.recordStart();
+                Task task = reader.startsWith(TaskManager.TOMBSTONE) ? null : taskManager.readTask(reader, table, false);
+                if (task == null) {
+                    deadBytes += length;
+                    continue;
+                }
+                long notes = NotesFile.pointer(reader.fieldStart(4),
+                    reader.fieldEnd(4) - reader.fieldStart(4), reader.fieldEscaped(4));
+                if (notes != 0) {
+                    table.setStoredNotes(task.row(), notes);
+                } else if (!reader.isEmpty(4)) {
+                    task.setNotes(reader.field(4));
+                }
+                if (!reader.recordTerminated()) {
+                    // Edited by hand, or cut off by a crash while appending, in
+                    // which case the journal replaces it; rewrite either way
+                    unterminated = true;
+                    tasks.add(task);
+                } else {
+                    record(task.row(), reader.recordStart(), length, statusOffset(reader));
+                    table.clearChanges(task.row());
+                    tasks.add(task);
+                }
+            }
+            fileSize = Files.size(file);
+            rewriteNeeded = unterminated;
+        } catch (IOException e) {
+            System.err.println("Error loading tasks: " + e.getMessage());
+        }
+        return tasks;
+    }
+
+    /**
+     * Forget the saved row of a released table row; it is tombstoned by the
+     * next patch.
+     *
+     * @param row Table row being released
+     */
+    void released(int row) {
+        if (row < offsets.length && offsets[row] != 0) {
+            addReleased(offsets[row]);
+            deadBytes += lengths[row];
+            offsets[row] = 0;
+        }
+    }
+
+    /**
+     * Prepare the writes that bring tasks.csv up to date with a table, and
+     * mark the changed rows as saved. Nothing changes if a full rewrite is
+     * needed instead.
+     *
+     * @param table Table holding every stored task
+     * @return The patch, or null if the file should be rewritten
+     */
+    Patch preparePatch(TaskTable table) {
+        if (rewriteNeeded || !matchesFile()) {
+            return null;
+        }
+        int flagCount = 0;
+        int appendCount = 0;
+        for (int row = table.nextChangedRow(0); row >= 0; row = table.nextChangedRow(row + 1)) {
+            if (isPatchable(table, row)) {
+                flagCount++;
+            } else {
+                appendCount++;
+            }
+        }
+        if (appendCount > MAX_PATCH_ROWS) {
+            return null;
+        }
+
+        // Format the rows to append and add up the bytes they leave behind
+        ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        int[] appendRows = new int[appendCount];
+        int[] appendLengths = new int[appendCount];
+        int[] appendStatusOffsets = new int[appendCount];
+        long dead = deadBytes;
+        int a = 0;
+        for (int row = table.nextChangedRow(0); row >= 0; row = table.nextChangedRow(row + 1)) {
+            if (isPatchable(table, row)) {
+                continue;
+            }
+            Task task = new Task(table, row);
+            byte[] line = (taskManager.formatStoredTask(task) + "\n").getBytes(StandardCharsets.UTF_8);
+            appended.write(line, 0, line.length);
+            appendRows[a] = row;
+            appendLengths[a] = line.length;
+            appendStatusOffsets[a] = statusOffset(task, line.length);
+            a++;
+            if (row < offsets.length && offsets[row] != 0) {
+                dead += lengths[row];
+            }
+        }
+        if (dead * 2 > fileSize + appended.size()) {
+            return null;
+        }
+
+        long[] tombstones = new long[releasedCount + appendCount];
+        System.arraycopy(released, 0, tombstones, 0, releasedCount);
+        int tombstoneCount = releasedCount;
+        releasedCount = 0;
+        long appendAt = fileSize;
+        long offset = appendAt;
+        for (int i = 0; i < appendCount; i++) {
+            int row = appendRows[i];
+            if (row < offsets.length && offsets[row] != 0) {
+                tombstones[tombstoneCount++] = offsets[row];
+            }
+            record(row, offset, appendLengths[i], appendStatusOffsets[i]);
+            table.clearChanges(row);
+            offset += appendLengths[i];
+        }
+        long[] flagOffsets = new long[flagCount];
+        byte[] flags = new byte[flagCount * FLAGS_WIDTH];
+        int f = 0;
+        for (int row = table.nextChangedRow(0); row >= 0; row = table.nextChangedRow(row + 1)) {
+            // Only patchable rows are still marked
+            flagOffsets[f] = offsets[row] + statusOffsets[row];
+            byte[] value = taskManager.formatFlags(table.status(row), table.priority(row)).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(value, 0, flags, f * FLAGS_WIDTH, FLAGS_WIDTH);
+            f++;
+            table.clearChanges(row);
+        }
+        deadBytes = dead;
+        fileSize = offset;
+        return new Patch(appendAt, appended.toByteArray(), flagOffsets, flags,
+            Arrays.copyOf(tombstones, tombstoneCount));
+    }
+
+    /**
+     * Write a prepared patch into tasks.csv and force it to disk.
+     *
+     * @param patch Patch from preparePatch
+     * @throws IOException If the file could not be written; call invalidate then
+     */
+    void write(Patch patch) throws IOException {
+        if (patch.isEmpty()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(patch.appended), patch.appendAt);
+            for (int i = 0; i < patch.flagOffsets.length; i++) {
+                writeFully(channel, ByteBuffer.wrap(patch.flags, i * FLAGS_WIDTH, FLAGS_WIDTH), patch.flagOffsets[i]);
+            }
+            for (long tombstone : patch.tombstones) {
+                writeFully(channel, ByteBuffer.wrap(new byte[] {(byte) TaskManager.TOMBSTONE}), tombstone);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Make the next save a full rewrite, e.g. after a patch failed part-way.
+     */
+    void invalidate() {
+        rewriteNeeded = true;
+    }
+
+    /**
+     * Start a full rewrite: forget every saved row and mark every table row
+     * as saved. Call under the lock, together with copying the tasks.
+     *
+     * @param table Table holding every stored task
+     */
+    void startRewrite(TaskTable table) {
+        Arrays.fill(offsets, 0);
+        releasedCount = 0;
+        deadBytes = 0;
+        rewriteNeeded = true;
+        table.clearChanges();
+    }
+
+    /**
+     * Replace tasks.csv with the given tasks. Runs outside the lock.
+     *
+     * @param tasks Copies of every stored task, on the same rows as in the table
+     * @return Where each task was written, for finishRewrite
+     * @throws IOException If the file could not be written
+     */
+    Layout rewrite(List<Task> tasks) throws IOException {
+        Files.createDirectories(file.getParent());
+        Layout layout = new Layout(tasks.size());
+        FileCommitter.commit(file, out -> {
+            out.write(TaskManager.TASKS_HEADER);
+            long offset = TaskManager.TASKS_HEADER.length();
+            for (Task task : tasks) {
+                String line = taskManager.formatStoredTask(task) + "\n";
+                int length = utf8Length(line);
+                int i = layout.count++;
+                layout.taskIds[i] = task.getTaskId();
+                layout.rows[i] = task.row();
+                layout.offsets[i] = offset;
+                layout.lengths[i] = length;
+                layout.statusOffsets[i] = statusOffset(task, length);
+                layout.notes[i] = notesPointer(task, offset + layout.statusOffsets[i] - 1);
+                out.write(line);
+                offset += length;
+            }
+            layout.size = offset;
+        });
+        layout.notesFile = NotesFile.open(file);
+        return layout;
+    }
+
+    /**
+     * Record where the rewrite put each task, and read notes from the new
+     * file from now on. Tasks deleted or replaced while the file was being
+     * written are tombstoned by the next patch.
+     *
+     * @param layout Result of rewrite
+     * @param tasks Stored tasks by taskId
+     * @param table Table holding them
+     */
+    void finishRewrite(Layout layout, Map<String, Task> tasks, TaskTable table) {
+        long[] notes = new long[offsets.length];
+        for (int i = 0; i < layout.count; i++) {
+            Task task = tasks.get(layout.taskIds[i]);
+            int row = layout.rows[i];
+            if (task != null && task.table() == table && task.row() == row) {
+                record(row, layout.offsets[i], layout.lengths[i], layout.statusOffsets[i]);
+                if ((table.changes(row) & TaskTable.CHANGED_ROW) == 0) {
+                    if (row >= notes.length) {
+                        notes = Arrays.copyOf(notes, Math.max(row + 1, notes.length * 2));
+                    }
+                    notes[row] = layout.notes[i]; // Unchanged since it was written
+                }
+            } else {
+                addReleased(layout.offsets[i]);
+                deadBytes += layout.lengths[i];
+            }
+        }
+        table.switchNotesFile(layout.notesFile, notes);
+        if (notesFile != null) {
+            notesFile.close();
+        }
+        notesFile = layout.notesFile;
+        fileSize = layout.size;
+        rewriteNeeded = false;
+    }
+
+    private boolean isPatchable(TaskTable table, int row) {
+        return table.changes(row) == TaskTable.CHANGED_FLAGS
+            && row < offsets.length && offsets[row] != 0 && statusOffsets[row] != 0;
+    }
+
+    /**
+     * Check that tasks.csv has not been changed by anything else.
+     */
+    private boolean matchesFile() {
+        try {
+            return Files.size(file) == fileSize;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void record(int row, long offset, int length, int statusOffset) {
+        if (row >= offsets.length) {
+            int capacity = Math.max(row + 1, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            statusOffsets = Arrays.copyOf(statusOffsets, capacity);
+        }
+        offsets[row] = offset;
+        lengths[row] = length;
+        statusOffsets[row] = statusOffset;
+    }
+
+    private void addReleased(long offset) {
+        if (releasedCount == released.length) {
+            released = Arrays.copyOf(released, releasedCount * 2);
+        }
+        released[releasedCount++] = offset;
+    }
+
+    /**
+     * Find the padded status column of a row just read, relative to the
+     * row's start.
+     *
+     * @return The offset, or 0 if the row was not written with padding
+     */
+    private static int statusOffset(MappedCsvReader reader) {
+        if (reader.fieldCount() < 7) {
+            return 0;
+        }
+        int status = reader.fieldStart(5);
+        int priority = reader.fieldStart(6);
+        // Quoted columns fail the adjacency check, so their quotes are never overwritten
+        if (reader.fieldEnd(5) - status != TaskManager.STATUS_WIDTH
+                || priority != status + TaskManager.STATUS_WIDTH + 1
+                || reader.fieldEnd(6) - priority != TaskManager.PRIORITY_WIDTH) {
+            return 0;
+        }
+        return status - reader.recordStart();
+    }
+
+    /**
+     * Find the status column of a row formatted by formatStoredTask: it is
+     * followed only by the priority and the event id.
+     */
+    private int statusOffset(Task task, int lineLength) {
+        String eventId = task.getGoogleCalendarEventId();
+        int eventIdLength = eventId != null ? utf8Length(taskManager.escapeCSV(eventId)) : 0;
+        return lineLength - 1 - eventIdLength - 1 - FLAGS_WIDTH;
+    }
+
+    /**
+     * Point at the notes column of a row formatted by formatStoredTask.
+     *
+     * @param end Offset just past the column: that of the comma before the status
+     */
+    private long notesPointer(Task task, long end) {
+        // Compare with the notes as written, unpaired surrogates replaced
+        String notes = TaskManager.replaceUnpairedSurrogates(task.getNotes());
+        if (notes.isEmpty()) {
+            return 0;
+        }
+        String column = taskManager.escapeCSV(notes);
+        int length = utf8Length(column);
+        if (column.equals(notes)) {
+            return NotesFile.pointer(end - length, length, false);
+        }
+        // Point inside the quotes
+        return NotesFile.pointer(end - length + 1, length - 2, notes.indexOf('"') >= 0);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // Includes U+FFFD, which escapeCSV puts in place of unpaired surrogates
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.tasktorch.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of task mutations stored next to tasks.csv.
+ *
+ * Each record is one CSV row prefixed with an operation code: "U" followed by
+ * the full task row for a create or update, or "D" followed by the taskId for
+ * a delete. On startup the log is replayed over the tasks.csv snapshot; once it
+ * grows large it is folded into a new snapshot and truncated.
+ */
+public class TaskJournal {
+    private static final String JOURNAL_FILE = "tasks.journal";
+    private static final String UPSERT = "U";
+    private static final String DELETE = "D";
+
+    private final TaskManager taskManager;
+    private final Path path;
+    private long tornAt = -1;
+
+    /**
+     * Constructor for TaskJournal.
+     *
+     * @param taskManager TaskManager used to format and parse task rows
+     */
+    public TaskJournal(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        this.path = taskManager.getDataDirectory().resolve(JOURNAL_FILE);
+    }
+
+    /**
+     * Replay the journal over tasks loaded from the last snapshot.
+     *
+     * @param tasks Tasks keyed by taskId; updated in place
+     * @return Number of records applied
+     */
+    public int replay(Map<String, Task> tasks) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (IOException e) {
+            System.err.println("Error reading task journal: " + e.getMessage());
+            return 0;
+        }
+
+        // Quotes and newlines are single bytes in UTF-8, so records can be
+        // split on the raw bytes and the byte offset of each one is known
+        int applied = 0;
+        int start = 0;
+        boolean inQuotes = false;
+        for (int i = 0; i < content.length; i++) {
+            byte b = content[i];
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                String record = new String(content, start, i - start, StandardCharsets.UTF_8);
+                if (apply(record, tasks)) {
+                    applied++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < content.length) {
+            // A record torn by a crash; the next append cuts it off so new
+            // records are not glued onto the partial one
+            tornAt = start;
+        }
+        return applied;
+    }
+
+    /**
+     * Append a create or update record for each task and a delete record for
+     * each removed id, then force them to disk.
+     *
+     * @param upserts Tasks that were created or changed
+     * @param deletes Ids of tasks that were removed
+     */
+    public void append(List<Task> upserts, List<String> deletes) throws IOException {
+        if (upserts.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (Task task : upserts) {
+            records.append(UPSERT).append(',').append(taskManager.formatTask(task)).append('\n');
+        }
+        for (String taskId : deletes) {
+            records.append(DELETE).append(',').append(taskManager.escapeCSV(taskId)).append('\n');
+        }
+
+        Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (tornAt >= 0) {
+                channel.truncate(tornAt);
+                tornAt = -1;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Get the current size of the journal.
+     *
+     * @return Size in bytes, or 0 if there is no journal
+     */
+    public long size() {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Discard all records; called once they are folded into a new snapshot.
+     */
+    public void truncate() throws IOException {
+        Files.deleteIfExists(path);
+        tornAt = -1;
+    }
+
+    /**
+     * Apply a single journal record.
+     */
+    private boolean apply(String record, Map<String, Task> tasks) {
+        if (record.isEmpty()) {
+            return false;
+        }
+        String[] values = taskManager.parseCSVLine(record);
+        try {
+            if (UPSERT.equals(values[0])) {
+                String[] row = new String[values.length - 1];
+                System.arraycopy(values, 1, row, 0, row.length);
+                Task task = taskManager.parseTask(row);
+                if (task != null) {
+                    tasks.put(task.getTaskId(), task);
+                    return true;
+                }
+            } else if (DELETE.equals(values[0]) && values.length > 1) {
+                tasks.remove(values[1]);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Skipping malformed journal record: " + e.getMessage());
+        }
+        return false;
+    }
+}
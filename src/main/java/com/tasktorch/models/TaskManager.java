@@ -2,20 +2,68 @@ package com.tasktorch.models;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Handles saving and loading data from CSV files.
  */
 public class TaskManager {
-    private static final String TASKS_FILE = "data/tasks.csv";
-    private static final String CLASSES_FILE = "data/classes.csv";
-    private static final String SETTINGS_FILE = "data/settings.txt";
+    private static final Path DEFAULT_DATA_DIRECTORY = Paths.get("data");
+    private static final String TASKS_FILE = "tasks.csv";
+    private static final String CLASSES_FILE = "classes.csv";
+    private static final String SETTINGS_FILE = "settings.txt";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+    static final String TASKS_HEADER = "taskId,title,dueDate,className,notes,status,priority,googleCalendarEventId\n";
+    // Marks a tasks.csv row that was replaced or deleted in place
+    static final char TOMBSTONE = '#';
+    // Widths status and priority are padded to in tasks.csv
+    static final int STATUS_WIDTH = Arrays.stream(Status.values())
+        .mapToInt(status -> status.getValue().length()).max().getAsInt();
+    static final int PRIORITY_WIDTH = Arrays.stream(Priority.values())
+        .mapToInt(priority -> priority.getValue().length()).max().getAsInt();
+
+    private final Path dataDirectory;
+
+    /**
+     * Create a TaskManager for the files in data/.
+     */
+    public TaskManager() {
+        this(DEFAULT_DATA_DIRECTORY);
+    }
+
+    /**
+     * Create a TaskManager for the files in another directory, e.g. in tests.
+     *
+     * @param dataDirectory Directory holding tasks.csv, classes.csv and settings.txt
+     */
+    public TaskManager(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Get the directory the task files are stored in. Stores built on this
+     * TaskManager (journal, partitions, archive) keep their files there too.
+     *
+     * @return The data directory
+     */
+    public Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    /**
+     * Get the path of the tasks.csv snapshot.
+     *
+     * @return Path of tasks.csv
+     */
+    public Path getTasksFile() {
+        return dataDirectory.resolve(TASKS_FILE);
+    }
 
     /**
      * Load tasks from CSV file.
@@ -23,57 +71,52 @@ public class TaskManager {
      * @return List of Task objects
      */
     public List<Task> loadTasks() {
+        return loadTasks(new TaskTable(1024));
+    }
+
+    /**
+     * Load tasks from CSV file straight into rows of a task table.
+     *
+     * @param table Table to add the rows to
+     * @return Views over the new rows
+     */
+    List<Task> loadTasks(TaskTable table) {
+        try {
+            // Create data directory if it doesn't exist
+            Files.createDirectories(dataDirectory);
+        } catch (IOException e) {
+            System.err.println("Error loading tasks: " + e.getMessage());
+        }
+        return loadTasks(getTasksFile(), table);
+    }
+
+    /**
+     * Load a file in the tasks.csv format straight into rows of a task table.
+     *
+     * @param file File to read
+     * @param table Table to add the rows to
+     * @return Views over the new rows; empty if the file does not exist
+     */
+    List<Task> loadTasks(Path file, TaskTable table) {
         List<Task> tasks = new ArrayList<>();
         
         try {
-            // Create data directory if it doesn't exist
-            Files.createDirectories(Paths.get("data"));
-            
-            File file = new File(TASKS_FILE);
-            if (!file.exists()) {
+            if (!Files.exists(file)) {
                 return tasks; // Return empty list if file doesn't exist
             }
 
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String header = br.readLine(); // Skip header
-                if (header == null) {
-                    return tasks;
-                }
+            MappedCsvReader reader = MappedCsvReader.open(file);
+            if (!reader.nextRecord()) { // Skip header
+                return tasks;
+            }
 
-                String line;
-                while ((line = br.readLine()) != null) {
-                    line = line.trim();
-                    if (line.isEmpty()) {
-                        continue;
-                    }
-                    String[] values = parseCSVLine(line);
-                    if (values.length >= 6) {
-                        String googleEventId = values.length > 7 && !values[7].isEmpty() ? values[7] : null;
-                        Task task;
-                        if (googleEventId != null) {
-                            task = new Task(
-                                values[0], // taskId
-                                values[1], // title
-                                LocalDate.parse(values[2], DATE_FORMATTER), // dueDate
-                                values[3], // className
-                                values.length > 4 ? values[4] : "", // notes
-                                Status.fromString(values.length > 5 ? values[5] : "pending"), // status
-                                Priority.fromString(values.length > 6 ? values[6] : "medium"), // priority
-                                googleEventId // googleCalendarEventId
-                            );
-                        } else {
-                            task = new Task(
-                                values[0], // taskId
-                                values[1], // title
-                                LocalDate.parse(values[2], DATE_FORMATTER), // dueDate
-                                values[3], // className
-                                values.length > 4 ? values[4] : "", // notes
-                                Status.fromString(values.length > 5 ? values[5] : "pending"), // status
-                                Priority.fromString(values.length > 6 ? values[6] : "medium") // priority
-                            );
-                        }
-                        tasks.add(task);
-                    }
+            while (reader.nextRecord()) {
+                if (reader.startsWith(TOMBSTONE)) {
+                    continue;
+                }
+                Task task = readTask(reader, table);
+                if (task != null) {
+                    tasks.add(task);
                 }
             }
         } catch (IOException e) {
@@ -87,34 +130,42 @@ public class TaskManager {
      * Save tasks to CSV file.
      * 
      * @param tasks List of Task objects to save
+     * @return True if the file was written
      */
-    public void saveTasks(List<Task> tasks) {
+    public boolean saveTasks(List<Task> tasks) {
         try {
             // Create data directory if it doesn't exist
-            Files.createDirectories(Paths.get("data"));
-
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(TASKS_FILE))) {
-                // Write header
-                bw.write("taskId,title,dueDate,className,notes,status,priority,googleCalendarEventId\n");
-
-                // Write tasks
-                for (Task task : tasks) {
-                    bw.write(escapeCSV(task.getTaskId()) + ",");
-                    bw.write(escapeCSV(task.getTitle()) + ",");
-                    bw.write(task.getDueDate().format(DATE_FORMATTER) + ",");
-                    bw.write(escapeCSV(task.getClassName()) + ",");
-                    bw.write(escapeCSV(task.getNotes()) + ",");
-                    bw.write(task.getStatus().getValue() + ",");
-                    bw.write(task.getPriority().getValue() + ",");
-                    bw.write(task.getGoogleCalendarEventId() != null ? escapeCSV(task.getGoogleCalendarEventId()) : "");
-                    bw.write("\n");
-                }
-            }
+            Files.createDirectories(dataDirectory);
+
+            writeTasks(getTasksFile(), tasks);
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving tasks: " + e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Write tasks to a file in the tasks.csv format.
+     *
+     * @param target File to create or replace
+     * @param tasks Tasks to write
+     * @throws IOException If the file could not be written
+     */
+    void writeTasks(Path target, List<Task> tasks) throws IOException {
+        // Durable before this returns, since the journal is discarded next
+        FileCommitter.commit(target, bw -> {
+            // Write header
+            bw.write(TASKS_HEADER);
+
+            // Write tasks
+            for (Task task : tasks) {
+                bw.write(formatTask(task));
+                bw.write("\n");
+            }
+        });
+    }
+
     /**
      * Load courses from CSV file.
      * 
@@ -124,32 +175,29 @@ public class TaskManager {
         List<Course> courses = new ArrayList<>();
         
         try {
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(dataDirectory);
+            FileCommitter.awaitPending(dataDirectory.resolve(CLASSES_FILE));
             
-            File file = new File(CLASSES_FILE);
+            File file = dataDirectory.resolve(CLASSES_FILE).toFile();
             if (!file.exists()) {
                 return courses;
             }
 
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String header = br.readLine();
-                if (header == null) {
-                    return courses;
-                }
+            MappedCsvReader reader = MappedCsvReader.open(file.toPath());
+            if (!reader.nextRecord()) { // Skip header
+                return courses;
+            }
 
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] values = parseCSVLine(line);
-                    if (values.length >= 2) {
-                        Course course = new Course(
-                            values[0], // courseId
-                            values[1], // name
-                            values.length > 2 ? values[2] : "", // instructor
-                            values.length > 3 ? values[3] : "", // location
-                            values.length > 4 ? values[4] : ""  // schedule
-                        );
-                        courses.add(course);
-                    }
+            while (reader.nextRecord()) {
+                if (reader.fieldCount() >= 2) {
+                    Course course = new Course(
+                        reader.field(0), // courseId
+                        reader.field(1), // name
+                        reader.field(2), // instructor
+                        reader.field(3), // location
+                        reader.field(4)  // schedule
+                    );
+                    courses.add(course);
                 }
             }
         } catch (IOException e) {
@@ -160,25 +208,26 @@ public class TaskManager {
     }
 
     /**
-     * Save courses to CSV file.
+     * Save courses to CSV file. The file is replaced atomically in the next
+     * group commit; failures are logged.
      * 
      * @param courses List of Course objects to save
      */
     public void saveCourses(List<Course> courses) {
         try {
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(dataDirectory);
 
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(CLASSES_FILE))) {
-                bw.write("courseId,name,instructor,location,schedule\n");
+            StringBuilder sb = new StringBuilder();
+            sb.append("courseId,name,instructor,location,schedule\n");
 
-                for (Course course : courses) {
-                    bw.write(escapeCSV(course.getCourseId()) + ",");
-                    bw.write(escapeCSV(course.getName()) + ",");
-                    bw.write(escapeCSV(course.getInstructor()) + ",");
-                    bw.write(escapeCSV(course.getLocation()) + ",");
-                    bw.write(escapeCSV(course.getSchedule()) + "\n");
-                }
+            for (Course course : courses) {
+                sb.append(escapeCSV(course.getCourseId())).append(',');
+                sb.append(escapeCSV(course.getName())).append(',');
+                sb.append(escapeCSV(course.getInstructor())).append(',');
+                sb.append(escapeCSV(course.getLocation())).append(',');
+                sb.append(escapeCSV(course.getSchedule())).append('\n');
             }
+            FileCommitter.commitLater(dataDirectory.resolve(CLASSES_FILE), sb.toString());
         } catch (IOException e) {
             System.err.println("Error saving courses: " + e.getMessage());
         }
@@ -193,9 +242,10 @@ public class TaskManager {
         UserSettings settings = new UserSettings();
         
         try {
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(dataDirectory);
+            FileCommitter.awaitPending(dataDirectory.resolve(SETTINGS_FILE));
             
-            File file = new File(SETTINGS_FILE);
+            File file = dataDirectory.resolve(SETTINGS_FILE).toFile();
             if (!file.exists()) {
                 return settings; // Return default settings
             }
@@ -229,6 +279,16 @@ public class TaskManager {
                             case "googleCalendarEnabled":
                                 settings.setGoogleCalendarEnabled(Boolean.parseBoolean(value));
                                 break;
+                            case "partitionedStorage":
+                                settings.setPartitionedStorage(Boolean.parseBoolean(value));
+                                break;
+                            case "archiveAfterDays":
+                                try {
+                                    settings.setArchiveAfterDays(Integer.parseInt(value));
+                                } catch (NumberFormatException e) {
+                                    settings.setArchiveAfterDays(180);
+                                }
+                                break;
                         }
                     }
                 }
@@ -241,34 +301,183 @@ public class TaskManager {
     }
 
     /**
-     * Save user settings to file.
+     * Save user settings to file. The content is captured before this
+     * returns and the file is replaced atomically in the next group commit,
+     * so it does not block and may be called on the FX thread; failures are
+     * logged.
      * 
      * @param settings UserSettings object to save
      */
     public void saveSettings(UserSettings settings) {
         try {
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(dataDirectory);
 
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(SETTINGS_FILE))) {
-                bw.write("theme=" + settings.getTheme().name() + "\n");
-                bw.write("dailyReminder=" + settings.isDailyReminder() + "\n");
-                bw.write("remindDaysBeforeDue=" + settings.getRemindDaysBeforeDue() + "\n");
-                bw.write("googleCalendarEnabled=" + settings.isGoogleCalendarEnabled() + "\n");
-            }
+            String content = "theme=" + settings.getTheme().name() + "\n"
+                + "dailyReminder=" + settings.isDailyReminder() + "\n"
+                + "remindDaysBeforeDue=" + settings.getRemindDaysBeforeDue() + "\n"
+                + "googleCalendarEnabled=" + settings.isGoogleCalendarEnabled() + "\n"
+                + "partitionedStorage=" + settings.isPartitionedStorage() + "\n"
+                + "archiveAfterDays=" + settings.getArchiveAfterDays() + "\n";
+            FileCommitter.commitLater(dataDirectory.resolve(SETTINGS_FILE), content);
         } catch (IOException e) {
             System.err.println("Error saving settings: " + e.getMessage());
         }
     }
 
-    // Helper methods for CSV parsing
-    private String[] parseCSVLine(String line) {
+    /**
+     * Build a Task from the current record of a CSV reader.
+     * 
+     * @param reader Reader positioned on a tasks.csv row
+     * @param table Table to add the task's row to
+     * @return The task, or null if the row has too few fields
+     */
+    Task readTask(MappedCsvReader reader, TaskTable table) {
+        return readTask(reader, table, true);
+    }
+
+    /**
+     * Build a Task from the current record of a CSV reader, optionally
+     * leaving out its notes.
+     *
+     * @param reader Reader positioned on a tasks.csv row
+     * @param table Table to add the task's row to
+     * @param withNotes False to leave the notes empty, for a caller that
+     *                  reads them later
+     * @return The task, or null if the row has too few fields
+     */
+    Task readTask(MappedCsvReader reader, TaskTable table, boolean withNotes) {
+        if (reader.fieldCount() < 6) {
+            return null;
+        }
+        return new Task(table, table.add(
+            reader.field(0), // taskId
+            reader.field(1), // title
+            reader.dateField(2), // dueDate
+            reader.pooledField(3), // className
+            withNotes ? reader.field(4) : null, // notes
+            readStatus(reader, 5), // status
+            readPriority(reader, 6), // priority
+            reader.isEmpty(7) ? null : reader.field(7) // googleCalendarEventId
+        ));
+    }
+
+    private Status readStatus(MappedCsvReader reader, int index) {
+        for (Status status : Status.values()) {
+            if (reader.fieldEqualsIgnoreCase(index, status.getValue())) {
+                return status;
+            }
+        }
+        return Status.PENDING; // default
+    }
+
+    private Priority readPriority(MappedCsvReader reader, int index) {
+        for (Priority priority : Priority.values()) {
+            if (reader.fieldEqualsIgnoreCase(index, priority.getValue())) {
+                return priority;
+            }
+        }
+        return Priority.MEDIUM; // default
+    }
+
+    /**
+     * Build a Task from the fields of one CSV row.
+     * 
+     * @param values Parsed CSV fields in tasks.csv column order
+     * @return The task, or null if the row has too few fields
+     */
+    Task parseTask(String[] values) {
+        if (values.length < 6) {
+            return null;
+        }
+        String googleEventId = values.length > 7 && !values[7].isEmpty() ? values[7] : null;
+        return new Task(
+            values[0], // taskId
+            values[1], // title
+            LocalDate.parse(values[2], DATE_FORMATTER), // dueDate
+            values[3], // className
+            values.length > 4 ? values[4] : "", // notes
+            Status.fromString(values.length > 5 ? values[5] : "pending"), // status
+            Priority.fromString(values.length > 6 ? values[6] : "medium"), // priority
+            googleEventId // googleCalendarEventId
+        );
+    }
+
+    /**
+     * Format a task as one CSV row (without the trailing newline).
+     * 
+     * @param task Task to format
+     * @return CSV row in tasks.csv column order
+     */
+    String formatTask(Task task) {
+        return formatTask(task, task.getStatus().getValue() + "," + task.getPriority().getValue());
+    }
+
+    /**
+     * Format a task as one tasks.csv row, with status and priority padded
+     * to a fixed width so either can later be changed in place.
+     *
+     * @param task Task to format
+     * @return CSV row in tasks.csv column order
+     */
+    String formatStoredTask(Task task) {
+        return formatTask(task, formatFlags(task.getStatus(), task.getPriority()));
+    }
+
+    /**
+     * Format status and priority as their padded tasks.csv columns.
+     *
+     * @param status Status to format
+     * @param priority Priority to format
+     * @return "status,priority", always STATUS_WIDTH + PRIORITY_WIDTH + 1 bytes
+     */
+    String formatFlags(Status status, Priority priority) {
+        return pad(status.getValue(), STATUS_WIDTH) + "," + pad(priority.getValue(), PRIORITY_WIDTH);
+    }
+
+    private String formatTask(Task task, String flags) {
+        String taskId = escapeCSV(task.getTaskId());
+        if (taskId.indexOf(TOMBSTONE) == 0) {
+            taskId = "\"" + taskId + "\""; // Never mistaken for a tombstone
+        }
+        return taskId + ","
+            + escapeCSV(task.getTitle()) + ","
+            + task.getDueDate().format(DATE_FORMATTER) + ","
+            + escapeCSV(task.getClassName()) + ","
+            + escapeCSV(task.getNotes()) + ","
+            + flags + ","
+            + (task.getGoogleCalendarEventId() != null ? escapeCSV(task.getGoogleCalendarEventId()) : "");
+    }
+
+    private static String pad(String value, int width) {
+        StringBuilder sb = new StringBuilder(width).append(value);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Split one CSV record into its fields, undoing the quoting added by
+     * escapeCSV. Other files written in the same format (e.g. the calendar
+     * outbox) parse their records with it too.
+     *
+     * @param line Record without its trailing newline; may contain quoted newlines
+     * @return The unescaped field values
+     */
+    public String[] parseCSVLine(String line) {
         List<String> values = new ArrayList<>();
         boolean inQuotes = false;
         StringBuilder current = new StringBuilder();
 
-        for (char c : line.toCharArray()) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
             if (c == '"') {
-                inQuotes = !inQuotes;
+                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"'); // Escaped quote
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
             } else if (c == ',' && !inQuotes) {
                 values.add(current.toString());
                 current = new StringBuilder();
@@ -281,14 +490,50 @@ public class TaskManager {
         return values.toArray(new String[0]);
     }
 
-    private String escapeCSV(String value) {
+    /**
+     * Quote a value for a CSV field if it contains a comma, quote or newline.
+     *
+     * @param value Field value; null is written as an empty field
+     * @return The value, quoted and with quotes doubled where needed
+     */
+    public String escapeCSV(String value) {
         if (value == null) {
             return "";
         }
+        value = replaceUnpairedSurrogates(value);
         if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
             return "\"" + value.replace("\"", "\"\"") + "\"";
         }
         return value;
     }
-}
 
+    /**
+     * Replace unpaired surrogates with U+FFFD. UTF-8 cannot encode them, and
+     * the writers used for data files fail on them instead of substituting.
+     *
+     * @param value Text that may come from pasted or imported input
+     * @return The value, or a copy with every unpaired surrogate replaced
+     */
+    static String replaceUnpairedSurrogates(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean paired = Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1));
+            if (paired) {
+                if (sb != null) {
+                    sb.append(c).append(value.charAt(i + 1));
+                }
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                if (sb == null) {
+                    sb = new StringBuilder(value.length()).append(value, 0, i);
+                }
+                sb.append('\uFFFD');
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : value;
+    }
+}
@@ -0,0 +1,220 @@
+package com.tasktorch.models;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Month-partitioned task storage, the alternative to a single tasks.csv.
+ *
+ * data/tasks/ holds one file per month that has tasks due in it (e.g.
+ * 2025-03.csv, in the tasks.csv format) and manifest.csv, listing each
+ * partition's row count and first and last due date. Readers use the
+ * manifest to open only the partitions overlapping the dates they need;
+ * writers rewrite only the partitions that changed.
+ *
+ * Partition files are written before the manifest, so after a crash a file
+ * may be missing from the manifest; such files are still found by listing
+ * the directory, and are assumed to span their whole month.
+ */
+public class TaskPartitionStore {
+    private static final String DIRECTORY = "tasks";
+    private static final String MANIFEST_FILE = "manifest.csv";
+    private static final String MANIFEST_HEADER = "partition,rows,firstDue,lastDue";
+
+    private final TaskManager taskManager;
+    private final Path directory;
+    private final TreeMap<YearMonth, Partition> partitions = new TreeMap<>();
+
+    /**
+     * One manifest entry.
+     */
+    public static final class Partition {
+        public final YearMonth month;
+        public final int rows;
+        public final LocalDate firstDue;
+        public final LocalDate lastDue;
+
+        Partition(YearMonth month, int rows, LocalDate firstDue, LocalDate lastDue) {
+            this.month = month;
+            this.rows = rows;
+            this.firstDue = firstDue;
+            this.lastDue = lastDue;
+        }
+    }
+
+    /**
+     * Open the store, reading its manifest.
+     *
+     * @param taskManager TaskManager used to read and write partition files
+     */
+    public TaskPartitionStore(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        this.directory = taskManager.getDataDirectory().resolve(DIRECTORY);
+        readManifest();
+    }
+
+    /**
+     * Check whether tasks have been stored by month.
+     *
+     * @param taskManager TaskManager whose data directory is checked
+     * @return True if data/tasks/ has a manifest
+     */
+    public static boolean exists(TaskManager taskManager) {
+        return Files.exists(taskManager.getDataDirectory().resolve(DIRECTORY).resolve(MANIFEST_FILE));
+    }
+
+    /**
+     * Get every partition.
+     *
+     * @return Partition months in order
+     */
+    public synchronized List<YearMonth> months() {
+        return new ArrayList<>(partitions.keySet());
+    }
+
+    /**
+     * Get the partitions holding tasks due within a date range.
+     *
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     * @return Partition months in order
+     */
+    public synchronized List<YearMonth> monthsBetween(LocalDate from, LocalDate to) {
+        List<YearMonth> months = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return months;
+        }
+        for (Partition partition : partitions.subMap(YearMonth.from(from), true, YearMonth.from(to), true).values()) {
+            if (!partition.firstDue.isAfter(to) && !partition.lastDue.isBefore(from)) {
+                months.add(partition.month);
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Get the manifest entry of a partition.
+     *
+     * @param month Partition month
+     * @return The entry, or null if there is no such partition
+     */
+    public synchronized Partition getPartition(YearMonth month) {
+        return partitions.get(month);
+    }
+
+    /**
+     * Load one partition into rows of a task table.
+     *
+     * @param month Partition month
+     * @param table Table to add the rows to
+     * @return Views over the new rows
+     */
+    List<Task> load(YearMonth month, TaskTable table) {
+        return taskManager.loadTasks(partitionFile(month), table);
+    }
+
+    /**
+     * Replace the given partitions and update the manifest. A month with no
+     * tasks has its partition removed.
+     *
+     * @param changed Complete task list of each changed month
+     * @throws IOException If a partition or the manifest could not be written
+     */
+    public synchronized void write(Map<YearMonth, List<Task>> changed) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<YearMonth, List<Task>> entry : changed.entrySet()) {
+            YearMonth month = entry.getKey();
+            List<Task> monthTasks = entry.getValue();
+            if (monthTasks.isEmpty()) {
+                Files.deleteIfExists(partitionFile(month));
+                partitions.remove(month);
+                continue;
+            }
+            taskManager.writeTasks(partitionFile(month), monthTasks);
+            LocalDate first = monthTasks.get(0).getDueDate();
+            LocalDate last = first;
+            for (Task task : monthTasks) {
+                LocalDate due = task.getDueDate();
+                first = due.isBefore(first) ? due : first;
+                last = due.isAfter(last) ? due : last;
+            }
+            partitions.put(month, new Partition(month, monthTasks.size(), first, last));
+        }
+        writeManifest();
+    }
+
+    /**
+     * Delete every partition and the manifest, after switching back to a
+     * single tasks.csv.
+     *
+     * @throws IOException If a file could not be deleted
+     */
+    public synchronized void deleteAll() throws IOException {
+        for (YearMonth month : partitions.keySet()) {
+            Files.deleteIfExists(partitionFile(month));
+        }
+        partitions.clear();
+        Files.deleteIfExists(directory.resolve(MANIFEST_FILE));
+    }
+
+    private Path partitionFile(YearMonth month) {
+        return directory.resolve(month + ".csv");
+    }
+
+    private void readManifest() {
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        try {
+            if (Files.exists(manifest)) {
+                for (String line : Files.readAllLines(manifest)) {
+                    String[] values = line.split(",");
+                    if (values.length < 4 || MANIFEST_HEADER.equals(line)) {
+                        continue;
+                    }
+                    try {
+                        YearMonth month = YearMonth.parse(values[0]);
+                        partitions.put(month, new Partition(month, Integer.parseInt(values[1]),
+                            LocalDate.parse(values[2]), LocalDate.parse(values[3])));
+                    } catch (DateTimeParseException | NumberFormatException e) {
+                        System.err.println("Error reading task manifest entry: " + line);
+                    }
+                }
+            }
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            // Reconcile with the files actually present
+            partitions.keySet().removeIf(month -> !Files.exists(partitionFile(month)));
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "????-??.csv")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        YearMonth month = YearMonth.parse(name.substring(0, name.length() - 4));
+                        partitions.putIfAbsent(month, new Partition(month, -1, month.atDay(1), month.atEndOfMonth()));
+                    } catch (DateTimeParseException e) {
+                        // Not a partition
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading task manifest: " + e.getMessage());
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        FileCommitter.commit(directory.resolve(MANIFEST_FILE), bw -> {
+            bw.write(MANIFEST_HEADER + "\n");
+            for (Partition partition : partitions.values()) {
+                bw.write(partition.month + "," + partition.rows + "," + partition.firstDue + "," + partition.lastDue + "\n");
+            }
+        });
+    }
+}
@@ -0,0 +1,1212 @@
+package com.tasktorch.models;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Shared in-memory store of all tasks, keyed by taskId.
+ *
+ * Tasks are loaded from disk once. Mutations only touch the in-memory map and
+ * record which tasks are dirty; a background writer appends those changes to
+ * the task journal after a short delay so that a burst of edits results in a
+ * single small write. The journal is periodically compacted into tasks.csv,
+ * which is patched in place where only a few rows changed (see TaskFileIndex).
+ *
+ * The full-text search index is saved next to tasks.csv on shutdown and
+ * reloaded on the next start if that snapshot has not changed since.
+ *
+ * With partitioned storage enabled in the settings, tasks are stored in
+ * per-month files instead (see TaskPartitionStore). Months are then loaded
+ * on demand: date-range queries load only the months they cover, and
+ * queries over every task (search, lookups of unknown ids, import and
+ * export) load the rest. Compaction rewrites only the months that changed.
+ * Views check isLoaded first and otherwise read the months in the background
+ * with loadMonths, which keeps file I/O out of the repository lock.
+ *
+ * Compaction also moves completed tasks that were due long enough ago (see
+ * UserSettings.getArchiveAfterDays) into the compressed TaskArchive, so the
+ * working set and its files only grow with active work. Archived tasks are
+ * found with searchArchive and brought back with restoreArchived.
+ *
+ * Notes of tasks loaded from tasks.csv stay in the file until something
+ * asks for them, such as the edit dialog through getNotes. They are read
+ * without holding the repository lock: status and priority changes leave
+ * the search index alone, and a renamed task is re-indexed once its notes
+ * have been read in the background.
+ */
+public class TaskRepository {
+    private static final long WRITE_BEHIND_DELAY_MS = 500;
+    private static final long COMPACT_JOURNAL_BYTES = 1024 * 1024;
+    private static final long COMPACT_INTERVAL_MINUTES = 10;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final String SEARCH_INDEX_FILE = "tasks.search";
+    private static TaskRepository instance;
+
+    private final TaskManager taskManager;
+    private final TaskJournal journal;
+    // Where each row is saved in tasks.csv, or null with partitioned storage
+    private final TaskFileIndex fileIndex;
+    // Per-month storage, or null when tasks are stored in tasks.csv
+    private final TaskPartitionStore partitionStore;
+    private final Set<YearMonth> loadedMonths = new HashSet<>();
+    private final Set<YearMonth> dirtyMonths = new HashSet<>();
+    private boolean allLoaded;
+    private final TaskArchive archive;
+    private volatile int archiveAfterDays;
+    // Every stored task is a view over a row of this table
+    private final TaskTable table = new TaskTable(1024);
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final Set<String> dirtyIds = new LinkedHashSet<>();
+    private final TaskDateIndex dateIndex = new TaskDateIndex();
+    private final TaskBitmapIndex bitmapIndex = new TaskBitmapIndex();
+    private final TaskSearchIndex searchIndex = new TaskSearchIndex();
+    // Reverse index from Google Calendar event id to task, for pulled changes
+    private final Map<String, String> taskIdsByEventId = new HashMap<>();
+    private final Map<String, String> indexedEventIds = new HashMap<>();
+    private final List<TaskChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object saveLock = new Object();
+    private ScheduledFuture<?> pendingFlush;
+    private long version;
+
+    /**
+     * Counts reported by importIcs.
+     */
+    public static final class ImportResult {
+        public final int imported;
+        public final int duplicates;
+        public final int skipped;
+
+        ImportResult(int imported, int duplicates, int skipped) {
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.skipped = skipped;
+        }
+    }
+
+    /**
+     * Load a repository over the files of a TaskManager. The application
+     * shares one through getInstance; tests create their own over a
+     * temporary directory.
+     *
+     * @param taskManager TaskManager whose data directory holds the tasks
+     */
+    public TaskRepository(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        this.journal = new TaskJournal(taskManager);
+        UserSettings settings = taskManager.loadSettings();
+        boolean partitioned = settings.isPartitionedStorage();
+        this.archiveAfterDays = settings.getArchiveAfterDays();
+        this.archive = new TaskArchive(taskManager);
+        boolean hasTasksFile = Files.exists(taskManager.getTasksFile());
+        boolean hasPartitions = TaskPartitionStore.exists(taskManager);
+        TaskPartitionStore store = partitioned || hasPartitions ? new TaskPartitionStore(taskManager) : null;
+        this.partitionStore = partitioned ? store : null;
+        this.fileIndex = partitioned ? null : new TaskFileIndex(taskManager);
+        if (fileIndex != null) {
+            table.setStorage(fileIndex);
+        }
+
+        long[] snapshot = snapshotStamp();
+        if (hasTasksFile || !hasPartitions) {
+            // tasks.csv, when present, is the authoritative copy
+            for (Task task : fileIndex != null ? fileIndex.load(table) : taskManager.loadTasks(table)) {
+                tasks.put(task.getTaskId(), task);
+            }
+            allLoaded = true;
+        } else if (!partitioned || journal.size() > 0) {
+            // Switching back to tasks.csv, or recovering journal records whose month is unknown
+            for (YearMonth month : store.months()) {
+                for (Task task : store.load(month, table)) {
+                    tasks.put(task.getTaskId(), task);
+                }
+            }
+            allLoaded = true;
+        }
+        // A saved search index only matches a snapshot with nothing replayed on top
+        boolean searchIndexLoaded = partitionStore == null && journal.size() == 0
+            && searchIndex.load(searchIndexFile(), snapshot[0], snapshot[1], tasks);
+        journal.replay(tasks);
+        // Replayed tasks were parsed into their own tables; rows they replaced are dropped
+        BitSet liveRows = new BitSet();
+        for (Task task : tasks.values()) {
+            adopt(task, null);
+            liveRows.set(task.row());
+        }
+        table.retainRows(liveRows);
+        for (Task task : tasks.values()) {
+            dateIndex.put(task);
+            bitmapIndex.put(task);
+            if (!searchIndexLoaded) {
+                searchIndex.put(task);
+            }
+            indexEvent(task);
+        }
+
+        if (partitionStore != null && allLoaded) {
+            // Moving tasks.csv into partitions, or folding a journal in: rewrite every month
+            dirtyMonths.addAll(partitionStore.months());
+            for (Task task : tasks.values()) {
+                markMonthDirty(task);
+            }
+        }
+        if (partitioned && hasTasksFile) {
+            if (writeSnapshot()) {
+                deleteQuietly(taskManager.getTasksFile());
+                deleteQuietly(searchIndexFile());
+            }
+        } else if (!partitioned && hasPartitions && !hasTasksFile) {
+            if (writeSnapshot()) {
+                try {
+                    store.deleteAll();
+                } catch (IOException e) {
+                    System.err.println("Error deleting task partitions: " + e.getMessage());
+                }
+            }
+        } else if (!partitioned && hasPartitions) {
+            // A previous switch back wrote tasks.csv but did not finish cleaning up
+            try {
+                store.deleteAll();
+            } catch (IOException e) {
+                System.err.println("Error deleting task partitions: " + e.getMessage());
+            }
+        }
+        PersistenceExecutor.scheduleWithFixedDelay(this::compact, COMPACT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Get the shared repository, loading tasks from disk on first use.
+     *
+     * @return The shared TaskRepository
+     */
+    public static synchronized TaskRepository getInstance() {
+        if (instance == null) {
+            instance = new TaskRepository(new TaskManager());
+        }
+        return instance;
+    }
+
+    /**
+     * Flush and compact the shared repository if it was ever loaded.
+     * Called when the application exits.
+     */
+    public static void shutdownInstance() {
+        TaskRepository repository;
+        synchronized (TaskRepository.class) {
+            repository = instance;
+        }
+        if (repository != null) {
+            repository.shutdown();
+        }
+    }
+
+    /**
+     * Load the shared repository on the persistence executor, so the first
+     * view does not read tasks.csv on the JavaFX Application Thread.
+     *
+     * @return Future completed with the loaded repository
+     */
+    public static CompletableFuture<TaskRepository> loadAsync() {
+        return PersistenceExecutor.submit(TaskRepository::getInstance);
+    }
+
+    /**
+     * Register a listener for task changes.
+     *
+     * @param listener Listener to add
+     */
+    public void addChangeListener(TaskChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener added with addChangeListener.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeChangeListener(TaskChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get all tasks in insertion order.
+     *
+     * @return A new list containing every task
+     */
+    public synchronized List<Task> getAllTasks() {
+        ensureAllLoaded();
+        return new ArrayList<>(tasks.values());
+    }
+
+    /**
+     * Find a task by its id.
+     *
+     * @param taskId Task id to look up
+     * @return The task, or null if no task has that id
+     */
+    public synchronized Task getTask(String taskId) {
+        return find(taskId);
+    }
+
+    /**
+     * Get the notes of a stored task. Notes loaded from tasks.csv are not
+     * kept in memory, so this reads them from the file.
+     *
+     * @param taskId Task id to look up
+     * @return The notes, or "" if no task has that id
+     */
+    public String getNotes(String taskId) {
+        Task task = getTaskSnapshot(taskId);
+        return task != null ? task.getNotes() : "";
+    }
+
+    /**
+     * Get a private copy of a task that is safe to read on another thread.
+     * Notes stored in tasks.csv are read without holding the repository
+     * lock, so other threads are not kept waiting on the disk.
+     *
+     * @param taskId Task id to look up
+     * @return A copy of the task, or null if no task has that id
+     */
+    public Task getTaskSnapshot(String taskId) {
+        synchronized (this) {
+            Task task = find(taskId);
+            if (task == null) {
+                return null;
+            }
+            if (!table.hasStoredNotes(task.row())) {
+                return copyOf(task);
+            }
+        }
+        // saveLock keeps tasks.csv, and so the notes pointer, valid until the copy is made
+        synchronized (saveLock) {
+            Task stored;
+            synchronized (this) {
+                Task task = find(taskId);
+                if (task == null) {
+                    return null;
+                }
+                stored = copyKeepingStoredNotes(table.emptySharingNotes(1), task);
+            }
+            return copyOf(stored);
+        }
+    }
+
+    /**
+     * Find the task linked to a Google Calendar event.
+     *
+     * @param eventId Calendar event id
+     * @return Id of the task whose googleCalendarEventId matches, or null
+     */
+    public synchronized String findTaskIdByEventId(String eventId) {
+        if (!taskIdsByEventId.containsKey(eventId)) {
+            ensureAllLoaded();
+        }
+        return taskIdsByEventId.get(eventId);
+    }
+
+    /**
+     * Get a counter that changes whenever any task is added, changed or
+     * removed, so callers can tell whether cached query results are stale.
+     *
+     * @return The current modification version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Check whether a date-range query can be answered without reading any
+     * month partition.
+     *
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     * @return True if every month overlapping the range is in memory
+     */
+    public synchronized boolean isLoaded(LocalDate from, LocalDate to) {
+        if (allLoaded) {
+            return true;
+        }
+        for (YearMonth month : partitionStore.monthsBetween(from, to)) {
+            if (!loadedMonths.contains(month)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether queries over every task can be answered without reading
+     * any month partition.
+     *
+     * @return True if every month is in memory
+     */
+    public synchronized boolean isAllLoaded() {
+        return allLoaded;
+    }
+
+    /**
+     * Read the months overlapping a date range that are not in memory yet.
+     * Partition files are read without holding the repository lock, so other
+     * threads keep querying meanwhile; call this off the FX thread.
+     *
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     */
+    public void loadMonths(LocalDate from, LocalDate to) {
+        List<YearMonth> months;
+        synchronized (this) {
+            if (allLoaded) {
+                return;
+            }
+            months = partitionStore.monthsBetween(from, to);
+        }
+        readPartitions(months);
+    }
+
+    /**
+     * Read every month that is not in memory yet, as loadMonths does.
+     */
+    public void loadAllMonths() {
+        List<YearMonth> months;
+        synchronized (this) {
+            if (allLoaded) {
+                return;
+            }
+            months = partitionStore.months();
+        }
+        readPartitions(months);
+        synchronized (this) {
+            ensureAllLoaded();
+        }
+    }
+
+    /**
+     * Get the tasks due within a date range, ordered by due date.
+     *
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     * @return A new list of matching tasks
+     */
+    public synchronized List<Task> tasksBetween(LocalDate from, LocalDate to) {
+        ensureLoaded(from, to);
+        return dateIndex.tasksBetween(from, to);
+    }
+
+    /**
+     * Get the tasks due on or after a date, ordered by due date.
+     *
+     * @param from First day (inclusive)
+     * @return A new list of matching tasks
+     */
+    public synchronized List<Task> tasksFrom(LocalDate from) {
+        if (partitionStore != null && !allLoaded) {
+            for (YearMonth month : partitionStore.months()) {
+                if (!month.isBefore(YearMonth.from(from))) {
+                    loadPartition(month);
+                }
+            }
+        }
+        return dateIndex.tasksFrom(from);
+    }
+
+    /**
+     * Get the tasks due on a single day.
+     *
+     * @param day Day to look up
+     * @return A new list of matching tasks
+     */
+    public synchronized List<Task> tasksOn(LocalDate day) {
+        ensureLoaded(day, day);
+        return dateIndex.tasksOn(day);
+    }
+
+    /**
+     * Get the tasks due within a date range that match a filter, ordered by
+     * due date.
+     *
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     * @param status Required status, or null for any
+     * @param priority Required priority, or null for any
+     * @param className Required class name, or null for any
+     * @return A new list of matching tasks
+     */
+    public synchronized List<Task> tasksBetween(LocalDate from, LocalDate to,
+                                                Status status, Priority priority, String className) {
+        ensureLoaded(from, to);
+        if (status == null && priority == null && className == null) {
+            return dateIndex.tasksBetween(from, to);
+        }
+        return dateIndex.tasksBetween(from, to, bitmapIndex.query(status, priority, className));
+    }
+
+    /**
+     * Get every task that matches a filter.
+     *
+     * @param status Required status, or null for any
+     * @param priority Required priority, or null for any
+     * @param className Required class name, or null for any
+     * @return A new list of matching tasks
+     */
+    public synchronized List<Task> findTasks(Status status, Priority priority, String className) {
+        ensureAllLoaded();
+        return bitmapIndex.tasks(bitmapIndex.query(status, priority, className));
+    }
+
+    /**
+     * Count the tasks that match a filter without building a list.
+     *
+     * @param status Required status, or null for any
+     * @param priority Required priority, or null for any
+     * @param className Required class name, or null for any
+     * @return Number of matching tasks
+     */
+    public synchronized int countTasks(Status status, Priority priority, String className) {
+        ensureAllLoaded();
+        return bitmapIndex.query(status, priority, className).cardinality();
+    }
+
+    /**
+     * Get the class names used by at least one task. With partitioned
+     * storage, only months loaded so far are considered.
+     *
+     * @return Sorted class names
+     */
+    public synchronized List<String> getClassNames() {
+        return bitmapIndex.classNames();
+    }
+
+    /**
+     * Search task titles, class names and notes, best matches first.
+     * Every word must match; "quoted words" must appear together in that
+     * order; the last word and words ending in * also match as prefixes.
+     *
+     * @param query Search text
+     * @param limit Maximum number of results
+     * @param status Required status, or null for any
+     * @param priority Required priority, or null for any
+     * @param className Required class name, or null for any
+     * @return A new list of at most limit matching tasks
+     */
+    public synchronized List<Task> search(String query, int limit,
+                                          Status status, Priority priority, String className) {
+        ensureAllLoaded();
+        if (status == null && priority == null && className == null) {
+            return searchIndex.search(query, limit, null);
+        }
+        BitSet matches = bitmapIndex.query(status, priority, className);
+        return searchIndex.search(query, limit, task -> bitmapIndex.contains(task, matches));
+    }
+
+    /**
+     * Add a new task (or replace the task with the same id). With
+     * partitioned storage, only tasks in loaded months are replaced; use
+     * updateTask to change a task that may not be loaded yet.
+     *
+     * @param task Task to add
+     */
+    public synchronized void addTask(Task task) {
+        // The month's stored tasks must be in memory before the month is rewritten
+        ensureMonthLoaded(monthOf(task));
+        Task replaced = tasks.put(task.getTaskId(), task);
+        if (replaced != null) {
+            markMonthDirty(replaced);
+        }
+        adopt(task, replaced);
+        markMonthDirty(task);
+        dateIndex.put(task);
+        bitmapIndex.put(task);
+        searchIndex.put(task);
+        indexEvent(task);
+        markDirty(task.getTaskId());
+    }
+
+    /**
+     * Add tasks whose ids are not taken yet; tasks with a known id are left
+     * untouched.
+     *
+     * @param newTasks Tasks to add
+     * @return Number of tasks added
+     */
+    public synchronized int addTasksIfAbsent(List<Task> newTasks) {
+        ensureAllLoaded();
+        int added = 0;
+        for (Task task : newTasks) {
+            if (!tasks.containsKey(task.getTaskId())) {
+                addTask(task);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Import the tasks in an iCalendar file, streaming it in batches.
+     * Events whose UID matches an existing taskId are skipped, so importing
+     * an earlier export again does not duplicate anything.
+     *
+     * @param file .ics file to read
+     * @return Counts of imported, duplicate and unusable events
+     * @throws IOException If the file could not be read
+     */
+    public ImportResult importIcs(Path file) throws IOException {
+        int imported = 0;
+        int read = 0;
+        try (IcsReader reader = new IcsReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            List<Task> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            Task task;
+            while ((task = reader.next()) != null) {
+                batch.add(task);
+                read++;
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    imported += addTasksIfAbsent(batch);
+                    batch.clear();
+                }
+            }
+            imported += addTasksIfAbsent(batch);
+            return new ImportResult(imported, read - imported, reader.getSkippedCount());
+        }
+    }
+
+    /**
+     * Write every task to an iCalendar file as VTODOs.
+     *
+     * @param file .ics file to create or replace
+     * @return Number of tasks written
+     * @throws IOException If the file could not be written
+     */
+    public int exportIcs(Path file) throws IOException {
+        List<String> taskIds;
+        synchronized (this) {
+            ensureAllLoaded();
+            taskIds = new ArrayList<>(tasks.keySet());
+        }
+        int written = 0;
+        try (IcsWriter writer = new IcsWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            // Copy one task at a time rather than the whole repository up front
+            for (String taskId : taskIds) {
+                Task task = getTaskSnapshot(taskId);
+                if (task != null) {
+                    writer.write(task);
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Apply changes to a stored task.
+     *
+     * @param taskId Id of the task to change
+     * @param changes Callback that mutates the task
+     * @return True if the task exists and was updated
+     */
+    public synchronized boolean updateTask(String taskId, Consumer<Task> changes) {
+        Task task = find(taskId);
+        if (task == null) {
+            return false;
+        }
+        markMonthDirty(task);
+        long textVersion = table.textVersion();
+        changes.accept(task);
+        ensureMonthLoaded(monthOf(task));
+        markMonthDirty(task);
+        dateIndex.put(task);
+        bitmapIndex.put(task);
+        if (table.textVersion() != textVersion) {
+            // Status and priority toggles leave the search index alone
+            reindexText(task);
+        }
+        indexEvent(task);
+        markDirty(taskId);
+        return true;
+    }
+
+    /**
+     * Change the status of a stored task.
+     *
+     * @param taskId Id of the task to change
+     * @param status New status
+     * @return True if the task exists and was updated
+     */
+    public boolean setStatus(String taskId, Status status) {
+        return updateTask(taskId, task -> task.setStatus(status));
+    }
+
+    /**
+     * Remove a task.
+     *
+     * @param taskId Id of the task to remove
+     * @return True if a task was removed
+     */
+    public synchronized boolean deleteTask(String taskId) {
+        if (find(taskId) == null) {
+            return false;
+        }
+        Task task = tasks.remove(taskId);
+        markMonthDirty(task);
+        dateIndex.remove(task);
+        bitmapIndex.remove(task);
+        searchIndex.remove(task);
+        unindexEvent(taskId);
+        // Callers may still hold the task; give it its own copy of the row
+        int row = task.row();
+        task.detach();
+        table.free(row);
+        markDirty(taskId);
+        return true;
+    }
+
+    /**
+     * Search the archived tasks; see search for the query syntax. Reads the
+     * archive from disk, so call it off the JavaFX Application Thread.
+     *
+     * @param query Query text
+     * @param limit Maximum number of results
+     * @param status Status to require, or null for any
+     * @param priority Priority to require, or null for any
+     * @param className Class name to require, or null for any
+     * @return Copies of the best matching archived tasks, best first
+     */
+    public List<Task> searchArchive(String query, int limit,
+                                    Status status, Priority priority, String className) {
+        try {
+            return archive.search(query, limit, task -> (status == null || task.getStatus() == status)
+                && (priority == null || task.getPriority() == priority)
+                && (className == null || className.equals(task.getClassName()))
+                && !isStored(task.getTaskId()));
+        } catch (IOException e) {
+            System.err.println("Error searching task archive: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Move an archived task back into the working set. It comes back as
+     * pending, since a completed task would be archived again.
+     *
+     * @param taskId Id of the archived task
+     * @return True if the task was found and restored
+     */
+    public boolean restoreArchived(String taskId) {
+        synchronized (saveLock) {
+            Task task;
+            try {
+                task = archive.find(taskId);
+            } catch (IOException e) {
+                System.err.println("Error reading task archive: " + e.getMessage());
+                return false;
+            }
+            if (task == null) {
+                return false;
+            }
+            task.setStatus(Status.PENDING);
+            addTask(task);
+            // Journal the task before dropping the archived copy
+            flush();
+            try {
+                archive.remove(List.of(taskId));
+            } catch (IOException e) {
+                // The stored task hides the archived copy until it is removed
+                System.err.println("Error updating task archive: " + e.getMessage());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Apply changed settings. Partitioned storage only changes on restart.
+     *
+     * @param settings The new settings
+     */
+    public void applySettings(UserSettings settings) {
+        archiveAfterDays = settings.getArchiveAfterDays();
+    }
+
+    /**
+     * Append any pending changes to the journal immediately.
+     */
+    public void flush() {
+        // Serialize writes so journal records land in mutation order
+        synchronized (saveLock) {
+            List<Task> upserts = new ArrayList<>();
+            List<String> deletes = new ArrayList<>();
+            synchronized (this) {
+                if (pendingFlush != null) {
+                    pendingFlush.cancel(false);
+                    pendingFlush = null;
+                }
+                if (dirtyIds.isEmpty()) {
+                    return;
+                }
+                // Stored notes are read when the records are formatted, outside this lock
+                TaskTable copies = table.emptySharingNotes(dirtyIds.size());
+                for (String taskId : dirtyIds) {
+                    Task task = tasks.get(taskId);
+                    if (task != null) {
+                        upserts.add(copyKeepingStoredNotes(copies, task));
+                    } else {
+                        deletes.add(taskId);
+                    }
+                }
+                dirtyIds.clear();
+            }
+            try {
+                journal.append(upserts, deletes);
+            } catch (IOException e) {
+                System.err.println("Error writing task journal: " + e.getMessage());
+                // Fall back to a full snapshot so the changes are not lost
+                writeSnapshot();
+                return;
+            }
+            if (journal.size() >= COMPACT_JOURNAL_BYTES) {
+                writeSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Archive old completed tasks and fold the journal into a new snapshot.
+     */
+    public void compact() {
+        synchronized (saveLock) {
+            archiveCompletedTasks();
+            flush();
+            if (journal.size() > 0) {
+                writeSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Flush pending changes, compact the journal and save the search index
+     * before the application exits.
+     */
+    public void shutdown() {
+        synchronized (saveLock) {
+            compact();
+            synchronized (this) {
+                if (partitionStore != null) {
+                    return; // Months load on demand; the index is built as they do
+                }
+                if (!dirtyIds.isEmpty()) {
+                    return; // Changed after compacting; the index is rebuilt on next start
+                }
+                long[] snapshot = snapshotStamp();
+                try {
+                    searchIndex.save(searchIndexFile(), snapshot[0], snapshot[1]);
+                } catch (IOException e) {
+                    System.err.println("Error saving search index: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Path searchIndexFile() {
+        return taskManager.getDataDirectory().resolve(SEARCH_INDEX_FILE);
+    }
+
+    /**
+     * Get the size and modification time of tasks.csv, used to tell whether
+     * a saved search index was built from it.
+     */
+    private long[] snapshotStamp() {
+        Path file = taskManager.getTasksFile();
+        try {
+            return new long[] {Files.size(file), Files.getLastModifiedTime(file).toMillis()};
+        } catch (IOException e) {
+            return new long[] {-1, -1};
+        }
+    }
+
+    /**
+     * Write every task to tasks.csv, or the changed months to their
+     * partitions, and discard the journal records this covers.
+     * Must be called while holding saveLock, or from the constructor.
+     *
+     * @return True if the snapshot was written
+     */
+    private boolean writeSnapshot() {
+        boolean saved = partitionStore != null ? writePartitions() : writeTasksFile();
+        if (saved) {
+            try {
+                journal.truncate();
+            } catch (IOException e) {
+                System.err.println("Error truncating task journal: " + e.getMessage());
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Bring tasks.csv up to date: patch the rows changed since the last
+     * snapshot in place, or rewrite the whole file when that is cheaper.
+     */
+    private boolean writeTasksFile() {
+        TaskFileIndex.Patch patch;
+        List<Task> snapshot = null;
+        synchronized (this) {
+            // Anything dirty is included in this snapshot
+            dirtyIds.clear();
+            patch = fileIndex.preparePatch(table);
+            if (patch == null) {
+                // Copying the table's columns is cheaper than copying every task
+                fileIndex.startRewrite(table);
+                TaskTable copy = table.copy();
+                snapshot = new ArrayList<>(tasks.size());
+                for (Task task : tasks.values()) {
+                    snapshot.add(new Task(copy, task.row()));
+                }
+            }
+        }
+        try {
+            if (patch != null) {
+                fileIndex.write(patch);
+            } else {
+                TaskFileIndex.Layout layout = fileIndex.rewrite(snapshot);
+                synchronized (this) {
+                    fileIndex.finishRewrite(layout, tasks, table);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving tasks: " + e.getMessage());
+            synchronized (this) {
+                fileIndex.invalidate();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Rewrite the partitions of the months changed since the last snapshot.
+     */
+    private boolean writePartitions() {
+        Map<YearMonth, List<Task>> changed = new TreeMap<>();
+        synchronized (this) {
+            dirtyIds.clear();
+            for (YearMonth month : dirtyMonths) {
+                List<Task> monthTasks = new ArrayList<>();
+                for (Task task : dateIndex.tasksBetween(month.atDay(1), month.atEndOfMonth())) {
+                    monthTasks.add(copyOf(task));
+                }
+                changed.put(month, monthTasks);
+            }
+            dirtyMonths.clear();
+        }
+        try {
+            partitionStore.write(changed);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving task partitions: " + e.getMessage());
+            synchronized (this) {
+                dirtyMonths.addAll(changed.keySet());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Move completed tasks due before the archive cutoff into the archive.
+     * Must be called while holding saveLock.
+     */
+    private void archiveCompletedTasks() {
+        int days = archiveAfterDays;
+        if (days <= 0) {
+            return;
+        }
+        LocalDate cutoff = AppClock.today().minusDays(days);
+        List<Task> old = new ArrayList<>();
+        synchronized (this) {
+            if (!allLoaded) {
+                for (YearMonth month : partitionStore.months()) {
+                    if (!month.isAfter(YearMonth.from(cutoff))) {
+                        loadPartition(month);
+                    }
+                }
+            }
+            for (Task task : dateIndex.tasksBefore(cutoff, bitmapIndex.query(Status.COMPLETED, null, null))) {
+                old.add(copyOf(task));
+            }
+        }
+        if (old.isEmpty()) {
+            return;
+        }
+        try {
+            archive.append(old);
+        } catch (IOException e) {
+            System.err.println("Error archiving tasks: " + e.getMessage());
+            return;
+        }
+        List<String> changed = new ArrayList<>();
+        synchronized (this) {
+            for (Task copy : old) {
+                Task task = tasks.get(copy.getTaskId());
+                if (task != null && taskManager.formatTask(task).equals(taskManager.formatTask(copy))) {
+                    deleteTask(copy.getTaskId());
+                } else {
+                    changed.add(copy.getTaskId()); // Edited while being archived; keep it
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            try {
+                archive.remove(changed);
+            } catch (IOException e) {
+                System.err.println("Error updating task archive: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Check whether a task is in the working set, without loading months.
+     */
+    private synchronized boolean isStored(String taskId) {
+        return tasks.containsKey(taskId);
+    }
+
+    /**
+     * Look up a task, loading every month first if it is not in memory yet.
+     */
+    private Task find(String taskId) {
+        Task task = tasks.get(taskId);
+        if (task == null && !allLoaded) {
+            ensureAllLoaded();
+            task = tasks.get(taskId);
+        }
+        return task;
+    }
+
+    /**
+     * Load the months overlapping a date range that are not in memory yet.
+     */
+    private void ensureLoaded(LocalDate from, LocalDate to) {
+        if (allLoaded) {
+            return;
+        }
+        for (YearMonth month : partitionStore.monthsBetween(from, to)) {
+            loadPartition(month);
+        }
+    }
+
+    private void ensureMonthLoaded(YearMonth month) {
+        if (!allLoaded && month != null && partitionStore.getPartition(month) != null) {
+            loadPartition(month);
+        }
+    }
+
+    private void ensureAllLoaded() {
+        if (allLoaded) {
+            return;
+        }
+        for (YearMonth month : partitionStore.months()) {
+            loadPartition(month);
+        }
+        allLoaded = true;
+    }
+
+    /**
+     * Read one month's partition into the shared table and index its tasks.
+     */
+    private void loadPartition(YearMonth month) {
+        if (!loadedMonths.contains(month)) {
+            addPartition(month, partitionStore.load(month, table));
+        }
+    }
+
+    /**
+     * Read partitions into private tables outside the lock, then copy each
+     * into the shared table under it.
+     */
+    private void readPartitions(List<YearMonth> months) {
+        for (YearMonth month : months) {
+            synchronized (this) {
+                if (loadedMonths.contains(month)) {
+                    continue;
+                }
+            }
+            TaskPartitionStore.Partition partition = partitionStore.getPartition(month);
+            TaskTable staging = new TaskTable(partition != null ? partition.rows : 1);
+            List<Task> stored = partitionStore.load(month, staging);
+            synchronized (this) {
+                addPartition(month, stored);
+            }
+        }
+    }
+
+    /**
+     * Index one month's stored tasks, moving them into the shared table if
+     * they were read into another one. Tasks already in memory are newer
+     * than the stored copy and are kept.
+     */
+    private void addPartition(YearMonth month, List<Task> stored) {
+        if (!loadedMonths.add(month)) {
+            // Another thread loaded the month while this copy was being read
+            return;
+        }
+        for (Task task : stored) {
+            if (tasks.containsKey(task.getTaskId())) {
+                // Replaced while the month was unloaded; drop the stale copy on the next write
+                if (task.table() == table) {
+                    table.free(task.row());
+                }
+                dirtyMonths.add(month);
+                continue;
+            }
+            adopt(task, null);
+            tasks.put(task.getTaskId(), task);
+            dateIndex.put(task);
+            bitmapIndex.put(task);
+            searchIndex.put(task);
+            indexEvent(task);
+        }
+        // Broader queries may now return more; let cached results notice
+        version++;
+    }
+
+    /**
+     * Re-index a task whose title, class name or notes changed. Stored
+     * notes are read on the persistence executor, outside the lock, and the
+     * task is indexed once they are in; until then searches see its old text.
+     * Must be called while holding the lock.
+     */
+    private void reindexText(Task task) {
+        if (!table.hasStoredNotes(task.row())) {
+            searchIndex.put(task);
+            return;
+        }
+        String taskId = task.getTaskId();
+        long textVersion = table.textVersion();
+        PersistenceExecutor.run(() -> {
+            String notes = task.getNotes();
+            synchronized (this) {
+                if (tasks.get(taskId) != task) {
+                    return; // Deleted or replaced meanwhile; that change indexed it
+                }
+                if (table.textVersion() == textVersion) {
+                    searchIndex.put(task, notes);
+                } else {
+                    // Something was edited meanwhile; the notes read may be stale
+                    reindexText(task);
+                }
+            }
+        });
+    }
+
+    private void markMonthDirty(Task task) {
+        YearMonth month = monthOf(task);
+        if (partitionStore != null && month != null) {
+            dirtyMonths.add(month);
+        }
+    }
+
+    private static YearMonth monthOf(Task task) {
+        LocalDate dueDate = task.getDueDate();
+        return dueDate != null ? YearMonth.from(dueDate) : null;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error deleting " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Record a changed task, schedule a write-behind flush unless one is
+     * already pending, and notify listeners.
+     */
+    private void markDirty(String taskId) {
+        version++;
+        dirtyIds.add(taskId);
+        if (pendingFlush == null) {
+            pendingFlush = PersistenceExecutor.schedule(this::flush, WRITE_BEHIND_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        for (TaskChangeListener listener : listeners) {
+            listener.taskChanged(taskId);
+        }
+    }
+
+    /**
+     * Move a task into the shared table, taking over the row of the task it
+     * replaces if there is one.
+     */
+    private void adopt(Task task, Task replaced) {
+        if (task.table() == table) {
+            return;
+        }
+        if (replaced != null && replaced != task && replaced.table() == table) {
+            int row = replaced.row();
+            replaced.detach();
+            table.copyRow(task.table(), task.row(), row);
+            task.moveTo(table, row);
+        } else {
+            task.moveTo(table, table.copyRow(task.table(), task.row()));
+        }
+    }
+
+    /**
+     * Point the event id reverse index at a task's current event id.
+     */
+    private void indexEvent(Task task) {
+        unindexEvent(task.getTaskId());
+        String eventId = task.getGoogleCalendarEventId();
+        if (eventId != null && !eventId.isEmpty()) {
+            indexedEventIds.put(task.getTaskId(), eventId);
+            taskIdsByEventId.put(eventId, task.getTaskId());
+        }
+    }
+
+    private void unindexEvent(String taskId) {
+        String eventId = indexedEventIds.remove(taskId);
+        if (eventId != null) {
+            taskIdsByEventId.remove(eventId, taskId);
+        }
+    }
+
+    /**
+     * Copy a task so the writer never reads objects the UI is mutating.
+     */
+    /**
+     * Copy a stored task into a table from emptySharingNotes. Its notes stay
+     * a pointer into tasks.csv, so they may only be read while holding
+     * saveLock, before the file can be rewritten.
+     */
+    private Task copyKeepingStoredNotes(TaskTable copies, Task task) {
+        return new Task(copies, copies.copyRow(table, task.row()));
+    }
+
+    private static Task copyOf(Task task) {
+        return new Task(
+            task.getTaskId(),
+            task.getTitle(),
+            task.getDueDate(),
+            task.getClassName(),
+            task.getNotes(),
+            task.getStatus(),
+            task.getPriority(),
+            task.getGoogleCalendarEventId()
+        );
+    }
+}
@@ -0,0 +1,661 @@
+package com.tasktorch.models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index over task titles, class names and notes.
+ *
+ * Text is split into lower-cased letter/digit tokens. Each term maps to a
+ * postings list of (document ordinal, weight) pairs, where the weight counts
+ * occurrences with title hits worth more than class hits and class hits
+ * more than note hits. Results are ranked by the sum of weight x idf over
+ * the query terms.
+ *
+ * Adjacent word pairs get postings lists of their own, so a phrase query
+ * only has to check the word order of documents that contain each of its
+ * pairs.
+ *
+ * Postings are append-only: a changed task gets a new ordinal and its old
+ * one is marked dead, so lists stay sorted without being rewritten. Dead
+ * entries are dropped once they outnumber live ones.
+ *
+ * Queries: every word must match; a quoted "several words" must appear in
+ * that order within one field; a word ending in * and the last word of the
+ * query (still being typed) match as prefixes.
+ *
+ * Not thread-safe; TaskRepository guards it with its own lock.
+ */
+public class TaskSearchIndex {
+    private static final int FILE_MAGIC = 0x54545349; // "TTSI"
+    private static final int FILE_VERSION = 1;
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float CLASS_WEIGHT = 2f;
+    private static final float NOTES_WEIGHT = 1f;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    // A short prefix such as "a" is only expanded to its most common terms
+    private static final int MAX_PREFIX_TERMS = 64;
+    // Phrase queries rank this many times the limit before checking word order
+    private static final int PHRASE_POOL_FACTOR = 4;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    // Adjacent word pairs, keyed "first second"; weights are unused
+    private final Map<String, Postings> pairs = new HashMap<>();
+    // Document ordinal of each task table row, valid where indexedRows is set
+    private int[] ordinalsByRow = new int[1024];
+    private final BitSet indexedRows = new BitSet();
+    private final BitSet liveDocs = new BitSet();
+    private Task[] rows = new Task[1024];
+    private int nextOrdinal;
+    private int liveCount;
+    // Per-query scratch space, indexed by ordinal and cleared after each search
+    private float[] scores = new float[1024];
+    private int[] matchedWords = new int[1024];
+
+    /**
+     * Documents containing one term, in ordinal order.
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        float[] weights = new float[2];
+        int size;
+
+        void add(int doc, float weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            size++;
+        }
+    }
+
+    /**
+     * One part of a parsed query.
+     */
+    private static final class Clause {
+        final List<String> words;
+        final boolean prefix;
+
+        Clause(List<String> words, boolean prefix) {
+            this.words = words;
+            this.prefix = prefix;
+        }
+
+        boolean isPhrase() {
+            return words.size() > 1;
+        }
+    }
+
+    /**
+     * Index a task, replacing what was indexed for it before.
+     *
+     * @param task Task to index; must belong to the repository's table
+     */
+    public void put(Task task) {
+        put(task, task.getNotes());
+    }
+
+    /**
+     * Index a task with notes read beforehand, so stored notes need not be
+     * read from disk while the index is locked.
+     *
+     * @param task Task to index; must belong to the repository's table
+     * @param notes The task's notes
+     */
+    public void put(Task task, String notes) {
+        remove(task);
+        int ordinal = allocateOrdinal(task);
+
+        Map<String, Float> weights = new HashMap<>();
+        Set<String> wordPairs = new HashSet<>();
+        addTokens(weights, wordPairs, task.getTitle(), TITLE_WEIGHT);
+        addTokens(weights, wordPairs, task.getClassName(), CLASS_WEIGHT);
+        addTokens(weights, wordPairs, notes, NOTES_WEIGHT);
+        for (Map.Entry<String, Float> entry : weights.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), t -> new Postings()).add(ordinal, entry.getValue());
+        }
+        for (String pair : wordPairs) {
+            pairs.computeIfAbsent(pair, p -> new Postings()).add(ordinal, 0f);
+        }
+    }
+
+    /**
+     * Remove a task from the index.
+     *
+     * @param task Task to remove
+     */
+    public void remove(Task task) {
+        int row = task.row();
+        if (!indexedRows.get(row)) {
+            return;
+        }
+        indexedRows.clear(row);
+        int ordinal = ordinalsByRow[row];
+        liveDocs.clear(ordinal);
+        rows[ordinal] = null;
+        liveCount--;
+        if (nextOrdinal > 2 * liveCount + 1024) {
+            compact();
+        }
+    }
+
+    /**
+     * Remove every task from the index.
+     */
+    public void clear() {
+        terms.clear();
+        pairs.clear();
+        indexedRows.clear();
+        liveDocs.clear();
+        Arrays.fill(rows, null);
+        nextOrdinal = 0;
+        liveCount = 0;
+    }
+
+    /**
+     * Find the tasks matching a query, best matches first.
+     *
+     * @param query Words, "quoted phrases" and prefix* words
+     * @param limit Maximum number of results
+     * @param filter Only tasks it accepts are returned, or null for all
+     * @return A new list of at most limit tasks
+     */
+    public List<Task> search(String query, int limit, Predicate<Task> filter) {
+        List<Clause> clauses = parse(query);
+        List<Task> results = new ArrayList<>();
+        if (clauses.isEmpty() || limit <= 0) {
+            return results;
+        }
+
+        // Resolve every word to the postings it matches; an unknown word means no results
+        List<List<Postings>> words = new ArrayList<>();
+        boolean hasPhrase = false;
+        for (Clause clause : clauses) {
+            hasPhrase |= clause.isPhrase();
+            for (int i = 0; i < clause.words.size(); i++) {
+                boolean last = i == clause.words.size() - 1;
+                List<Postings> matches = expand(clause.words.get(i), clause.prefix && last);
+                if (matches.isEmpty()) {
+                    return results;
+                }
+                words.add(matches);
+                if (!last && !(clause.prefix && i == clause.words.size() - 2)) {
+                    // Phrase words must also appear as adjacent pairs
+                    Postings pair = pairs.get(clause.words.get(i) + ' ' + clause.words.get(i + 1));
+                    if (pair == null) {
+                        return results;
+                    }
+                    words.add(List.of(pair));
+                }
+            }
+        }
+        // Rarest word first, so later words only confirm documents already matched
+        words.sort((a, b) -> Long.compare(totalSize(a), totalSize(b)));
+
+        if (scores.length < nextOrdinal) {
+            scores = new float[Math.max(nextOrdinal, scores.length * 2)];
+            matchedWords = new int[scores.length];
+        }
+        for (int w = 0; w < words.size(); w++) {
+            for (Postings postings : words.get(w)) {
+                collect(postings, w);
+            }
+        }
+
+        // Rank: keep the best documents in a min-heap of (score, ordinal) keys.
+        // Phrases are checked against the text afterwards, so take a wider pool for them.
+        int poolSize = hasPhrase ? (int) Math.min(Integer.MAX_VALUE, (long) limit * PHRASE_POOL_FACTOR) : limit;
+        long[] ranked = topCandidates(words.size(), poolSize, filter);
+        if (!hasPhrase) {
+            for (long key : ranked) {
+                results.add(rows[docOf(key)]);
+            }
+        } else if (verifyPhrases(ranked, clauses, limit, results) < limit && ranked.length == poolSize) {
+            // Too many near misses in the pool; check every candidate
+            results.clear();
+            verifyPhrases(topCandidates(words.size(), Integer.MAX_VALUE, filter), clauses, limit, results);
+        }
+        Arrays.fill(scores, 0, nextOrdinal, 0f);
+        Arrays.fill(matchedWords, 0, nextOrdinal, 0);
+        return results;
+    }
+
+    /**
+     * Save the index, tagged with the snapshot it was built from.
+     *
+     * @param file Index file to write
+     * @param snapshotSize Size of the tasks.csv snapshot the index matches
+     * @param snapshotModified Modification time (ms) of that snapshot
+     * @throws IOException If the index could not be written
+     */
+    public void save(Path file, long snapshotSize, long snapshotModified) throws IOException {
+        compact();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(snapshotSize);
+            out.writeLong(snapshotModified);
+            out.writeInt(nextOrdinal);
+            for (int doc = 0; doc < nextOrdinal; doc++) {
+                out.writeUTF(rows[doc].getTaskId());
+            }
+            writePostings(out, terms);
+            writePostings(out, pairs);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load an index saved by save, if it matches the given snapshot.
+     * On failure the index is left empty.
+     *
+     * @param file Index file to read
+     * @param snapshotSize Size of the tasks.csv snapshot that was loaded
+     * @param snapshotModified Modification time (ms) of that snapshot
+     * @param tasks Tasks loaded from the snapshot, keyed by taskId
+     * @return True if the index was loaded
+     */
+    public boolean load(Path file, long snapshotSize, long snapshotModified, Map<String, Task> tasks) {
+        clear();
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION
+                || in.readLong() != snapshotSize || in.readLong() != snapshotModified) {
+                return false; // Built from another snapshot; rebuild instead
+            }
+            int docCount = in.readInt();
+            rows = new Task[Math.max(1024, docCount)];
+            for (int doc = 0; doc < docCount; doc++) {
+                Task task = tasks.get(in.readUTF());
+                rows[doc] = task;
+                if (task != null) {
+                    setOrdinal(task.row(), doc);
+                    liveDocs.set(doc);
+                    liveCount++;
+                }
+            }
+            nextOrdinal = docCount;
+            readPostings(in, terms);
+            readPostings(in, pairs);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading search index: " + e.getMessage());
+            clear();
+            return false;
+        }
+    }
+
+    private static void writePostings(DataOutputStream out, Map<String, Postings> lists) throws IOException {
+        out.writeInt(lists.size());
+        for (Map.Entry<String, Postings> entry : lists.entrySet()) {
+            Postings postings = entry.getValue();
+            out.writeUTF(entry.getKey());
+            writeVarInt(out, postings.size);
+            // Ordinals ascend, so their gaps are small; weights are whole occurrence counts
+            int previous = 0;
+            for (int i = 0; i < postings.size; i++) {
+                writeVarInt(out, postings.docs[i] - previous);
+                writeVarInt(out, Math.round(postings.weights[i]));
+                previous = postings.docs[i];
+            }
+        }
+    }
+
+    private static void readPostings(DataInputStream in, Map<String, Postings> lists) throws IOException {
+        int count = in.readInt();
+        for (int t = 0; t < count; t++) {
+            String key = in.readUTF();
+            int size = readVarInt(in);
+            Postings postings = new Postings();
+            postings.docs = new int[Math.max(2, size)];
+            postings.weights = new float[Math.max(2, size)];
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                previous += readVarInt(in);
+                postings.docs[i] = previous;
+                postings.weights[i] = readVarInt(in);
+            }
+            postings.size = size;
+            lists.put(key, postings);
+        }
+    }
+
+    /**
+     * Write a non-negative int in 7-bit groups, low group first.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed search index");
+    }
+
+    /**
+     * Get the postings of a word, or of the most common words starting with it.
+     */
+    private List<Postings> expand(String word, boolean prefix) {
+        if (!prefix) {
+            Postings postings = terms.get(word);
+            return postings != null ? List.of(postings) : List.of();
+        }
+        Map<String, Postings> expansions = terms.subMap(word, true, word + Character.MAX_VALUE, false);
+        if (expansions.size() <= MAX_PREFIX_TERMS) {
+            return new ArrayList<>(expansions.values());
+        }
+        PriorityQueue<Postings> common = new PriorityQueue<>((a, b) -> Integer.compare(a.size, b.size));
+        for (Postings postings : expansions.values()) {
+            common.add(postings);
+            if (common.size() > MAX_PREFIX_TERMS) {
+                common.poll();
+            }
+        }
+        return new ArrayList<>(common);
+    }
+
+    private static long totalSize(List<Postings> lists) {
+        long size = 0;
+        for (Postings postings : lists) {
+            size += postings.size;
+        }
+        return size;
+    }
+
+    /**
+     * Add a word's postings to the documents that matched every earlier word
+     * (the first word: every live document), accumulating their scores.
+     */
+    private void collect(Postings postings, int word) {
+        float idf = (float) Math.log(1 + (double) Math.max(liveCount, 1) / postings.size);
+        for (int i = 0; i < postings.size; i++) {
+            int doc = postings.docs[i];
+            int matched = matchedWords[doc];
+            // matched == word + 1 when another expansion of this word already hit the document
+            if (matched >= word && (word > 0 || liveDocs.get(doc))) {
+                matchedWords[doc] = word + 1;
+                scores[doc] += postings.weights[i] * idf;
+            }
+        }
+    }
+
+    /**
+     * Get the best-scoring documents that matched every word, best first.
+     */
+    private long[] topCandidates(int wordCount, int limit, Predicate<Task> filter) {
+        PriorityQueue<Long> best = new PriorityQueue<>();
+        for (int doc = 0; doc < nextOrdinal; doc++) {
+            if (matchedWords[doc] != wordCount) {
+                continue;
+            }
+            long key = ((long) Float.floatToIntBits(scores[doc]) << 32) | (Integer.MAX_VALUE - doc);
+            if (best.size() == limit && key <= best.peek()) {
+                continue;
+            }
+            if (filter != null && !filter.test(rows[doc])) {
+                continue;
+            }
+            best.add(key);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        long[] ranked = new long[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll();
+        }
+        return ranked;
+    }
+
+    /**
+     * Add ranked documents containing every phrase to results, up to limit.
+     *
+     * @return Number of results
+     */
+    private int verifyPhrases(long[] ranked, List<Clause> clauses, int limit, List<Task> results) {
+        for (int i = 0; i < ranked.length && results.size() < limit; i++) {
+            Task task = rows[docOf(ranked[i])];
+            if (matchesPhrases(task, clauses)) {
+                results.add(task);
+            }
+        }
+        return results.size();
+    }
+
+    private static int docOf(long key) {
+        return Integer.MAX_VALUE - (int) (key & 0xffffffffL);
+    }
+
+    /**
+     * Check the phrase clauses against the task's text.
+     */
+    private static boolean matchesPhrases(Task task, List<Clause> clauses) {
+        for (Clause clause : clauses) {
+            if (clause.isPhrase()
+                && !containsPhrase(tokenize(task.getTitle()), clause)
+                && !containsPhrase(tokenize(task.getClassName()), clause)
+                && !containsPhrase(tokenize(task.getNotes()), clause)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsPhrase(List<String> tokens, Clause clause) {
+        List<String> words = clause.words;
+        for (int start = 0; start + words.size() <= tokens.size(); start++) {
+            boolean match = true;
+            for (int i = 0; i < words.size() && match; i++) {
+                String token = tokens.get(start + i);
+                boolean last = i == words.size() - 1;
+                match = clause.prefix && last ? token.startsWith(words.get(i)) : token.equals(words.get(i));
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split a query into clauses. Unquoted words become one clause each.
+     */
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        boolean typingLastWord = !query.isEmpty()
+            && Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                String phrase = end >= 0 ? query.substring(i + 1, end) : query.substring(i + 1);
+                List<String> words = tokenize(phrase);
+                if (!words.isEmpty()) {
+                    // An unterminated phrase is still being typed
+                    clauses.add(new Clause(words, end < 0 && typingLastWord));
+                }
+                i = end >= 0 ? end + 1 : query.length();
+            } else if (Character.isLetterOrDigit(c)) {
+                int end = i;
+                while (end < query.length() && Character.isLetterOrDigit(query.charAt(end))) {
+                    end++;
+                }
+                boolean star = end < query.length() && query.charAt(end) == '*';
+                boolean lastWord = end == query.length();
+                String word = normalize(query.substring(i, end));
+                clauses.add(new Clause(List.of(word), star || (lastWord && typingLastWord)));
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Get the words a query requires, for filters that can only test single
+     * words, such as the archive's per-block filters.
+     *
+     * @param query Query text
+     * @return Each required word, mapped to whether it may match as a prefix
+     */
+    static Map<String, Boolean> queryWords(String query) {
+        Map<String, Boolean> words = new LinkedHashMap<>();
+        for (Clause clause : parse(query)) {
+            for (int i = 0; i < clause.words.size(); i++) {
+                boolean prefix = clause.prefix && i == clause.words.size() - 1;
+                // A word required in full anywhere must match in full
+                words.merge(clause.words.get(i), prefix, Boolean::logicalAnd);
+            }
+        }
+        return words;
+    }
+
+    private static void addTokens(Map<String, Float> weights, Set<String> wordPairs, String text, float weight) {
+        String previous = null;
+        for (String token : tokenize(text)) {
+            weights.merge(token, weight, Float::sum);
+            if (previous != null) {
+                wordPairs.add(previous + ' ' + token);
+            }
+            previous = token;
+        }
+    }
+
+    /**
+     * Split text into lower-cased runs of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(normalize(text.substring(start, i)));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static String normalize(String token) {
+        String lower = token.toLowerCase(Locale.ROOT);
+        return lower.length() > MAX_TOKEN_LENGTH ? lower.substring(0, MAX_TOKEN_LENGTH) : lower;
+    }
+
+    private void setOrdinal(int row, int ordinal) {
+        if (row >= ordinalsByRow.length) {
+            ordinalsByRow = Arrays.copyOf(ordinalsByRow, Math.max(row + 1, ordinalsByRow.length * 2));
+        }
+        ordinalsByRow[row] = ordinal;
+        indexedRows.set(row);
+    }
+
+    private int allocateOrdinal(Task task) {
+        if (nextOrdinal == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        int ordinal = nextOrdinal++;
+        rows[ordinal] = task;
+        setOrdinal(task.row(), ordinal);
+        liveDocs.set(ordinal);
+        liveCount++;
+        return ordinal;
+    }
+
+    private static void remapPostings(Map<String, Postings> lists, int[] remap) {
+        Iterator<Postings> it = lists.values().iterator();
+        while (it.hasNext()) {
+            Postings postings = it.next();
+            int size = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int doc = remap[postings.docs[i]];
+                if (doc >= 0) {
+                    postings.docs[size] = doc;
+                    postings.weights[size] = postings.weights[i];
+                    size++;
+                }
+            }
+            postings.size = size;
+            if (size == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop dead postings and renumber the live documents densely, keeping
+     * their order so every postings list stays sorted.
+     */
+    private void compact() {
+        if (liveCount == nextOrdinal) {
+            return;
+        }
+        int[] remap = new int[nextOrdinal];
+        Task[] compacted = new Task[Math.max(1024, liveCount * 2)];
+        int next = 0;
+        for (int doc = 0; doc < nextOrdinal; doc++) {
+            if (liveDocs.get(doc)) {
+                remap[doc] = next;
+                compacted[next] = rows[doc];
+                ordinalsByRow[rows[doc].row()] = next;
+                next++;
+            } else {
+                remap[doc] = -1;
+            }
+        }
+        remapPostings(terms, remap);
+        remapPostings(pairs, remap);
+        rows = compacted;
+        nextOrdinal = next;
+        liveDocs.clear();
+        liveDocs.set(0, next);
+    }
+}
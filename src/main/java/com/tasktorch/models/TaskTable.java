@@ -0,0 +1,508 @@
+package com.tasktorch.models;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column-oriented storage for task fields.
+ *
+ * Each column is a primitive or String array indexed by row: due dates are
+ * epoch days, class names are codes into a dictionary shared by every
+ * table, and status and priority share one byte. A Task is a view over one
+ * row. TaskRepository keeps all its tasks in one table, so the indexes can
+ * key their own arrays by row instead of by taskId. A task created with the
+ * public Task constructors gets a private one-row table until the
+ * repository adopts it.
+ *
+ * The table also records which rows changed since they were last saved,
+ * and whether only their status or priority did, so tasks.csv can be
+ * updated row by row (see TaskFileIndex).
+ *
+ * Notes read from tasks.csv are not kept in memory: the row holds a pointer
+ * to them in the file instead, and they are read when asked for, so the
+ * table's size does not depend on how long people's notes are.
+ *
+ * Every method locks the table, so a Task can be read from any thread while
+ * another grows or changes the table. Changes that span several rows or
+ * tables are still guarded by the owner of the shared table.
+ */
+final class TaskTable {
+    static final int NO_DATE = Integer.MIN_VALUE;
+    // Change flags of a row since it was last saved
+    static final byte CHANGED_FLAGS = 1;
+    static final byte CHANGED_ROW = 2;
+    // Class code of a row without a class name
+    static final int NO_CLASS = -1;
+    private static final Status[] STATUSES = Status.values();
+    private static final Priority[] PRIORITIES = Priority.values();
+    // LocalDate objects for the epoch days 0 .. DATE_CACHE_SIZE-1 (1970-2109), created on demand
+    private static final int DATE_CACHE_SIZE = 51_135;
+    private static final LocalDate[] dateCache = new LocalDate[DATE_CACHE_SIZE];
+
+    // Dictionary shared by all tables, so rows can be copied between tables code for code
+    private static final Map<String, Integer> classCodes = new ConcurrentHashMap<>();
+    private static volatile String[] classNames = new String[64];
+    private static int classCount;
+
+    private String[] ids;
+    private String[] titles;
+    private String[] notes;
+    // Pointer into notesFile for notes not held in notes (0 if none)
+    private long[] notesAt;
+    private TaskFileIndex.NotesFile notesFile;
+    private String[] eventIds;
+    private int[] dueDays;
+    private int[] classes;
+    // status ordinal << 4 | priority ordinal
+    private byte[] flags;
+    private byte[] changes;
+    // Bumped whenever a title, class name or notes change, in any row
+    private long textVersion;
+    private int size;
+    private final BitSet freeRows = new BitSet();
+    // Told when a row is released, so its saved copy can be dropped
+    private TaskFileIndex storage;
+
+    /**
+     * Create an empty table.
+     *
+     * @param capacity Initial number of rows
+     */
+    TaskTable(int capacity) {
+        capacity = Math.max(1, capacity);
+        ids = new String[capacity];
+        titles = new String[capacity];
+        notes = new String[capacity];
+        notesAt = new long[capacity];
+        eventIds = new String[capacity];
+        dueDays = new int[capacity];
+        classes = new int[capacity];
+        flags = new byte[capacity];
+        changes = new byte[capacity];
+    }
+
+    /**
+     * Append a row, reusing a freed one if there is any.
+     *
+     * @return The new row
+     */
+    synchronized int add(String taskId, String title, LocalDate dueDate, String className,
+                         String notes, Status status, Priority priority, String eventId) {
+        int row = allocateRow();
+        ids[row] = taskId;
+        titles[row] = title;
+        setDueDate(row, dueDate);
+        setClassName(row, className);
+        setNotes(row, notes);
+        flags[row] = (byte) (status.ordinal() << 4 | priority.ordinal());
+        eventIds[row] = eventId;
+        changes[row] = CHANGED_ROW;
+        return row;
+    }
+
+    /**
+     * Append a copy of another table's row.
+     *
+     * @return The new row
+     */
+    int copyRow(TaskTable source, int sourceRow) {
+        int row;
+        synchronized (this) {
+            row = allocateRow();
+        }
+        copyRow(source, sourceRow, row);
+        return row;
+    }
+
+    /**
+     * Overwrite a row with a copy of another table's row.
+     */
+    void copyRow(TaskTable source, int sourceRow, int row) {
+        // Read the source first and write after, so two tables are never locked at once
+        TaskFileIndex.NotesFile file;
+        synchronized (this) {
+            file = notesFile;
+        }
+        String id;
+        String title;
+        String note;
+        long noteAt;
+        String eventId;
+        int dueDay;
+        int classCode;
+        byte flag;
+        synchronized (source) {
+            id = source.ids[sourceRow];
+            title = source.titles[sourceRow];
+            if (source.notesAt[sourceRow] != 0 && source.notesFile != file) {
+                // Stored in a file this table does not read from
+                note = source.notes(sourceRow);
+                noteAt = 0;
+            } else {
+                note = source.notes[sourceRow];
+                noteAt = source.notesAt[sourceRow];
+            }
+            eventId = source.eventIds[sourceRow];
+            dueDay = source.dueDays[sourceRow];
+            classCode = source.classes[sourceRow];
+            flag = source.flags[sourceRow];
+        }
+        synchronized (this) {
+            ids[row] = id;
+            titles[row] = title;
+            notes[row] = note;
+            notesAt[row] = noteAt;
+            eventIds[row] = eventId;
+            dueDays[row] = dueDay;
+            classes[row] = classCode;
+            flags[row] = flag;
+            changes[row] = CHANGED_ROW;
+        }
+    }
+
+    /**
+     * Release a row for reuse.
+     */
+    synchronized void free(int row) {
+        ids[row] = null;
+        titles[row] = null;
+        notes[row] = null;
+        notesAt[row] = 0;
+        eventIds[row] = null;
+        changes[row] = 0;
+        freeRows.set(row);
+        if (storage != null) {
+            storage.released(row);
+        }
+    }
+
+    /**
+     * Release every row not in the given set.
+     */
+    synchronized void retainRows(BitSet rows) {
+        for (int row = 0; row < size; row++) {
+            if (!rows.get(row) && !freeRows.get(row)) {
+                free(row);
+            }
+        }
+    }
+
+    /**
+     * Copy the whole table, e.g. so a writer can format rows without the lock.
+     */
+    synchronized TaskTable copy() {
+        TaskTable copy = new TaskTable(1);
+        copy.ids = ids.clone();
+        copy.titles = titles.clone();
+        copy.notes = notes.clone();
+        copy.notesAt = notesAt.clone();
+        copy.notesFile = notesFile;
+        copy.eventIds = eventIds.clone();
+        copy.dueDays = dueDays.clone();
+        copy.classes = classes.clone();
+        copy.flags = flags.clone();
+        copy.changes = changes.clone();
+        copy.size = size;
+        copy.freeRows.or(freeRows);
+        return copy;
+    }
+
+    /**
+     * Report released rows to the index of the file this table is saved to.
+     */
+    synchronized void setStorage(TaskFileIndex storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Get what changed in a row since it was last saved.
+     *
+     * @return 0, CHANGED_FLAGS if only status or priority changed, or a
+     *         value including CHANGED_ROW
+     */
+    synchronized byte changes(int row) {
+        return changes[row];
+    }
+
+    /**
+     * Find the next row changed since it was last saved.
+     *
+     * @return The row, or -1 if there is none from the given row on
+     */
+    synchronized int nextChangedRow(int from) {
+        for (int row = from; row < size; row++) {
+            if (changes[row] != 0) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get a counter that changes whenever a title, class name or notes of
+     * any row change, so a caller can tell whether an edit touched the
+     * searchable text.
+     */
+    synchronized long textVersion() {
+        return textVersion;
+    }
+
+    /**
+     * Check whether a row's notes are only in the notes file, so reading
+     * them means a disk read.
+     */
+    synchronized boolean hasStoredNotes(int row) {
+        return notes[row] == null && notesAt[row] != 0;
+    }
+
+    /**
+     * Create an empty table that reads stored notes from the same file, so
+     * rows copied into it keep their notes on disk until asked for.
+     */
+    synchronized TaskTable emptySharingNotes(int capacity) {
+        TaskTable copies = new TaskTable(capacity);
+        copies.notesFile = notesFile;
+        return copies;
+    }
+
+    /**
+     * Set the file that stored notes are read from.
+     */
+    synchronized void setNotesFile(TaskFileIndex.NotesFile file) {
+        notesFile = file;
+    }
+
+    /**
+     * Drop a row's notes from memory; they are read from the notes file,
+     * where the pointer says, when needed.
+     */
+    synchronized void setStoredNotes(int row, long pointer) {
+        notes[row] = null;
+        notesAt[row] = pointer;
+    }
+
+    /**
+     * Move stored notes to a new notes file, e.g. after tasks.csv was
+     * rewritten. Rows with a pointer into the new file drop their notes
+     * from memory; other rows with stored notes read them into memory first.
+     *
+     * @param file The new notes file
+     * @param pointers Pointer into the new file by row, 0 for none
+     */
+    synchronized void switchNotesFile(TaskFileIndex.NotesFile file, long[] pointers) {
+        for (int row = 0; row < size; row++) {
+            long pointer = row < pointers.length ? pointers[row] : 0;
+            if (pointer != 0) {
+                notes[row] = null;
+                notesAt[row] = pointer;
+            } else if (notesAt[row] != 0) {
+                notes[row] = notesFile.read(notesAt[row]);
+                notesAt[row] = 0;
+            }
+        }
+        notesFile = file;
+    }
+
+    synchronized void clearChanges(int row) {
+        changes[row] = 0;
+    }
+
+    synchronized void clearChanges() {
+        Arrays.fill(changes, (byte) 0);
+    }
+
+    synchronized String taskId(int row) {
+        return ids[row];
+    }
+
+    synchronized void setTaskId(int row, String taskId) {
+        markChanged(row, !Objects.equals(ids[row], taskId));
+        ids[row] = taskId;
+    }
+
+    synchronized String title(int row) {
+        return titles[row];
+    }
+
+    synchronized void setTitle(int row, String title) {
+        markTextChanged(row, !Objects.equals(titles[row], title));
+        titles[row] = title;
+    }
+
+    /**
+     * Get the due date as an epoch day, or NO_DATE.
+     */
+    synchronized int dueDay(int row) {
+        return dueDays[row];
+    }
+
+    synchronized LocalDate dueDate(int row) {
+        int day = dueDays[row];
+        if (day == NO_DATE) {
+            return null;
+        }
+        if (day < 0 || day >= DATE_CACHE_SIZE) {
+            return LocalDate.ofEpochDay(day);
+        }
+        // Racy but safe: LocalDate is immutable, so at worst two equal objects are created
+        LocalDate date = dateCache[day];
+        if (date == null) {
+            date = LocalDate.ofEpochDay(day);
+            dateCache[day] = date;
+        }
+        return date;
+    }
+
+    synchronized void setDueDate(int row, LocalDate dueDate) {
+        int day = dueDate != null ? (int) dueDate.toEpochDay() : NO_DATE;
+        markChanged(row, dueDays[row] != day);
+        dueDays[row] = day;
+    }
+
+    synchronized String className(int row) {
+        int code = classes[row];
+        return code != NO_CLASS ? classNames[code] : null;
+    }
+
+    /**
+     * Get a row's class name as its dictionary code, or NO_CLASS.
+     */
+    synchronized int classCode(int row) {
+        return classes[row];
+    }
+
+    synchronized void setClassName(int row, String className) {
+        int code = className != null ? classCode(className) : NO_CLASS;
+        markTextChanged(row, classes[row] != code);
+        classes[row] = code;
+    }
+
+    synchronized String notes(int row) {
+        String value = notes[row];
+        if (value == null && notesAt[row] != 0) {
+            return notesFile.read(notesAt[row]);
+        }
+        return value != null ? value : "";
+    }
+
+    synchronized void setNotes(int row, String value) {
+        // Most tasks have no notes; store those as null rather than one "" per row
+        String stored = value == null || value.isEmpty() ? null : value;
+        // Stored notes are not read back just to compare; replacing them counts as a change
+        markTextChanged(row, notesAt[row] != 0 || !Objects.equals(notes[row], stored));
+        notes[row] = stored;
+        notesAt[row] = 0;
+    }
+
+    synchronized Status status(int row) {
+        return STATUSES[flags[row] >> 4];
+    }
+
+    synchronized void setStatus(int row, Status status) {
+        setFlags(row, (byte) (status.ordinal() << 4 | (flags[row] & 0x0f)));
+    }
+
+    synchronized Priority priority(int row) {
+        return PRIORITIES[flags[row] & 0x0f];
+    }
+
+    synchronized void setPriority(int row, Priority priority) {
+        setFlags(row, (byte) ((flags[row] & 0xf0) | priority.ordinal()));
+    }
+
+    synchronized String eventId(int row) {
+        return eventIds[row];
+    }
+
+    synchronized void setEventId(int row, String eventId) {
+        markChanged(row, !Objects.equals(eventIds[row], eventId));
+        eventIds[row] = eventId;
+    }
+
+    private void setFlags(int row, byte value) {
+        if (flags[row] != value) {
+            changes[row] |= CHANGED_FLAGS;
+            flags[row] = value;
+        }
+    }
+
+    private void markChanged(int row, boolean changed) {
+        if (changed) {
+            changes[row] |= CHANGED_ROW;
+        }
+    }
+
+    private void markTextChanged(int row, boolean changed) {
+        if (changed) {
+            changes[row] |= CHANGED_ROW;
+            textVersion++;
+        }
+    }
+
+    private int allocateRow() {
+        int free = freeRows.nextSetBit(0);
+        if (free >= 0) {
+            freeRows.clear(free);
+            return free;
+        }
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            notes = Arrays.copyOf(notes, capacity);
+            notesAt = Arrays.copyOf(notesAt, capacity);
+            eventIds = Arrays.copyOf(eventIds, capacity);
+            dueDays = Arrays.copyOf(dueDays, capacity);
+            classes = Arrays.copyOf(classes, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            changes = Arrays.copyOf(changes, capacity);
+        }
+        return size++;
+    }
+
+    /**
+     * Look up the dictionary code of a class name without assigning one.
+     *
+     * @return The code, or NO_CLASS if no table ever stored the name
+     */
+    static int findClassCode(String className) {
+        Integer code = className != null ? classCodes.get(className) : null;
+        return code != null ? code : NO_CLASS;
+    }
+
+    /**
+     * Get the class name a dictionary code stands for.
+     */
+    static String classNameOf(int code) {
+        return classNames[code];
+    }
+
+    /**
+     * Look up or assign the dictionary code of a class name.
+     */
+    private static int classCode(String className) {
+        Integer code = classCodes.get(className);
+        if (code != null) {
+            return code;
+        }
+        synchronized (TaskTable.class) {
+            code = classCodes.get(className);
+            if (code == null) {
+                String[] names = classNames;
+                if (classCount == names.length) {
+                    names = Arrays.copyOf(names, names.length * 2);
+                }
+                names[classCount] = className;
+                // Publish the array before the code so readers can always resolve it
+                classNames = names;
+                code = classCount++;
+                classCodes.put(className, code);
+            }
+            return code;
+        }
+    }
+}
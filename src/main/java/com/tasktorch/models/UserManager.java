@@ -1,16 +1,41 @@
 package com.tasktorch.models;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Handles saving and loading users from CSV file.
+ * Lookups and sign-ups go through the shared, indexed UserStore.
  */
 public class UserManager {
-    private static final String USERS_FILE = "data/users.csv";
+    private static final Path DEFAULT_DATA_DIRECTORY = Paths.get("data");
+    private static final String USERS_FILE = "users.csv";
+
+    private final Path dataDirectory;
+
+    /**
+     * Create a UserManager for data/users.csv.
+     */
+    public UserManager() {
+        this(DEFAULT_DATA_DIRECTORY);
+    }
+
+    /**
+     * Create a UserManager for users.csv in another directory, e.g. in tests.
+     *
+     * @param dataDirectory Directory holding users.csv
+     */
+    public UserManager(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
     
     /**
      * Load users from CSV file.
@@ -22,9 +47,10 @@ public class UserManager {
         
         try {
             // Create data directory if it doesn't exist
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(dataDirectory);
+            FileCommitter.awaitPending(getUsersFile());
             
-            File file = new File(USERS_FILE);
+            File file = getUsersFile().toFile();
             if (!file.exists()) {
                 return users; // Return empty list if file doesn't exist
             }
@@ -60,30 +86,79 @@ public class UserManager {
     }
     
     /**
-     * Save users to CSV file.
+     * Save users to CSV file. The file is replaced atomically in the next
+     * group commit; failures are logged.
      * 
      * @param users List of User objects to save
      */
     public void saveUsers(List<User> users) {
         try {
             // Create data directory if it doesn't exist
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(dataDirectory);
 
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(USERS_FILE))) {
-                // Write header
-                bw.write("username,password\n");
+            StringBuilder sb = new StringBuilder();
+            // Write header
+            sb.append("username,password\n");
 
-                // Write users
-                for (User user : users) {
-                    bw.write(escapeCSV(user.getUsername()) + ",");
-                    bw.write(escapeCSV(user.getPassword()) + "\n");
-                }
+            // Write users
+            for (User user : users) {
+                sb.append(escapeCSV(user.getUsername())).append(',');
+                sb.append(escapeCSV(user.getPassword())).append('\n');
             }
+            FileCommitter.commitLater(getUsersFile(), sb.toString());
         } catch (IOException e) {
             System.err.println("Error saving users: " + e.getMessage());
         }
     }
     
+    /**
+     * Append one user to the CSV file, creating it with a header if needed.
+     * 
+     * @param user User to append
+     * @return True if the user was written
+     */
+    public boolean appendUser(User user) {
+        try {
+            // Create data directory if it doesn't exist
+            Files.createDirectories(dataDirectory);
+
+            Path path = getUsersFile();
+            // Append to the latest content, not to a file about to be replaced
+            FileCommitter.awaitPending(path);
+            StringBuilder sb = new StringBuilder();
+            if (!Files.exists(path) || Files.size(path) == 0) {
+                sb.append("username,password\n");
+            } else if (!endsWithNewline(path)) {
+                sb.append('\n'); // File was edited by hand without a final line break
+            }
+            sb.append(escapeCSV(user.getUsername())).append(',');
+            sb.append(escapeCSV(user.getPassword())).append('\n');
+
+            // A signed-up account must survive a crash, so force the append to disk
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving user: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get the path of the users CSV file.
+     * 
+     * @return Path of users.csv
+     */
+    public Path getUsersFile() {
+        return dataDirectory.resolve(USERS_FILE);
+    }
+    
     /**
      * Add a new user.
      * 
@@ -92,19 +167,7 @@ public class UserManager {
      * @return True if user was added, false if username already exists
      */
     public boolean addUser(String username, String password) {
-        List<User> users = loadUsers();
-        
-        // Check if username already exists
-        for (User user : users) {
-            if (user.getUsername().equalsIgnoreCase(username)) {
-                return false; // Username already exists
-            }
-        }
-        
-        // Add new user
-        users.add(new User(username, password));
-        saveUsers(users);
-        return true;
+        return UserStore.getInstance().addUser(username, password);
     }
     
     /**
@@ -115,16 +178,7 @@ public class UserManager {
      * @return User object if authentication succeeds, null otherwise
      */
     public User authenticate(String username, String password) {
-        List<User> users = loadUsers();
-        
-        for (User user : users) {
-            if (user.getUsername().equalsIgnoreCase(username) && 
-                user.checkPassword(password)) {
-                return user;
-            }
-        }
-        
-        return null; // Authentication failed
+        return UserStore.getInstance().authenticate(username, password);
     }
     
     /**
@@ -134,15 +188,15 @@ public class UserManager {
      * @return True if username exists
      */
     public boolean usernameExists(String username) {
-        List<User> users = loadUsers();
-        
-        for (User user : users) {
-            if (user.getUsername().equalsIgnoreCase(username)) {
-                return true;
-            }
+        return UserStore.getInstance().usernameExists(username);
+    }
+
+    private boolean endsWithNewline(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
         }
-        
-        return false;
     }
     
     // Helper methods for CSV parsing
@@ -170,6 +224,7 @@ public class UserManager {
         if (value == null) {
             return "";
         }
+        value = TaskManager.replaceUnpairedSurrogates(value);
         if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
             return "\"" + value.replace("\"", "\"\"") + "\"";
         }
@@ -9,6 +9,8 @@ public class UserSettings {
     private int remindDaysBeforeDue;
     private boolean googleCalendarEnabled;
     private String googleCalendarTokenPath; // Path to stored OAuth token
+    private boolean partitionedStorage; // Store tasks in per-month files; applied at next start
+    private int archiveAfterDays; // Archive completed tasks this long past due; 0 never archives
 
     /**
      * Default constructor.
@@ -19,6 +21,8 @@ public class UserSettings {
         this.remindDaysBeforeDue = 1;
         this.googleCalendarEnabled = false;
         this.googleCalendarTokenPath = null;
+        this.partitionedStorage = false;
+        this.archiveAfterDays = 180;
     }
 
     /**
@@ -32,6 +36,7 @@ public class UserSettings {
         this.theme = theme != null ? theme : Theme.LIGHT;
         this.dailyReminder = dailyReminder;
         this.remindDaysBeforeDue = remindDaysBeforeDue;
+        this.archiveAfterDays = 180;
     }
 
     // Getters and Setters
@@ -74,5 +79,20 @@ public class UserSettings {
     public void setGoogleCalendarTokenPath(String googleCalendarTokenPath) {
         this.googleCalendarTokenPath = googleCalendarTokenPath;
     }
+    
+    public boolean isPartitionedStorage() {
+        return partitionedStorage;
+    }
+    
+    public void setPartitionedStorage(boolean partitionedStorage) {
+        this.partitionedStorage = partitionedStorage;
+    }
+    
+    public int getArchiveAfterDays() {
+        return archiveAfterDays;
+    }
+    
+    public void setArchiveAfterDays(int archiveAfterDays) {
+        this.archiveAfterDays = archiveAfterDays;
+    }
 }
-
@@ -0,0 +1,248 @@
+package com.tasktorch.models;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shared in-memory index of user accounts, keyed by case-folded username.
+ *
+ * users.csv is read once; lookups are a single hash probe and new accounts
+ * are appended to the file instead of rewriting it. Sign-up rejects names
+ * already taken, but a hand-edited file may hold several accounts with one
+ * name; logging in then tries each of them, as the old linear scan did. A background thread
+ * watches the data directory and reloads the index when another process
+ * (e.g. a second TaskTorch instance on a shared install) changes the file.
+ */
+public class UserStore {
+    private static UserStore instance;
+
+    private final UserManager userManager;
+    private final Path usersFile;
+    // Accounts in file order; almost every name has exactly one
+    private final Map<String, List<User>> usersByName = new HashMap<>();
+    private WatchService watchService;
+    private long loadedSize = -1;
+    private FileTime loadedModified;
+
+    /**
+     * Load a user store over the users.csv of a UserManager and watch it.
+     * The application shares one through getInstance.
+     *
+     * @param userManager UserManager that reads and appends users.csv
+     */
+    UserStore(UserManager userManager) {
+        this.userManager = userManager;
+        this.usersFile = userManager.getUsersFile();
+        reload();
+        startWatching();
+    }
+
+    /**
+     * Get the shared user store, loading users from disk on first use.
+     *
+     * @return The shared UserStore
+     */
+    public static synchronized UserStore getInstance() {
+        if (instance == null) {
+            instance = new UserStore(new UserManager());
+        }
+        return instance;
+    }
+
+    /**
+     * Stop watching users.csv if the store was ever loaded.
+     * Called when the application exits.
+     */
+    public static void shutdownInstance() {
+        UserStore store;
+        synchronized (UserStore.class) {
+            store = instance;
+        }
+        if (store != null) {
+            store.stopWatching();
+        }
+    }
+
+    /**
+     * Look up a user by name, ignoring case.
+     *
+     * @param username Username
+     * @return The user, or null if no account has that name
+     */
+    public synchronized User findUser(String username) {
+        List<User> users = usersByName.get(key(username));
+        return users != null ? users.get(0) : null;
+    }
+
+    /**
+     * Check if a username exists.
+     *
+     * @param username Username to check
+     * @return True if username exists
+     */
+    public synchronized boolean usernameExists(String username) {
+        return usersByName.containsKey(key(username));
+    }
+
+    /**
+     * Authenticate a user.
+     *
+     * @param username Username
+     * @param password Password
+     * @return User object if authentication succeeds, null otherwise
+     */
+    public synchronized User authenticate(String username, String password) {
+        List<User> users = usersByName.get(key(username));
+        if (users != null) {
+            for (User user : users) {
+                if (user.checkPassword(password)) {
+                    return user;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a new user, appending it to users.csv.
+     *
+     * @param username Username
+     * @param password Password
+     * @return True if user was added, false if username already exists or it could not be saved
+     */
+    public synchronized boolean addUser(String username, String password) {
+        String key = key(username);
+        if (usersByName.containsKey(key)) {
+            return false;
+        }
+        User user = new User(username, password);
+        if (!userManager.appendUser(user)) {
+            return false;
+        }
+        usersByName.computeIfAbsent(key, k -> new ArrayList<>(1)).add(user);
+        // Our own append should not trigger a reload from the watcher
+        rememberFileState();
+        return true;
+    }
+
+    /**
+     * Re-read users.csv and rebuild the index.
+     */
+    private synchronized void reload() {
+        usersByName.clear();
+        for (User user : userManager.loadUsers()) {
+            usersByName.computeIfAbsent(key(user.getUsername()), k -> new ArrayList<>(1)).add(user);
+        }
+        rememberFileState();
+    }
+
+    /**
+     * Reload only if users.csv differs from what the index was built from.
+     */
+    private synchronized void reloadIfChanged() {
+        long size = -1;
+        FileTime modified = null;
+        try {
+            if (Files.exists(usersFile)) {
+                BasicFileAttributes attributes = Files.readAttributes(usersFile, BasicFileAttributes.class);
+                size = attributes.size();
+                modified = attributes.lastModifiedTime();
+            }
+        } catch (IOException e) {
+            System.err.println("Error checking users file: " + e.getMessage());
+            return;
+        }
+        if (size != loadedSize || (modified != null && !modified.equals(loadedModified))) {
+            reload();
+        }
+    }
+
+    private void rememberFileState() {
+        try {
+            if (Files.exists(usersFile)) {
+                BasicFileAttributes attributes = Files.readAttributes(usersFile, BasicFileAttributes.class);
+                loadedSize = attributes.size();
+                loadedModified = attributes.lastModifiedTime();
+            } else {
+                loadedSize = -1;
+                loadedModified = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Error checking users file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Watch the data directory on a daemon thread for changes to users.csv.
+     */
+    private void startWatching() {
+        Path directory = usersFile.toAbsolutePath().getParent();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("Error watching users file: " + e.getMessage());
+            return;
+        }
+
+        Thread watcher = new Thread(this::watchLoop, "tasktorch-user-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        Path fileName = usersFile.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // An overflow means events were lost, so check the file anyway
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    reloadIfChanged();
+                }
+                if (!key.reset()) {
+                    return; // Directory is gone
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Error closing users file watcher: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,330 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.Task;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Thin HTTP client for the Google Calendar v3 events API.
+ *
+ * Requests go to a configurable base URL (system property
+ * "tasktorch.calendar.url", default https://www.googleapis.com), so the sync
+ * code can be pointed at a local stand-in of the API. Several requests can
+ * be sent as one multipart/mixed batch request. A client keeps its
+ * connections open between requests, so one instance should be shared;
+ * CalendarConnection holds the one the app uses.
+ *
+ * The google-api-client libraries are only on the classpath, outside the
+ * module graph, and their OAuth flow is not wired up (see
+ * GoogleCalendarService), so this client uses java.net.http, which the
+ * module already requires, with the small Json helper for payloads.
+ */
+public class CalendarApiClient {
+    public static final String BASE_URL_PROPERTY = "tasktorch.calendar.url";
+    private static final String DEFAULT_BASE_URL = "https://www.googleapis.com";
+    private static final String EVENTS_PATH = "/calendar/v3/calendars/primary/events";
+    private static final String BATCH_PATH = "/batch/calendar/v3";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int LIST_PAGE_SIZE = 250;
+
+    private final HttpClient httpClient;
+    private final URI baseUri;
+    private final Supplier<String> accessToken;
+
+    /**
+     * One events API call.
+     */
+    static final class Request {
+        final String method;
+        final String path;
+        final String body;
+
+        private Request(String method, String path, String body) {
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+
+        static Request insert(Task task, String eventId) {
+            return new Request("POST", EVENTS_PATH, eventJson(task, eventId));
+        }
+
+        static Request update(Task task, String eventId) {
+            return new Request("PUT", eventPath(eventId), eventJson(task, eventId));
+        }
+
+        static Request delete(String eventId) {
+            return new Request("DELETE", eventPath(eventId), null);
+        }
+
+        /**
+         * List events changed since a sync token, or all events when there is
+         * no token yet. Deleted events are included so they can be unlinked.
+         */
+        static Request list(String syncToken, String pageToken) {
+            StringBuilder path = new StringBuilder(EVENTS_PATH).append("?maxResults=").append(LIST_PAGE_SIZE);
+            if (syncToken != null) {
+                path.append("&syncToken=").append(URLEncoder.encode(syncToken, StandardCharsets.UTF_8));
+            } else {
+                path.append("&showDeleted=true");
+            }
+            if (pageToken != null) {
+                path.append("&pageToken=").append(URLEncoder.encode(pageToken, StandardCharsets.UTF_8));
+            }
+            return new Request("GET", path.toString(), null);
+        }
+    }
+
+    /**
+     * Status and body of one events API call.
+     */
+    static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    /**
+     * Create a client.
+     *
+     * @param baseUri Scheme, host and port of the API, e.g. http://localhost:8080
+     * @param accessToken Supplies the OAuth access token, or null to send none
+     */
+    public CalendarApiClient(URI baseUri, Supplier<String> accessToken) {
+        this.httpClient = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+        this.baseUri = baseUri;
+        this.accessToken = accessToken;
+    }
+
+    /**
+     * Get the base URL of the Calendar API, from the "tasktorch.calendar.url"
+     * system property or the Google default.
+     *
+     * @return The configured base URI
+     */
+    public static URI configuredBaseUri() {
+        return URI.create(System.getProperty(BASE_URL_PROPERTY, DEFAULT_BASE_URL));
+    }
+
+    /**
+     * Generate a new client-side event id. Sending the same id again on a
+     * retry makes an insert idempotent: the API answers 409 instead of
+     * creating a duplicate event.
+     *
+     * @return An id valid for the events API (base32hex characters)
+     */
+    static String newEventId() {
+        return "tt" + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Get the access token requests are currently sent with.
+     *
+     * @return The token, or null if there is none
+     */
+    String accessToken() {
+        return accessToken != null ? accessToken.get() : null;
+    }
+
+    /**
+     * Send one request.
+     *
+     * @param request Request to send
+     * @return The response
+     * @throws IOException If the request could not be sent
+     * @throws InterruptedException If interrupted while waiting
+     */
+    Response execute(Request request) throws IOException, InterruptedException {
+        HttpRequest.BodyPublisher body = request.body != null
+            ? HttpRequest.BodyPublishers.ofString(request.body, StandardCharsets.UTF_8)
+            : HttpRequest.BodyPublishers.noBody();
+        HttpRequest.Builder builder = newRequest(request.path).method(request.method, body);
+        if (request.body != null) {
+            builder.header("Content-Type", "application/json; charset=UTF-8");
+        }
+        HttpResponse<String> response = httpClient.send(builder.build(),
+            HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        return new Response(response.statusCode(), response.body());
+    }
+
+    /**
+     * Send several requests as one batch request.
+     *
+     * @param requests Requests to send
+     * @return One response per request, in the same order
+     * @throws IOException If the batch could not be sent or its response is unusable
+     * @throws InterruptedException If interrupted while waiting
+     */
+    List<Response> executeBatch(List<Request> requests) throws IOException, InterruptedException {
+        if (requests.size() == 1) {
+            return List.of(execute(requests.get(0)));
+        }
+
+        String boundary = "batch_" + UUID.randomUUID().toString().replace("-", "");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < requests.size(); i++) {
+            Request request = requests.get(i);
+            sb.append("--").append(boundary).append("\r\n");
+            sb.append("Content-Type: application/http\r\n");
+            sb.append("Content-ID: <item").append(i).append(">\r\n\r\n");
+            sb.append(request.method).append(' ').append(request.path).append(" HTTP/1.1\r\n");
+            if (request.body != null) {
+                sb.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
+                sb.append(request.body).append("\r\n");
+            } else {
+                sb.append("\r\n");
+            }
+        }
+        sb.append("--").append(boundary).append("--\r\n");
+
+        HttpRequest httpRequest = newRequest(BATCH_PATH)
+            .header("Content-Type", "multipart/mixed; boundary=" + boundary)
+            .POST(HttpRequest.BodyPublishers.ofString(sb.toString(), StandardCharsets.UTF_8))
+            .build();
+        HttpResponse<String> response = httpClient.send(httpRequest,
+            HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            // The whole batch failed, e.g. 429 or 503; report it for every request
+            List<Response> failed = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                failed.add(new Response(response.statusCode(), response.body()));
+            }
+            return failed;
+        }
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        return parseBatchResponse(contentType, response.body(), requests.size());
+    }
+
+    private HttpRequest.Builder newRequest(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(path)).timeout(TIMEOUT);
+        String token = accessToken();
+        if (token != null && !token.isEmpty()) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    /**
+     * Split a multipart/mixed batch response into per-request responses,
+     * matched up by the "response-itemN" Content-ID of each part.
+     */
+    private static List<Response> parseBatchResponse(String contentType, String body, int count) throws IOException {
+        String boundary = null;
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.startsWith("boundary=")) {
+                boundary = param.substring("boundary=".length()).replace("\"", "");
+            }
+        }
+        if (boundary == null) {
+            throw new IOException("Batch response has no multipart boundary");
+        }
+
+        Map<Integer, Response> byIndex = new HashMap<>();
+        String[] parts = body.replace("\r\n", "\n").split("--" + Pattern.quote(boundary));
+        for (String part : parts) {
+            int headersEnd = part.indexOf("\n\n");
+            if (headersEnd < 0) {
+                continue; // Preamble or closing "--"
+            }
+            Integer index = contentIndex(part.substring(0, headersEnd));
+            String http = part.substring(headersEnd + 2);
+            int statusEnd = http.indexOf('\n');
+            String statusLine = statusEnd >= 0 ? http.substring(0, statusEnd) : http;
+            String[] statusFields = statusLine.trim().split(" ");
+            if (index == null || statusFields.length < 2) {
+                continue;
+            }
+            int status;
+            try {
+                status = Integer.parseInt(statusFields[1]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            int bodyStart = http.indexOf("\n\n");
+            String partBody = bodyStart >= 0 ? http.substring(bodyStart + 2).trim() : "";
+            byIndex.put(index, new Response(status, partBody));
+        }
+
+        List<Response> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Response response = byIndex.get(i);
+            if (response == null) {
+                throw new IOException("Batch response is missing part " + i);
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private static Integer contentIndex(String headers) {
+        for (String header : headers.split("\n")) {
+            int colon = header.indexOf(':');
+            if (colon < 0 || !header.substring(0, colon).trim().equalsIgnoreCase("Content-ID")) {
+                continue;
+            }
+            String value = header.substring(colon + 1).trim();
+            int item = value.lastIndexOf("item");
+            if (item < 0) {
+                return null;
+            }
+            int end = value.indexOf('>', item);
+            try {
+                return Integer.valueOf(value.substring(item + 4, end >= 0 ? end : value.length()));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static String eventPath(String eventId) {
+        return EVENTS_PATH + "/" + URLEncoder.encode(eventId, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Build the event resource for a task: an all-day event on its due date.
+     */
+    static String eventJson(Task task, String eventId) {
+        String summary = task.getClassName() == null || task.getClassName().isEmpty()
+            ? task.getTitle()
+            : task.getClassName() + ": " + task.getTitle();
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        if (eventId != null) {
+            sb.append("\"id\":").append(Json.quote(eventId)).append(',');
+        }
+        sb.append("\"summary\":").append(Json.quote(summary)).append(',');
+        sb.append("\"description\":").append(Json.quote(task.getNotes())).append(',');
+        if (task.getDueDate() != null) {
+            sb.append("\"start\":{\"date\":").append(Json.quote(task.getDueDate().toString())).append("},");
+            sb.append("\"end\":{\"date\":").append(Json.quote(task.getDueDate().plusDays(1).toString())).append("},");
+        }
+        sb.append("\"extendedProperties\":{\"private\":{\"taskTorchId\":")
+            .append(Json.quote(task.getTaskId())).append("}}");
+        return sb.append('}').toString();
+    }
+}
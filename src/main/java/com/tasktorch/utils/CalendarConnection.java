@@ -0,0 +1,216 @@
+package com.tasktorch.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.stream.Stream;
+
+/**
+ * Shared Google Calendar connection.
+ *
+ * Holds the one CalendarApiClient used for every calendar call, so its HTTP
+ * client keeps connections to the API open between requests. Whether the
+ * calendar is connected and the stored access token are worked out once
+ * and cached; a background thread watches data/ and data/tokens and drops
+ * the cached values when credentials.json or a token file changes.
+ */
+public class CalendarConnection {
+    private static final Path DATA_DIRECTORY = Paths.get("data");
+    private static final Path TOKENS_DIRECTORY = DATA_DIRECTORY.resolve("tokens");
+    private static final Path CREDENTIALS_FILE = DATA_DIRECTORY.resolve("credentials.json");
+    private static final Path ACCESS_TOKEN_FILE = TOKENS_DIRECTORY.resolve("access_token");
+    private static CalendarConnection instance;
+
+    private final CalendarApiClient client;
+    private WatchService watchService;
+    private WatchKey tokensKey;
+    private boolean watching;
+    private Boolean connected;
+    private String accessToken;
+    private boolean accessTokenLoaded;
+
+    private CalendarConnection() {
+        this.client = new CalendarApiClient(CalendarApiClient.configuredBaseUri(), this::getAccessToken);
+        startWatching();
+    }
+
+    /**
+     * Get the shared connection.
+     *
+     * @return The shared CalendarConnection
+     */
+    public static synchronized CalendarConnection getInstance() {
+        if (instance == null) {
+            instance = new CalendarConnection();
+        }
+        return instance;
+    }
+
+    /**
+     * Stop watching the credential files. Called when the application exits.
+     */
+    public static void shutdownInstance() {
+        CalendarConnection connection;
+        synchronized (CalendarConnection.class) {
+            connection = instance;
+        }
+        if (connection != null) {
+            connection.stopWatching();
+        }
+    }
+
+    /**
+     * Get the client shared by all calendar calls.
+     *
+     * @return The shared client
+     */
+    public CalendarApiClient getClient() {
+        return client;
+    }
+
+    /**
+     * Check if Google Calendar is connected: credentials.json exists and at
+     * least one token has been stored.
+     *
+     * @return True if connected, false otherwise
+     */
+    public synchronized boolean isConnected() {
+        if (connected == null || !watching) {
+            connected = Files.exists(CREDENTIALS_FILE) && hasTokens();
+        }
+        return connected;
+    }
+
+    /**
+     * Drop the cached state so it is read from disk on next use. The watcher
+     * does this on its own; call it after changing the files directly so the
+     * change is seen before the watcher gets to it.
+     */
+    public synchronized void invalidate() {
+        connected = null;
+        accessToken = null;
+        accessTokenLoaded = false;
+    }
+
+    private synchronized String getAccessToken() {
+        if (!accessTokenLoaded || !watching) {
+            accessToken = readAccessToken();
+            accessTokenLoaded = true;
+        }
+        return accessToken;
+    }
+
+    private static boolean hasTokens() {
+        if (!Files.isDirectory(TOKENS_DIRECTORY)) {
+            return false;
+        }
+        try (Stream<Path> tokens = Files.list(TOKENS_DIRECTORY)) {
+            return tokens.findAny().isPresent();
+        } catch (IOException e) {
+            System.err.println("Error checking Google Calendar tokens: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static String readAccessToken() {
+        try {
+            return Files.exists(ACCESS_TOKEN_FILE) ? Files.readString(ACCESS_TOKEN_FILE).trim() : null;
+        } catch (IOException e) {
+            System.err.println("Error reading Google Calendar token: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Watch data/ and, once it exists, data/tokens on a daemon thread. If the
+     * watch cannot be set up, nothing is cached and every check reads the disk.
+     */
+    private void startWatching() {
+        try {
+            Files.createDirectories(DATA_DIRECTORY);
+            watchService = FileSystems.getDefault().newWatchService();
+            register(DATA_DIRECTORY);
+            watchTokensDirectory();
+        } catch (IOException e) {
+            System.err.println("Error watching Google Calendar credentials: " + e.getMessage());
+            return;
+        }
+        watching = true;
+
+        Thread watcher = new Thread(this::watchLoop, "tasktorch-calendar-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private WatchKey register(Path directory) throws IOException {
+        return directory.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Register data/tokens if it exists and is not watched yet.
+     */
+    private void watchTokensDirectory() {
+        if ((tokensKey != null && tokensKey.isValid()) || !Files.isDirectory(TOKENS_DIRECTORY)) {
+            return;
+        }
+        try {
+            tokensKey = register(TOKENS_DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("Error watching Google Calendar tokens: " + e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        Path credentialsName = CREDENTIALS_FILE.getFileName();
+        Path tokensName = TOKENS_DIRECTORY.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // Anything in data/tokens counts; in data/ only the credentials and the tokens directory
+                    if (key == tokensKey
+                        || event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || credentialsName.equals(event.context())
+                        || tokensName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset() && key != tokensKey) {
+                    return; // data/ is gone
+                }
+                if (changed) {
+                    // A recreated tokens directory needs a new registration
+                    watchTokensDirectory();
+                    invalidate();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void stopWatching() {
+        synchronized (this) {
+            watching = false;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Error closing Google Calendar watcher: " + e.getMessage());
+            }
+        }
+    }
+}
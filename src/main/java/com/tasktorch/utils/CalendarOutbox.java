@@ -0,0 +1,209 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.TaskManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable log of calendar operations that have not been acknowledged yet.
+ *
+ * Each line is one record: "U,opId,taskId,eventId" for a create or update
+ * (eventId is the idempotency key used if the event has to be created),
+ * "D,opId,taskId,eventId" for a delete, and "A,opId" once an operation is
+ * done. Replaying the file on startup yields the operations still to send.
+ * Fields are quoted the way tasks.csv quotes them, since task ids come from
+ * imported iCalendar UIDs and may contain commas or newlines.
+ */
+public class CalendarOutbox {
+    private static final String OUTBOX_FILE = "data/calendar.outbox";
+    private static final String UPSERT = "U";
+    private static final String DELETE = "D";
+    private static final String ACK = "A";
+
+    private final Path path;
+    private final TaskManager csv = new TaskManager();
+
+    /**
+     * One pending calendar operation as stored in the outbox.
+     */
+    static final class Entry {
+        final String opId;
+        final String taskId;
+        final boolean delete;
+        final String eventId;
+
+        Entry(String opId, String taskId, boolean delete, String eventId) {
+            this.opId = opId;
+            this.taskId = taskId;
+            this.delete = delete;
+            this.eventId = eventId;
+        }
+    }
+
+    /**
+     * Create an outbox stored in data/calendar.outbox.
+     */
+    public CalendarOutbox() {
+        this(Paths.get(OUTBOX_FILE));
+    }
+
+    /**
+     * Create an outbox stored in the given file.
+     *
+     * @param path Outbox file
+     */
+    public CalendarOutbox(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Read the operations that were recorded but never acknowledged.
+     *
+     * @return Pending operations in the order they were recorded
+     */
+    List<Entry> replay() {
+        Map<String, Entry> live = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        String content;
+        try {
+            content = Files.readString(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error reading calendar outbox: " + e.getMessage());
+            return new ArrayList<>();
+        }
+
+        // A quoted task id may hold a newline; records end at newlines outside quotes
+        int start = 0;
+        boolean inQuotes = false;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == '\n' && !inQuotes) {
+                apply(content.substring(start, i), live);
+                start = i + 1;
+            }
+        }
+        // Anything after the last newline is a record torn by a crash; ignore it
+        return new ArrayList<>(live.values());
+    }
+
+    /**
+     * Apply a single outbox record.
+     */
+    private void apply(String record, Map<String, Entry> live) {
+        if (record.isEmpty()) {
+            return;
+        }
+        String[] values = csv.parseCSVLine(record);
+        if (values.length == 4 && (UPSERT.equals(values[0]) || DELETE.equals(values[0]))) {
+            live.put(values[1], new Entry(values[1], values[2], DELETE.equals(values[0]), values[3]));
+        } else if (values.length == 2 && ACK.equals(values[0])) {
+            live.remove(values[1]);
+        } else {
+            System.err.println("Skipping malformed calendar outbox record");
+        }
+    }
+
+    /**
+     * Append new operations and acknowledgements, then force them to disk.
+     *
+     * @param added Operations that were queued
+     * @param acked Ids of operations that are done
+     * @throws IOException If the records could not be written
+     */
+    void append(List<Entry> added, List<String> acked) throws IOException {
+        if (added.isEmpty() && acked.isEmpty()) {
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        appendEntries(records, added);
+        for (String opId : acked) {
+            records.append(ACK).append(',').append(csv.escapeCSV(opId)).append('\n');
+        }
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            write(channel, records);
+        }
+    }
+
+    /**
+     * Replace the outbox with just the given operations, dropping everything
+     * that was acknowledged.
+     *
+     * @param live Operations still pending
+     * @throws IOException If the outbox could not be rewritten
+     */
+    void rewrite(Collection<Entry> live) throws IOException {
+        if (live.isEmpty()) {
+            truncate();
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        appendEntries(records, live);
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, records);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the current size of the outbox.
+     *
+     * @return Size in bytes, or 0 if there is no outbox
+     */
+    long size() {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Discard all records; called once nothing is pending.
+     *
+     * @throws IOException If the outbox could not be deleted
+     */
+    void truncate() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private void appendEntries(StringBuilder records, Collection<Entry> entries) {
+        for (Entry entry : entries) {
+            records.append(entry.delete ? DELETE : UPSERT).append(',')
+                .append(csv.escapeCSV(entry.opId)).append(',')
+                .append(csv.escapeCSV(entry.taskId)).append(',')
+                .append(csv.escapeCSV(entry.eventId)).append('\n');
+        }
+    }
+
+    private static void write(FileChannel channel, CharSequence records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+}
@@ -0,0 +1,332 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.FileCommitter;
+import com.tasktorch.models.Task;
+import com.tasktorch.models.TaskRepository;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pulls changes made in Google Calendar back into TaskTorch.
+ *
+ * The first pull lists every event and stores the sync token returned with
+ * the last page; later pulls send that token and receive only the events
+ * changed since. Each changed event is mapped to its task through the
+ * repository's event id index. Tokens are kept per user in
+ * data/calendar-sync.properties, so a routine pull is one small request.
+ *
+ * Local changes still waiting in the CalendarSyncQueue win over pulled ones;
+ * they are pushed afterwards and overwrite the calendar side.
+ */
+public class CalendarPullSync {
+    private static final String STATE_FILE = "data/calendar-sync.properties";
+    private static final long PULL_INTERVAL_MINUTES = 5;
+    private static CalendarPullSync instance;
+
+    private final CalendarApiClient client;
+    private final TaskRepository repository;
+    private final CalendarSyncQueue queue;
+    private final BooleanSupplier connected;
+    private final Path stateFile;
+    private final ScheduledThreadPoolExecutor worker;
+    private ScheduledFuture<?> scheduledPull;
+
+    /**
+     * Create a pull sync.
+     *
+     * @param client Client used to reach the Calendar API
+     * @param repository Repository the pulled changes are applied to
+     * @param queue Queue of local changes, which win over pulled ones
+     * @param connected Tells whether calendar sync is enabled; checked before each scheduled pull
+     * @param stateFile Properties file holding the sync token of each user
+     */
+    public CalendarPullSync(CalendarApiClient client, TaskRepository repository, CalendarSyncQueue queue,
+                            BooleanSupplier connected, Path stateFile) {
+        this.client = client;
+        this.repository = repository;
+        this.queue = queue;
+        this.connected = connected;
+        this.stateFile = stateFile;
+        this.worker = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "tasktorch-calendar-pull");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the shared pull sync for the configured Calendar API.
+     *
+     * @return The shared CalendarPullSync
+     */
+    public static synchronized CalendarPullSync getInstance() {
+        if (instance == null) {
+            CalendarConnection connection = CalendarConnection.getInstance();
+            instance = new CalendarPullSync(connection.getClient(), TaskRepository.getInstance(),
+                CalendarSyncQueue.getInstance(), connection::isConnected, Paths.get(STATE_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Stop pulling. Called when the application exits.
+     */
+    public static void shutdownInstance() {
+        CalendarPullSync pullSync;
+        synchronized (CalendarPullSync.class) {
+            pullSync = instance;
+        }
+        if (pullSync != null) {
+            pullSync.worker.shutdownNow();
+        }
+    }
+
+    /**
+     * Pull now and then every few minutes for the logged-in user.
+     *
+     * @param username User whose sync token is used
+     */
+    public synchronized void start(String username) {
+        if (scheduledPull != null) {
+            scheduledPull.cancel(false);
+        }
+        scheduledPull = worker.scheduleWithFixedDelay(() -> {
+            if (!connected.getAsBoolean()) {
+                return;
+            }
+            try {
+                pull(username);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error pulling Google Calendar changes: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0, PULL_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Fetch the events changed since the user's last pull and apply them to
+     * their tasks.
+     *
+     * @param username User whose sync token is used
+     * @return Number of tasks that were changed
+     * @throws IOException If the Calendar API could not be reached or answered with an error
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public int pull(String username) throws IOException, InterruptedException {
+        String key = username.toLowerCase(Locale.ROOT) + ".syncToken";
+        Properties state = loadState();
+        String syncToken = state.getProperty(key);
+
+        List<Map<String, Object>> events = new ArrayList<>();
+        String nextSyncToken = fetchChanges(syncToken, events);
+        if (nextSyncToken == null && syncToken != null) {
+            // The token expired (410 Gone): start over with a full listing
+            events.clear();
+            nextSyncToken = fetchChanges(null, events);
+        }
+
+        int applied = 0;
+        for (Map<String, Object> event : events) {
+            if (apply(repository, queue, event)) {
+                applied++;
+            }
+        }
+
+        if (nextSyncToken != null) {
+            state.setProperty(key, nextSyncToken);
+            saveState(state);
+        }
+        return applied;
+    }
+
+    /**
+     * Page through the changed events.
+     *
+     * @param syncToken Token from the last pull, or null for a full listing
+     * @param events Receives the events
+     * @return Sync token for the next pull, or null if syncToken has expired
+     */
+    @SuppressWarnings("unchecked")
+    private String fetchChanges(String syncToken, List<Map<String, Object>> events)
+            throws IOException, InterruptedException {
+        String pageToken = null;
+        while (true) {
+            CalendarApiClient.Response response = client.execute(CalendarApiClient.Request.list(syncToken, pageToken));
+            if (response.status == 410 && syncToken != null) {
+                return null;
+            }
+            if (!response.isSuccess()) {
+                throw new IOException("Listing events failed with HTTP " + response.status);
+            }
+            Map<String, Object> page;
+            try {
+                page = Json.parseObject(response.body);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unreadable events listing: " + e.getMessage());
+            }
+            Object items = page.get("items");
+            if (items instanceof List) {
+                for (Object item : (List<Object>) items) {
+                    if (item instanceof Map) {
+                        events.add((Map<String, Object>) item);
+                    }
+                }
+            }
+            pageToken = stringValue(page.get("nextPageToken"));
+            if (pageToken == null) {
+                return stringValue(page.get("nextSyncToken"));
+            }
+        }
+    }
+
+    /**
+     * Apply one changed event to its task.
+     *
+     * @return True if the task was changed
+     */
+    private boolean apply(TaskRepository repository, CalendarSyncQueue queue, Map<String, Object> event) {
+        String eventId = stringValue(event.get("id"));
+        if (eventId == null) {
+            return false;
+        }
+        String taskId = repository.findTaskIdByEventId(eventId);
+        if (taskId == null) {
+            return link(repository, event, eventId);
+        }
+        if (queue.hasPendingChange(taskId)) {
+            return false; // The local change is pushed later and wins
+        }
+
+        if ("cancelled".equals(event.get("status"))) {
+            // Deleted in the calendar: keep the task, but stop linking it to the event
+            return repository.updateTask(taskId, t -> t.setGoogleCalendarEventId(""));
+        }
+
+        Task current = repository.getTaskSnapshot(taskId);
+        if (current == null) {
+            return false;
+        }
+        String title = titleFromSummary(stringValue(event.get("summary")), current);
+        String notes = stringValue(event.get("description"));
+        LocalDate dueDate = dueDate(event);
+        boolean changed = (title != null && !title.equals(current.getTitle()))
+            || (notes != null && !notes.equals(current.getNotes()))
+            || (dueDate != null && !dueDate.equals(current.getDueDate()));
+        if (!changed) {
+            return false; // Usually the echo of our own push
+        }
+        return repository.updateTask(taskId, t -> {
+            if (title != null) {
+                t.setTitle(title);
+            }
+            if (notes != null) {
+                t.setNotes(notes);
+            }
+            if (dueDate != null) {
+                t.setDueDate(dueDate);
+            }
+        });
+    }
+
+    /**
+     * Link an event created by TaskTorch whose id never reached its task,
+     * e.g. because the app closed before the write-back was saved.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean link(TaskRepository repository, Map<String, Object> event, String eventId) {
+        if ("cancelled".equals(event.get("status"))) {
+            return false;
+        }
+        Object properties = event.get("extendedProperties");
+        if (!(properties instanceof Map)) {
+            return false;
+        }
+        Object privateProperties = ((Map<String, Object>) properties).get("private");
+        if (!(privateProperties instanceof Map)) {
+            return false;
+        }
+        String taskId = stringValue(((Map<String, Object>) privateProperties).get("taskTorchId"));
+        Task task = taskId != null ? repository.getTaskSnapshot(taskId) : null;
+        if (task == null || (task.getGoogleCalendarEventId() != null && !task.getGoogleCalendarEventId().isEmpty())) {
+            return false;
+        }
+        return repository.updateTask(taskId, t -> t.setGoogleCalendarEventId(eventId));
+    }
+
+    /**
+     * Undo the "className: title" summary written by CalendarApiClient.
+     */
+    private static String titleFromSummary(String summary, Task task) {
+        if (summary == null) {
+            return null;
+        }
+        String prefix = task.getClassName() + ": ";
+        if (task.getClassName() != null && !task.getClassName().isEmpty() && summary.startsWith(prefix)) {
+            return summary.substring(prefix.length());
+        }
+        return summary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LocalDate dueDate(Map<String, Object> event) {
+        Object start = event.get("start");
+        if (!(start instanceof Map)) {
+            return null;
+        }
+        Map<String, Object> startMap = (Map<String, Object>) start;
+        String date = stringValue(startMap.get("date"));
+        if (date == null) {
+            date = stringValue(startMap.get("dateTime"));
+        }
+        if (date == null || date.length() < 10) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date.substring(0, 10));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String stringValue(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    private Properties loadState() {
+        Properties state = new Properties();
+        if (Files.exists(stateFile)) {
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                state.load(reader);
+            } catch (IOException e) {
+                System.err.println("Error loading calendar sync state: " + e.getMessage());
+            }
+        }
+        return state;
+    }
+
+    private void saveState(Properties state) {
+        try {
+            Files.createDirectories(stateFile.toAbsolutePath().getParent());
+            FileCommitter.commit(stateFile, writer -> state.store(writer, "TaskTorch calendar sync tokens"));
+        } catch (IOException e) {
+            System.err.println("Error saving calendar sync state: " + e.getMessage());
+        }
+    }
+}
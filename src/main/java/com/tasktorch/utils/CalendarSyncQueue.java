@@ -0,0 +1,610 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.PersistenceExecutor;
+import com.tasktorch.models.Task;
+import com.tasktorch.models.TaskRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Outbound queue of Google Calendar changes.
+ *
+ * Saving or deleting a task only records a pending operation here. A single
+ * background worker waits a moment so a burst of edits can be grouped, then
+ * sends up to BATCH_SIZE operations as one batch request. Transient failures
+ * (network errors, 429, 5xx) are retried with jittered exponential backoff,
+ * and ids of newly created events are written back into the TaskRepository.
+ * A 401 is not retried with the same credentials: the cached token is
+ * dropped and operations stay queued until the access token changes.
+ *
+ * Operations are keyed by task, so several edits of one task before the next
+ * drain result in a single update carrying the latest state. Every operation
+ * is also recorded in a CalendarOutbox until it is acknowledged, so changes
+ * made offline or just before the app closes are sent on the next start.
+ * Nothing is queued while the calendar is not connected; operations queued
+ * before it was disconnected wait until it is connected again.
+ */
+public class CalendarSyncQueue {
+    private static final int BATCH_SIZE = 50;
+    private static final long BATCH_WINDOW_MS = 1000;
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long COMPACT_OUTBOX_BYTES = 256 * 1024;
+    private static final long RECONNECT_CHECK_MS = 60 * 1000;
+    private static CalendarSyncQueue instance;
+
+    private final CalendarApiClient client;
+    private final TaskRepository repository;
+    private final BooleanSupplier connected;
+    private final Runnable invalidateCredentials;
+    private final CalendarOutbox outbox;
+    private final ScheduledThreadPoolExecutor worker;
+    private final Map<String, Operation> pending = new LinkedHashMap<>();
+    private final Map<String, Operation> inFlight = new HashMap<>();
+    // Idempotency keys of inserts whose event id is not yet stored on the task
+    private final Map<String, String> assignedEventIds = new HashMap<>();
+    private final List<CalendarOutbox.Entry> unsavedEntries = new ArrayList<>();
+    private final List<String> unsavedAcks = new ArrayList<>();
+    private final Object outboxLock = new Object();
+    private boolean outboxWriteScheduled;
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledDrainAt;
+    // Set when the API answered 401; nothing is sent while the token is unchanged
+    private boolean credentialsRejected;
+    private String rejectedToken;
+
+    /**
+     * A pending change of one task's calendar event.
+     */
+    private static final class Operation {
+        private final String opId;
+        private final String taskId;
+        private final boolean delete;
+        // Event to delete, or the id to create the event with if it does not exist yet
+        private final String eventId;
+        private int attempts;
+        private long notBefore;
+
+        Operation(String opId, String taskId, boolean delete, String eventId) {
+            this.opId = opId;
+            this.taskId = taskId;
+            this.delete = delete;
+            this.eventId = eventId;
+        }
+
+        CalendarOutbox.Entry toEntry() {
+            return new CalendarOutbox.Entry(opId, taskId, delete, eventId);
+        }
+    }
+
+    /**
+     * Create a queue and resume the operations left in its outbox.
+     *
+     * @param client Client used to reach the Calendar API
+     * @param repository Repository the synced tasks are read from and event ids written to
+     * @param connected Tells whether calendar sync is enabled; checked when
+     *                  queueing and before each batch
+     * @param invalidateCredentials Drops cached credentials after the API rejected them
+     * @param outbox Durable record of operations not yet acknowledged
+     */
+    public CalendarSyncQueue(CalendarApiClient client, TaskRepository repository,
+                             BooleanSupplier connected, Runnable invalidateCredentials,
+                             CalendarOutbox outbox) {
+        this.client = client;
+        this.repository = repository;
+        this.connected = connected;
+        this.invalidateCredentials = invalidateCredentials;
+        this.outbox = outbox;
+        this.worker = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "tasktorch-calendar-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.setRemoveOnCancelPolicy(true);
+        resume();
+    }
+
+    /**
+     * Get the shared queue for the configured Calendar API. The first call
+     * replays data/calendar.outbox, so it should happen once tasks are loaded.
+     *
+     * @return The shared CalendarSyncQueue
+     */
+    public static synchronized CalendarSyncQueue getInstance() {
+        if (instance == null) {
+            CalendarConnection connection = CalendarConnection.getInstance();
+            instance = new CalendarSyncQueue(connection.getClient(), TaskRepository.getInstance(),
+                connection::isConnected, connection::invalidate, new CalendarOutbox());
+        }
+        return instance;
+    }
+
+    /**
+     * Let a batch that is being sent finish, then stop the worker and save
+     * the outbox. Called when the application exits.
+     */
+    public static void shutdownInstance() {
+        CalendarSyncQueue queue;
+        synchronized (CalendarSyncQueue.class) {
+            queue = instance;
+        }
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    /**
+     * Queue creating or updating the event of a task. The task's state is
+     * read from the repository when the operation is sent.
+     *
+     * @param taskId Id of the saved task
+     */
+    public synchronized void enqueueUpsert(String taskId) {
+        if (!connected.getAsBoolean()) {
+            return; // Not synced; don't record an operation that would never be sent
+        }
+        Operation existing = pending.get(taskId);
+        if (existing != null && !existing.delete) {
+            return; // Already queued; it will carry the latest state
+        }
+        if (existing != null) {
+            acknowledge(existing);
+        }
+        String eventId = assignedEventIds.computeIfAbsent(taskId, id -> CalendarApiClient.newEventId());
+        add(new Operation(newOpId(), taskId, false, eventId));
+        scheduleDrain(System.currentTimeMillis() + BATCH_WINDOW_MS);
+    }
+
+    /**
+     * Queue deleting the event of a deleted task.
+     *
+     * @param taskId Id of the deleted task
+     * @param eventId Event id stored on the task, may be null or empty
+     */
+    public synchronized void enqueueDelete(String taskId, String eventId) {
+        if (!connected.getAsBoolean()) {
+            return;
+        }
+        Operation existing = pending.remove(taskId);
+        if (existing != null) {
+            acknowledge(existing);
+        }
+        // An insert may have been sent before its id reached the task
+        String assigned = assignedEventIds.remove(taskId);
+        String target = eventId != null && !eventId.isEmpty() ? eventId : assigned;
+        if (target == null) {
+            return; // Never synced, nothing to delete
+        }
+        add(new Operation(newOpId(), taskId, true, target));
+        scheduleDrain(System.currentTimeMillis() + BATCH_WINDOW_MS);
+    }
+
+    /**
+     * Get the number of operations waiting to be sent.
+     *
+     * @return Number of pending operations
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Check whether a local change of a task has not been confirmed by the
+     * Calendar API yet; pulled changes must not overwrite it.
+     *
+     * @param taskId Task id
+     * @return True if an operation for the task is queued or being sent
+     */
+    public synchronized boolean hasPendingChange(String taskId) {
+        if (pending.containsKey(taskId)) {
+            return true;
+        }
+        for (Operation operation : inFlight.values()) {
+            if (operation.taskId.equals(taskId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Load the operations left in the outbox by the previous run.
+     */
+    private synchronized void resume() {
+        for (CalendarOutbox.Entry entry : outbox.replay()) {
+            // Later operations for a task replace earlier ones, as when they were queued
+            pending.put(entry.taskId, new Operation(entry.opId, entry.taskId, entry.delete, entry.eventId));
+            if (entry.delete) {
+                assignedEventIds.remove(entry.taskId);
+            } else {
+                assignedEventIds.put(entry.taskId, entry.eventId);
+            }
+        }
+        try {
+            outbox.rewrite(liveEntries());
+        } catch (IOException e) {
+            System.err.println("Error writing calendar outbox: " + e.getMessage());
+        }
+        if (!pending.isEmpty()) {
+            scheduleDrain(System.currentTimeMillis());
+        }
+    }
+
+    private void shutdown() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persistOutbox();
+    }
+
+    private void add(Operation operation) {
+        pending.put(operation.taskId, operation);
+        unsavedEntries.add(operation.toEntry());
+        requestOutboxWrite();
+    }
+
+    private void acknowledge(Operation operation) {
+        unsavedAcks.add(operation.opId);
+        requestOutboxWrite();
+    }
+
+    private void requestOutboxWrite() {
+        if (!outboxWriteScheduled && !worker.isShutdown()) {
+            outboxWriteScheduled = true;
+            PersistenceExecutor.run(this::persistOutbox);
+        }
+    }
+
+    /**
+     * Write buffered outbox records, or shrink the outbox when nothing is
+     * pending any more or it has grown large.
+     */
+    private void persistOutbox() {
+        synchronized (outboxLock) {
+            List<CalendarOutbox.Entry> added;
+            List<String> acked;
+            List<CalendarOutbox.Entry> live;
+            synchronized (this) {
+                outboxWriteScheduled = false;
+                if (unsavedEntries.isEmpty() && unsavedAcks.isEmpty()) {
+                    return;
+                }
+                added = new ArrayList<>(unsavedEntries);
+                acked = new ArrayList<>(unsavedAcks);
+                unsavedEntries.clear();
+                unsavedAcks.clear();
+                live = liveEntries();
+            }
+            try {
+                if (live.isEmpty()) {
+                    outbox.truncate();
+                } else if (outbox.size() > COMPACT_OUTBOX_BYTES) {
+                    outbox.rewrite(live);
+                } else {
+                    outbox.append(added, acked);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing calendar outbox: " + e.getMessage());
+                try {
+                    // Fall back to rewriting the whole outbox so nothing pending is lost
+                    outbox.rewrite(live);
+                } catch (IOException retryError) {
+                    System.err.println("Error writing calendar outbox: " + retryError.getMessage());
+                }
+            }
+        }
+    }
+
+    private List<CalendarOutbox.Entry> liveEntries() {
+        List<CalendarOutbox.Entry> live = new ArrayList<>();
+        for (Operation operation : inFlight.values()) {
+            live.add(operation.toEntry());
+        }
+        for (Operation operation : pending.values()) {
+            live.add(operation.toEntry());
+        }
+        return live;
+    }
+
+    private static String newOpId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private void scheduleDrain(long atMillis) {
+        if (worker.isShutdown()) {
+            return;
+        }
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (scheduledDrainAt <= atMillis) {
+                return; // An earlier drain will pick this up
+            }
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrainAt = atMillis;
+        long delay = Math.max(0, atMillis - System.currentTimeMillis());
+        scheduledDrain = worker.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send one batch of due operations. Runs on the worker thread.
+     */
+    private void drain() {
+        if (!connected.getAsBoolean() || !credentialsUsable()) {
+            // Disconnected, or credentials are being replaced; keep everything
+            // queued (and in the outbox) and look again later
+            waitForConnection();
+            return;
+        }
+        List<Operation> batch = takeDueOperations();
+        List<Operation> retries = new ArrayList<>();
+        boolean offline = false;
+        try {
+            if (batch.isEmpty()) {
+                return;
+            }
+            offline = !send(batch, retries);
+        } catch (RuntimeException e) {
+            System.err.println("Error syncing with Google Calendar: " + e.getMessage());
+        } finally {
+            finish(batch, retries, offline);
+            persistOutbox();
+            scheduleRemaining();
+        }
+    }
+
+    private synchronized List<Operation> takeDueOperations() {
+        // This drain is running now, so the next one must be scheduled afresh
+        scheduledDrain = null;
+        long now = System.currentTimeMillis();
+        List<Operation> batch = new ArrayList<>();
+        Iterator<Operation> it = pending.values().iterator();
+        while (it.hasNext() && batch.size() < BATCH_SIZE) {
+            Operation operation = it.next();
+            if (operation.notBefore <= now) {
+                batch.add(operation);
+                inFlight.put(operation.opId, operation);
+                it.remove();
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Check whether the access token differs from the one the API last
+     * rejected, forgetting the rejection once it does.
+     */
+    private boolean credentialsUsable() {
+        synchronized (this) {
+            if (!credentialsRejected) {
+                return true;
+            }
+        }
+        // Read outside the lock; the token supplier may go to disk
+        String token = client.accessToken();
+        synchronized (this) {
+            if (Objects.equals(token, rejectedToken)) {
+                return false;
+            }
+            credentialsRejected = false;
+            rejectedToken = null;
+            return true;
+        }
+    }
+
+    private synchronized void rejectCredentials(String token) {
+        credentialsRejected = true;
+        rejectedToken = token;
+    }
+
+    private synchronized void waitForConnection() {
+        scheduledDrain = null;
+        if (!pending.isEmpty()) {
+            scheduleDrain(System.currentTimeMillis() + RECONNECT_CHECK_MS);
+        }
+    }
+
+    private synchronized void scheduleRemaining() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long next = Long.MAX_VALUE;
+        for (Operation operation : pending.values()) {
+            next = Math.min(next, operation.notBefore);
+        }
+        scheduleDrain(next);
+    }
+
+    /**
+     * Send a batch and handle the responses.
+     *
+     * @param batch Operations to send
+     * @param retries Collects operations that failed transiently or were unauthorized
+     * @return False if the Calendar API could not be reached at all or
+     *         rejected the credentials
+     */
+    private boolean send(List<Operation> batch, List<Operation> retries) {
+        List<Operation> sent = new ArrayList<>();
+        List<String> insertIds = new ArrayList<>();
+        List<CalendarApiClient.Request> requests = new ArrayList<>();
+
+        for (Operation operation : batch) {
+            if (operation.delete) {
+                requests.add(CalendarApiClient.Request.delete(operation.eventId));
+                insertIds.add(null);
+            } else {
+                Task task = repository.getTaskSnapshot(operation.taskId);
+                if (task == null) {
+                    continue; // Deleted since it was queued
+                }
+                String eventId = task.getGoogleCalendarEventId();
+                if (eventId != null && !eventId.isEmpty()) {
+                    requests.add(CalendarApiClient.Request.update(task, eventId));
+                    insertIds.add(null);
+                } else {
+                    requests.add(CalendarApiClient.Request.insert(task, operation.eventId));
+                    insertIds.add(operation.eventId);
+                }
+            }
+            sent.add(operation);
+        }
+        if (requests.isEmpty()) {
+            return true;
+        }
+
+        String token = client.accessToken();
+        List<CalendarApiClient.Response> responses;
+        try {
+            responses = client.executeBatch(requests);
+        } catch (IOException e) {
+            System.err.println("Error syncing with Google Calendar: " + e.getMessage());
+            retries.addAll(sent);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            retries.addAll(sent);
+            return false;
+        }
+
+        boolean storedIds = false;
+        boolean unauthorized = false;
+        for (int i = 0; i < sent.size(); i++) {
+            storedIds |= handleResponse(repository, sent.get(i), insertIds.get(i), responses.get(i), retries);
+            unauthorized |= responses.get(i).status == 401;
+        }
+        if (storedIds) {
+            // Event ids must be on disk before their operations are acknowledged
+            repository.flush();
+        }
+        if (unauthorized) {
+            // Retrying with the same token fails the same way; wait for new credentials
+            System.err.println("Error syncing with Google Calendar: credentials were rejected");
+            rejectCredentials(token);
+            invalidateCredentials.run();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Handle the response to one operation.
+     *
+     * @return True if an event id was stored on the task
+     */
+    private boolean handleResponse(TaskRepository repository, Operation operation, String insertId,
+                                   CalendarApiClient.Response response, List<Operation> retries) {
+        int status = response.status;
+        if (operation.delete) {
+            // Already gone counts as deleted
+            if (!response.isSuccess() && status != 404 && status != 410) {
+                failed(operation, response, retries);
+            }
+        } else if (insertId != null) {
+            if (response.isSuccess()) {
+                storeEventId(repository, operation.taskId, insertId);
+                return true;
+            } else if (status == 409) {
+                // An earlier attempt created the event; record it and send the latest state
+                storeEventId(repository, operation.taskId, insertId);
+                enqueueUpsert(operation.taskId);
+                return true;
+            } else {
+                failed(operation, response, retries);
+            }
+        } else if (status == 404 || status == 410) {
+            // Event was deleted in Google Calendar; the next save creates a new one
+            System.err.println("Google Calendar event for task " + operation.taskId + " no longer exists");
+            repository.updateTask(operation.taskId, t -> t.setGoogleCalendarEventId(""));
+            return true;
+        } else if (!response.isSuccess()) {
+            failed(operation, response, retries);
+        }
+        return false;
+    }
+
+    private void storeEventId(TaskRepository repository, String taskId, String eventId) {
+        repository.updateTask(taskId, t -> t.setGoogleCalendarEventId(eventId));
+        synchronized (this) {
+            assignedEventIds.remove(taskId, eventId);
+        }
+    }
+
+    private void failed(Operation operation, CalendarApiClient.Response response, List<Operation> retries) {
+        if (response.status == 401 || isTransient(response)) {
+            retries.add(operation);
+        } else {
+            System.err.println("Error syncing task " + operation.taskId + " with Google Calendar: HTTP "
+                + response.status);
+        }
+    }
+
+    private static boolean isTransient(CalendarApiClient.Response response) {
+        int status = response.status;
+        if (status == 408 || status == 429 || status >= 500) {
+            return true;
+        }
+        // Google reports quota errors as 403 with a rate limit reason
+        return status == 403 && response.body != null && response.body.contains("RateLimitExceeded");
+    }
+
+    /**
+     * Settle every operation of a sent batch. Transient failures go back into
+     * the queue with a jittered exponential backoff, unless a newer operation
+     * for the same task was queued meanwhile; they share one delay so they are
+     * retried together. Everything else is acknowledged in the outbox.
+     *
+     * @param batch Operations that were taken for sending
+     * @param retries Operations to retry
+     * @param offline True if the API was unreachable or rejected the
+     *                credentials; such retries never give up
+     */
+    private synchronized void finish(List<Operation> batch, List<Operation> retries, boolean offline) {
+        long delay = -1;
+        for (Operation operation : batch) {
+            inFlight.remove(operation.opId);
+            boolean retried = false;
+            if (retries.contains(operation)) {
+                operation.attempts++;
+                if (offline || operation.attempts < MAX_ATTEMPTS) {
+                    if (delay < 0) {
+                        delay = backoffDelay(operation.attempts);
+                    }
+                    operation.notBefore = System.currentTimeMillis() + delay;
+                    retried = pending.putIfAbsent(operation.taskId, operation) == null;
+                } else {
+                    System.err.println("Error syncing task " + operation.taskId
+                        + " with Google Calendar: giving up after " + operation.attempts + " attempts");
+                }
+            }
+            if (!retried) {
+                unsavedAcks.add(operation.opId);
+                // Keep the insert id while another operation for the task may still need it
+                if (!operation.delete && !pending.containsKey(operation.taskId)) {
+                    assignedEventIds.remove(operation.taskId);
+                }
+            }
+        }
+    }
+
+    private static long backoffDelay(int attempts) {
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        // Equal jitter: wait between half and all of the backoff so clients don't retry in lockstep
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.tasktorch.utils;
+
+import javafx.application.Platform;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Hands background results back to the JavaFX Application Thread.
+ *
+ * Refresh requests are coalesced: any number of requests for the same view
+ * made before the FX thread gets to them result in a single refresh.
+ */
+public final class FxDispatcher {
+    /**
+     * Executor that runs work on the JavaFX Application Thread, for use with
+     * CompletableFuture.thenAcceptAsync and friends.
+     */
+    public static final Executor FX_THREAD = FxDispatcher::runOnFxThread;
+
+    private static final Set<RefreshableView> pendingRefreshes = new LinkedHashSet<>();
+    private static boolean drainScheduled;
+
+    private FxDispatcher() {
+    }
+
+    /**
+     * Run work on the FX thread, immediately if already on it.
+     *
+     * @param work Work to run
+     */
+    public static void runOnFxThread(Runnable work) {
+        if (Platform.isFxApplicationThread()) {
+            work.run();
+        } else {
+            Platform.runLater(work);
+        }
+    }
+
+    /**
+     * Ask for a view to be refreshed on the next FX pulse. May be called from
+     * any thread; repeated requests before the refresh runs are merged.
+     *
+     * @param view View to refresh
+     */
+    public static void requestRefresh(RefreshableView view) {
+        synchronized (pendingRefreshes) {
+            pendingRefreshes.add(view);
+            if (drainScheduled) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        Platform.runLater(FxDispatcher::drainRefreshes);
+    }
+
+    private static void drainRefreshes() {
+        RefreshableView[] views;
+        synchronized (pendingRefreshes) {
+            views = pendingRefreshes.toArray(new RefreshableView[0]);
+            pendingRefreshes.clear();
+            drainScheduled = false;
+        }
+        for (RefreshableView view : views) {
+            view.refresh();
+        }
+    }
+}
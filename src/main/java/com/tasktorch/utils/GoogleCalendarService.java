@@ -3,6 +3,7 @@ package com.tasktorch.utils;
 import com.tasktorch.models.Task;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Service for integrating with Google Calendar API.
@@ -11,22 +12,20 @@ import java.io.File;
  * Note: This service requires Google API credentials to be set up.
  * See GOOGLE_CALENDAR_SETUP.md for instructions.
  * 
- * Currently stubbed out - full implementation requires Google API dependencies.
+ * The OAuth flow is currently stubbed out. The event methods here make a
+ * single blocking call each; the app itself syncs through CalendarSyncQueue.
  */
 public class GoogleCalendarService {
     private static final String TOKENS_DIRECTORY_PATH = "data/tokens";
-    private static final String CREDENTIALS_FILE_PATH = "data/credentials.json";
     
     /**
      * Check if Google Calendar is connected.
+     * The answer is cached by CalendarConnection until the credential files change.
      * 
      * @return True if connected, false otherwise
      */
     public static boolean isConnected() {
-        // Check if credentials file exists and tokens directory exists
-        File credFile = new File(CREDENTIALS_FILE_PATH);
-        File tokenDir = new File(TOKENS_DIRECTORY_PATH);
-        return credFile.exists() && tokenDir.exists() && tokenDir.listFiles() != null && tokenDir.listFiles().length > 0;
+        return CalendarConnection.getInstance().isConnected();
     }
     
     /**
@@ -51,9 +50,9 @@ public class GoogleCalendarService {
         if (!isConnected()) {
             return null;
         }
-        // Stub - requires full Google API implementation
-        System.out.println("Google Calendar sync requires API setup.");
-        return null;
+        String eventId = CalendarApiClient.newEventId();
+        CalendarApiClient.Response response = send(CalendarApiClient.Request.insert(task, eventId));
+        return response != null && response.isSuccess() ? eventId : null;
     }
     
     /**
@@ -67,8 +66,8 @@ public class GoogleCalendarService {
         if (!isConnected()) {
             return false;
         }
-        // Stub - requires full Google API implementation
-        return false;
+        CalendarApiClient.Response response = send(CalendarApiClient.Request.update(task, eventId));
+        return response != null && response.isSuccess();
     }
     
     /**
@@ -81,8 +80,26 @@ public class GoogleCalendarService {
         if (!isConnected()) {
             return false;
         }
-        // Stub - requires full Google API implementation
-        return false;
+        CalendarApiClient.Response response = send(CalendarApiClient.Request.delete(eventId));
+        return response != null && response.isSuccess();
+    }
+    
+    /**
+     * Send one request to the configured Calendar API.
+     * 
+     * @param request Request to send
+     * @return The response, or null if it could not be sent
+     */
+    private static CalendarApiClient.Response send(CalendarApiClient.Request request) {
+        try {
+            return CalendarConnection.getInstance().getClient().execute(request);
+        } catch (IOException e) {
+            System.err.println("Error calling Google Calendar: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
     }
     
     /**
@@ -95,6 +112,8 @@ public class GoogleCalendarService {
             if (tokenDir.exists()) {
                 deleteDirectory(tokenDir);
             }
+            // Don't wait for the watcher to notice
+            CalendarConnection.getInstance().invalidate();
         } catch (Exception e) {
             System.err.println("Error disconnecting from Google Calendar: " + e.getMessage());
         }
@@ -1,6 +1,8 @@
 package com.tasktorch.utils;
 
+import com.tasktorch.models.AppClock;
 import com.tasktorch.models.Task;
+import com.tasktorch.models.TaskRepository;
 import com.tasktorch.models.User;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -9,205 +11,303 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Service for managing navigation between different views in the application.
+ * Each FXML file is loaded once; main views are swapped in as the root of a
+ * single Scene and dialogs keep their own Stage, so navigating back to a view
+ * only asks its controller to refresh.
  */
 public class NavigationService {
+    private static final String LOGIN_FXML = "/fxml/Login.fxml";
     private static Stage primaryStage;
     private static User currentUser;
-    
+    private static Scene mainScene;
+    private static CachedView currentView;
+    private static final Map<String, CachedView> viewCache = new HashMap<>();
+    private static final RefreshableView currentViewRefresh = NavigationService::refreshCurrentViewNow;
+    private static boolean listeningForTaskChanges;
+
+    /**
+     * A loaded FXML tree with its controller and, for dialogs, its window.
+     */
+    private static class CachedView {
+        private final Parent root;
+        private final Object controller;
+        private Stage stage;
+
+        CachedView(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+    }
+
     /**
      * Set the primary stage for the application.
-     * 
+     *
      * @param stage Primary stage
      */
     public static void setPrimaryStage(Stage stage) {
         primaryStage = stage;
     }
-    
+
     /**
      * Get the primary stage.
-     * 
+     *
      * @return Primary stage
      */
     public static Stage getPrimaryStage() {
         return primaryStage;
     }
-    
+
     /**
      * Set the current logged-in user.
-     * 
+     *
      * @param user Current user
      */
     public static void setCurrentUser(User user) {
         currentUser = user;
     }
-    
+
     /**
      * Get the current logged-in user.
-     * 
+     *
      * @return Current user
      */
     public static User getCurrentUser() {
         return currentUser;
     }
-    
+
     /**
      * Navigate to the Login view.
      */
     public static void navigateToLogin() {
-        try {
-            FXMLLoader loader = new FXMLLoader(NavigationService.class.getResource("/fxml/Login.fxml"));
-            Parent root = loader.load();
-            Scene scene = new Scene(root, 500, 400);
-            ThemeService.applyTheme(scene);
-            primaryStage.setScene(scene);
-            primaryStage.setTitle("TaskTorch - Login");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        showMainView(LOGIN_FXML, 500, 400, "TaskTorch - Login");
     }
-    
+
     /**
      * Navigate to the Dashboard view.
      */
     public static void navigateToDashboard() {
-        try {
-            FXMLLoader loader = new FXMLLoader(NavigationService.class.getResource("/fxml/Dashboard.fxml"));
-            Parent root = loader.load();
-            Scene scene = new Scene(root, 900, 700);
-            ThemeService.applyTheme(scene);
-            primaryStage.setScene(scene);
-            primaryStage.setTitle("TaskTorch - Dashboard");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        showMainView("/fxml/Dashboard.fxml", 900, 700, "TaskTorch - Dashboard");
     }
-    
+
     /**
      * Navigate to the Calendar view.
      */
     public static void navigateToCalendar() {
-        try {
-            FXMLLoader loader = new FXMLLoader(NavigationService.class.getResource("/fxml/CalendarView.fxml"));
-            Parent root = loader.load();
-            Scene scene = new Scene(root, 900, 700);
-            ThemeService.applyTheme(scene);
-            primaryStage.setScene(scene);
-            primaryStage.setTitle("TaskTorch - Calendar");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        showMainView("/fxml/CalendarView.fxml", 900, 700, "TaskTorch - Calendar");
     }
-    
+
     /**
      * Open the Add Task view in a new window.
      */
     public static void openAddTask() {
         openTaskWindow(null, false);
     }
-    
+
     /**
      * Open the Edit Task view in a new window.
-     * 
+     *
      * @param task Task to edit
      */
     public static void openEditTask(Task task) {
         openTaskWindow(task, true);
     }
-    
+
     /**
      * Open task window (Add or Edit).
-     * 
+     *
      * @param task Task to edit (null for new task)
      * @param isEditMode True if editing, false if adding
      */
     private static void openTaskWindow(Task task, boolean isEditMode) {
         try {
-            FXMLLoader loader = new FXMLLoader(NavigationService.class.getResource("/fxml/AddTask.fxml"));
-            Parent root = loader.load();
-            
-            com.tasktorch.controllers.TaskController controller = loader.getController();
+            CachedView view = loadView("/fxml/AddTask.fxml");
+
+            com.tasktorch.controllers.TaskController controller =
+                (com.tasktorch.controllers.TaskController) view.controller;
             if (isEditMode && task != null) {
                 controller.setTaskForEditing(task);
             } else {
                 controller.setNewTaskMode();
             }
-            
-            Stage stage = new Stage();
-            stage.setTitle(isEditMode ? "Edit Task" : "Add Task");
-            Scene scene = new Scene(root, 600, 500);
-            ThemeService.applyTheme(scene);
-            stage.setScene(scene);
-            stage.initModality(Modality.WINDOW_MODAL);
-            stage.initOwner(primaryStage);
-            stage.showAndWait();
-            
+
+            showDialog(view, isEditMode ? "Edit Task" : "Add Task", 600, 500);
+
             // Refresh the current view after closing the task window
             refreshCurrentViewAfterModalClose();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-    
+
     /**
      * Refresh the current view after a modal window closes.
      */
     private static void refreshCurrentViewAfterModalClose() {
-        if (primaryStage != null && primaryStage.getScene() != null) {
-            String title = primaryStage.getTitle();
-            if (title != null) {
-                if (title.contains("Dashboard")) {
-                    navigateToDashboard();
-                } else if (title.contains("Calendar")) {
-                    navigateToCalendar();
-                }
-            }
+        refreshCurrentView();
+    }
+
+    /**
+     * Ask for the current main view to be refreshed. May be called from any
+     * thread; a burst of requests results in a single refresh on the FX thread.
+     */
+    public static void refreshCurrentView() {
+        FxDispatcher.requestRefresh(currentViewRefresh);
+    }
+
+    /**
+     * Refresh whichever main view is showing when the coalesced request runs.
+     */
+    private static void refreshCurrentViewNow() {
+        if (currentView != null && currentView.controller instanceof RefreshableView) {
+            ((RefreshableView) currentView.controller).refresh();
+        }
+    }
+
+    /**
+     * Refresh the current view whenever a task changes, e.g. after a
+     * background calendar sync writes back an event id, and when the date
+     * changes.
+     */
+    private static void listenForTaskChanges() {
+        if (!listeningForTaskChanges) {
+            listeningForTaskChanges = true;
+            TaskRepository.getInstance().addChangeListener(taskId -> refreshCurrentView());
+            // Overdue and due-today labels change at midnight
+            AppClock.addDayChangeListener(today -> refreshCurrentView());
         }
     }
-    
+
     /**
      * Open the Settings view in a new window.
      */
     public static void openSettings() {
         try {
-            FXMLLoader loader = new FXMLLoader(NavigationService.class.getResource("/fxml/Settings.fxml"));
-            Parent root = loader.load();
-            
-            Stage stage = new Stage();
-            stage.setTitle("Settings");
-            Scene scene = new Scene(root, 500, 400);
-            ThemeService.applyTheme(scene);
-            stage.setScene(scene);
-            stage.initModality(Modality.WINDOW_MODAL);
-            stage.initOwner(primaryStage);
-            stage.showAndWait();
+            CachedView view = loadView("/fxml/Settings.fxml");
+            if (view.controller instanceof RefreshableView) {
+                ((RefreshableView) view.controller).refresh();
+            }
+            showDialog(view, "Settings", 500, 400);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-    
+
     /**
      * Open the About view in a new window.
      */
     public static void openAbout() {
         try {
-            FXMLLoader loader = new FXMLLoader(NavigationService.class.getResource("/fxml/About.fxml"));
+            showDialog(loadView("/fxml/About.fxml"), "About TaskTorch", 700, 600);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Load an FXML file, or return the tree and controller loaded earlier.
+     *
+     * @param fxml Resource path of the FXML file
+     * @return The cached view
+     * @throws IOException If the FXML cannot be loaded
+     */
+    private static CachedView loadView(String fxml) throws IOException {
+        CachedView view = viewCache.get(fxml);
+        if (view == null) {
+            FXMLLoader loader = new FXMLLoader(NavigationService.class.getResource(fxml));
             Parent root = loader.load();
-            
+            view = new CachedView(root, loader.getController());
+            viewCache.put(fxml, view);
+        }
+        return view;
+    }
+
+    /**
+     * Show a view in the primary stage by swapping the root of the main Scene.
+     *
+     * @param fxml Resource path of the FXML file
+     * @param width Preferred window content width
+     * @param height Preferred window content height
+     * @param title Window title
+     */
+    private static void showMainView(String fxml, double width, double height, String title) {
+        try {
+            boolean cached = viewCache.containsKey(fxml);
+            CachedView view = loadView(fxml);
+
+            if (mainScene == null) {
+                mainScene = new Scene(view.root, width, height);
+                ThemeService.applyTheme(mainScene);
+                primaryStage.setScene(mainScene);
+            } else if (mainScene.getRoot() != view.root) {
+                // Only the small login view needs a different size; between the
+                // other views, keep whatever size the user gave the window
+                boolean loginChanged = isLoginView(currentView) != LOGIN_FXML.equals(fxml);
+                mainScene.setRoot(view.root);
+                if (loginChanged) {
+                    resizeMainWindow(width, height);
+                }
+            }
+            currentView = view;
+            primaryStage.setTitle(title);
+
+            // Views that show tasks only exist after login, once tasks are loaded
+            if (view.controller instanceof RefreshableView) {
+                listenForTaskChanges();
+            }
+
+            // A freshly loaded controller already read its data in initialize()
+            if (cached && view.controller instanceof RefreshableView) {
+                ((RefreshableView) view.controller).refresh();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isLoginView(CachedView view) {
+        return view != null && view == viewCache.get(LOGIN_FXML);
+    }
+
+    /**
+     * Resize the primary stage so the scene gets the requested content size,
+     * e.g. when moving from the small login view to the dashboard.
+     */
+    private static void resizeMainWindow(double width, double height) {
+        if (primaryStage.isMaximized() || primaryStage.isFullScreen()) {
+            return;
+        }
+        if (mainScene.getWidth() != width || mainScene.getHeight() != height) {
+            // Keep the window decorations, change only the content area
+            primaryStage.setWidth(width + primaryStage.getWidth() - mainScene.getWidth());
+            primaryStage.setHeight(height + primaryStage.getHeight() - mainScene.getHeight());
+        }
+    }
+
+    /**
+     * Show a cached view in its own modal window and wait until it is closed.
+     *
+     * @param view View to show
+     * @param title Window title
+     * @param width Window content width
+     * @param height Window content height
+     */
+    private static void showDialog(CachedView view, String title, double width, double height) {
+        if (view.stage == null) {
             Stage stage = new Stage();
-            stage.setTitle("About TaskTorch");
-            Scene scene = new Scene(root, 700, 600);
-            ThemeService.applyTheme(scene);
-            stage.setScene(scene);
+            stage.setScene(new Scene(view.root, width, height));
             stage.initModality(Modality.WINDOW_MODAL);
             stage.initOwner(primaryStage);
-            stage.showAndWait();
-        } catch (IOException e) {
-            e.printStackTrace();
+            view.stage = stage;
         }
+        view.stage.setTitle(title);
+        // The theme may have changed since the dialog was last shown
+        ThemeService.applyTheme(view.stage.getScene());
+        view.stage.showAndWait();
     }
-    
-}
 
+}
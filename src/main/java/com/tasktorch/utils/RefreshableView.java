@@ -0,0 +1,13 @@
+package com.tasktorch.utils;
+
+/**
+ * Implemented by controllers of cached views that must reload their data
+ * when they are shown again or after a dialog changes the tasks.
+ */
+public interface RefreshableView {
+
+    /**
+     * Reload the data shown by the view.
+     */
+    void refresh();
+}
@@ -0,0 +1,59 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.ReminderScheduler;
+import com.tasktorch.models.Task;
+import javafx.scene.control.Alert;
+
+import java.util.List;
+
+/**
+ * Shows reminders fired by ReminderScheduler as a single non-blocking
+ * dialog per batch.
+ */
+public class ReminderNotifier {
+    private static final int MAX_LISTED_TASKS = 10;
+    private static boolean installed;
+
+    /**
+     * Start showing reminders from the shared scheduler. Safe to call on
+     * every login; the listener is only registered once.
+     */
+    public static synchronized void install() {
+        if (!installed) {
+            installed = true;
+            ReminderScheduler.getInstance().addListener(ReminderNotifier::show);
+        }
+    }
+
+    /**
+     * Show one dialog listing the tasks in a batch of reminders.
+     *
+     * @param tasks Tasks that are coming due
+     */
+    private static void show(List<Task> tasks) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tasks.size() && i < MAX_LISTED_TASKS; i++) {
+            Task task = tasks.get(i);
+            int days = task.daysUntilDue();
+            text.append("• ").append(task.getTitle());
+            if (task.getClassName() != null && !task.getClassName().isEmpty()) {
+                text.append(" (").append(task.getClassName()).append(")");
+            }
+            text.append(" - ").append(days == 0 ? "due today" : days == 1 ? "due tomorrow" : "due in " + days + " days");
+            text.append("\n");
+        }
+        if (tasks.size() > MAX_LISTED_TASKS) {
+            text.append("…and ").append(tasks.size() - MAX_LISTED_TASKS).append(" more");
+        }
+        String header = tasks.size() == 1 ? "1 task is coming due" : tasks.size() + " tasks are coming due";
+
+        FxDispatcher.runOnFxThread(() -> {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("TaskTorch Reminder");
+            alert.setHeaderText(header);
+            alert.setContentText(text.toString().trim());
+            // Don't block whatever the user is doing
+            alert.show();
+        });
+    }
+}
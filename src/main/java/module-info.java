@@ -2,6 +2,7 @@ module com.tasktorch {
     requires javafx.controls;
     requires javafx.fxml;
     requires transitive javafx.graphics;
+    requires java.net.http;
     
     // Google Calendar API - accessed via classpath (unnamed module)
     
@@ -0,0 +1,87 @@
+package com.tasktorch.models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileCommitterTest {
+    @TempDir
+    Path tempDir;
+
+    private static String read(Path file) throws IOException {
+        return Files.readString(file, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void laterSavesOfOneFileShareACommit() throws IOException {
+        Path settings = tempDir.resolve("settings.txt");
+        Path users = tempDir.resolve("users.csv");
+
+        CompletableFuture<Void> first = FileCommitter.commitLater(settings, "theme=light\n");
+        CompletableFuture<Void> second = FileCommitter.commitLater(settings, "theme=dark\n");
+        CompletableFuture<Void> other = FileCommitter.commitLater(users, "username,password\n");
+        assertSame(first, second);
+        CompletableFuture.allOf(first, other).join();
+
+        assertEquals("theme=dark\n", read(settings));
+        assertEquals("username,password\n", read(users));
+        assertFalse(Files.exists(tempDir.resolve("settings.txt.tmp")));
+    }
+
+    @Test
+    void commitTakesWaitingSavesAlong() throws IOException {
+        Path settings = tempDir.resolve("settings.txt");
+        Path tasks = tempDir.resolve("tasks.csv");
+
+        CompletableFuture<Void> waiting = FileCommitter.commitLater(settings, "theme=dark\n");
+        FileCommitter.commit(tasks, out -> out.write("header\n"));
+
+        // Committed in the same round, not after the group delay
+        assertTrue(waiting.isDone());
+        assertEquals("theme=dark\n", read(settings));
+        assertEquals("header\n", read(tasks));
+    }
+
+    @Test
+    void commitReplacesWaitingSaveOfSameFile() throws IOException {
+        Path settings = tempDir.resolve("settings.txt");
+
+        CompletableFuture<Void> waiting = FileCommitter.commitLater(settings, "theme=light\n");
+        FileCommitter.commit(settings, out -> out.write("theme=dark\n"));
+
+        assertTrue(waiting.isDone());
+        assertEquals("theme=dark\n", read(settings));
+    }
+
+    @Test
+    void awaitPendingMakesSaveVisible() throws IOException {
+        Path settings = tempDir.resolve("settings.txt");
+
+        FileCommitter.commitLater(settings, "theme=dark\n");
+        FileCommitter.awaitPending(settings);
+
+        assertEquals("theme=dark\n", read(settings));
+    }
+
+    @Test
+    void failedSaveIsReported() {
+        Path missing = tempDir.resolve("missing").resolve("settings.txt");
+
+        CompletableFuture<Void> later = FileCommitter.commitLater(missing, "theme=dark\n");
+        assertThrows(CompletionException.class, later::join);
+        assertThrows(IOException.class, () -> FileCommitter.commit(missing, out -> out.write("x")));
+        assertFalse(Files.exists(missing));
+    }
+}
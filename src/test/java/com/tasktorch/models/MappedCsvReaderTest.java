@@ -0,0 +1,96 @@
+package com.tasktorch.models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedCsvReaderTest {
+    @TempDir
+    Path tempDir;
+
+    private static MappedCsvReader reader(String csv) {
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        return MappedCsvReader.wrap(bytes, bytes.length);
+    }
+
+    @Test
+    void quotedFieldsKeepCommasNewlinesAndEscapedQuotes() {
+        MappedCsvReader reader = reader("a,\"b, c\",\"line one\nline two\",\"say \"\"hi\"\"\",\"\"\r\nnext\n");
+
+        assertTrue(reader.nextRecord());
+        assertEquals(5, reader.fieldCount());
+        assertEquals("a", reader.field(0));
+        assertEquals("b, c", reader.field(1));
+        assertFalse(reader.fieldEscaped(1));
+        assertEquals("line one\nline two", reader.field(2));
+        assertEquals("say \"hi\"", reader.field(3));
+        assertTrue(reader.fieldEscaped(3));
+        assertTrue(reader.isEmpty(4));
+        assertTrue(reader.recordTerminated());
+
+        assertTrue(reader.nextRecord());
+        assertEquals("next", reader.field(0));
+        assertFalse(reader.nextRecord());
+    }
+
+    @Test
+    void quoteAtEndOfEscapedFieldClosesIt() {
+        // """" is one escaped quote; the field ends at the quote after it
+        MappedCsvReader reader = reader("\"\"\"\",x\n\"ends with \"\"\"\"\",y\n");
+
+        assertTrue(reader.nextRecord());
+        assertEquals("\"", reader.field(0));
+        assertEquals("x", reader.field(1));
+        assertTrue(reader.nextRecord());
+        assertEquals("ends with \"\"", reader.field(0));
+        assertEquals("y", reader.field(1));
+    }
+
+    @Test
+    void unterminatedRecordIsReported() {
+        MappedCsvReader reader = reader("one,two\nthree,\"cut off");
+
+        assertTrue(reader.nextRecord());
+        assertTrue(reader.recordTerminated());
+        assertTrue(reader.nextRecord());
+        assertFalse(reader.recordTerminated());
+        assertEquals("cut off", reader.field(1));
+    }
+
+    @Test
+    void paddedColumnsAndDatesAreMatchedInPlace() {
+        MappedCsvReader reader = reader("Pending    ,2025-03-09,#tombstoned\n");
+
+        assertTrue(reader.nextRecord());
+        assertTrue(reader.fieldEqualsIgnoreCase(0, "pending"));
+        assertFalse(reader.fieldEqualsIgnoreCase(0, "completed"));
+        assertEquals(LocalDate.of(2025, 3, 9), reader.dateField(1));
+        assertTrue(reader.startsWith('P'));
+    }
+
+    @Test
+    void fileCanBeReplacedWhileReaderIsInUse() throws IOException {
+        Path file = tempDir.resolve("tasks.csv");
+        Files.writeString(file, "id,title\nt1,Old\n", StandardCharsets.UTF_8);
+        MappedCsvReader reader = MappedCsvReader.open(file);
+
+        Path replacement = tempDir.resolve("tasks.csv.tmp");
+        Files.writeString(replacement, "id,title\nt1,New\n", StandardCharsets.UTF_8);
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        assertTrue(reader.nextRecord());
+        assertTrue(reader.nextRecord());
+        assertEquals("Old", reader.field(1));
+        assertEquals("id,title\nt1,New\n", Files.readString(file, StandardCharsets.UTF_8));
+    }
+}
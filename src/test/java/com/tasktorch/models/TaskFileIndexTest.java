@@ -0,0 +1,198 @@
+package com.tasktorch.models;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskFileIndexTest {
+    // Long enough that deleting three of four rows crosses the half-dead threshold
+    private static final String LONG_NOTES = "x".repeat(120);
+
+    @TempDir
+    Path tempDir;
+
+    private Path dataDir;
+    private TaskRepository repository;
+
+    private static Task task(String id, String title, String notes) {
+        return new Task(id, title, LocalDate.of(2030, 5, 1), "CS101", notes, Status.PENDING, Priority.MEDIUM);
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataDir = tempDir.resolve("data");
+        TaskRepository first = new TaskRepository(new TaskManager(dataDir));
+        first.addTask(task("t1", "Problem set", "read \"chapter 3\", then answer"));
+        first.addTask(task("t2", "Quiz", LONG_NOTES));
+        first.addTask(task("t3", "Project", LONG_NOTES));
+        first.addTask(task("t4", "Reading", LONG_NOTES));
+        first.shutdown();
+        // Reopened from tasks.csv, so later saves patch the file
+        repository = new TaskRepository(new TaskManager(dataDir));
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.shutdown();
+    }
+
+    private Path tasksFile() {
+        return dataDir.resolve("tasks.csv");
+    }
+
+    private byte[] fileBytes() throws IOException {
+        return Files.readAllBytes(tasksFile());
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(tasksFile(), StandardCharsets.UTF_8);
+    }
+
+    private long tombstones() throws IOException {
+        return lines().stream().filter(line -> line.startsWith("#")).count();
+    }
+
+    /**
+     * Read a file in the tasks.csv format the way a plain load does, keyed by
+     * taskId and formatted without padding.
+     */
+    private static Map<String, String> rows(Path dir) {
+        TaskManager taskManager = new TaskManager(dir);
+        Map<String, String> rows = new TreeMap<>();
+        for (Task task : taskManager.loadTasks()) {
+            rows.put(task.getTaskId(), taskManager.formatTask(task));
+        }
+        return rows;
+    }
+
+    private static Map<String, String> rows(TaskRepository repository, TaskManager taskManager) {
+        Map<String, String> rows = new TreeMap<>();
+        for (Task task : repository.getAllTasks()) {
+            rows.put(task.getTaskId(), taskManager.formatTask(repository.getTaskSnapshot(task.getTaskId())));
+        }
+        return rows;
+    }
+
+    @Test
+    void flagChangeIsPatchedInPlace() throws IOException {
+        byte[] before = fileBytes();
+
+        assertTrue(repository.setStatus("t2", Status.COMPLETED));
+        assertTrue(repository.updateTask("t3", t -> t.setPriority(Priority.HIGH)));
+        repository.compact();
+
+        byte[] after = fileBytes();
+        assertEquals(before.length, after.length);
+        assertNotEquals(new String(before, StandardCharsets.UTF_8), new String(after, StandardCharsets.UTF_8));
+        assertEquals(0, tombstones());
+        Map<String, String> rows = rows(dataDir);
+        assertTrue(rows.get("t2").endsWith(",completed,medium,"));
+        assertTrue(rows.get("t3").endsWith(",pending,high,"));
+    }
+
+    @Test
+    void deleteTombstonesRowInPlace() throws IOException {
+        int size = fileBytes().length;
+
+        assertTrue(repository.deleteTask("t2"));
+        repository.compact();
+
+        assertEquals(size, fileBytes().length);
+        assertEquals(1, tombstones());
+        assertTrue(lines().stream().anyMatch(line -> line.startsWith("#2,Quiz,")));
+        assertFalse(rows(dataDir).containsKey("t2"));
+    }
+
+    @Test
+    void editAppendsRowAndTombstonesOldOne() throws IOException {
+        List<String> before = lines();
+        String oldRow = before.stream().filter(line -> line.startsWith("t1,")).findFirst().orElseThrow();
+
+        assertTrue(repository.updateTask("t1", t -> t.setTitle("Problem set 4")));
+        repository.compact();
+
+        List<String> after = lines();
+        assertEquals(before.size() + 1, after.size());
+        assertTrue(after.contains("#" + oldRow.substring(1)));
+        assertTrue(after.get(after.size() - 1).startsWith("t1,Problem set 4,"));
+        assertEquals(1, tombstones());
+        assertEquals(rows(repository, new TaskManager(dataDir)), rows(dataDir));
+        assertEquals("read \"chapter 3\", then answer", repository.getNotes("t1"));
+    }
+
+    @Test
+    void halfDeadFileIsRewritten() throws IOException {
+        assertTrue(repository.deleteTask("t2"));
+        assertTrue(repository.deleteTask("t3"));
+        assertTrue(repository.deleteTask("t4"));
+        repository.compact();
+
+        List<String> lines = lines();
+        assertEquals(0, tombstones());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("t1,"));
+    }
+
+    @Test
+    void notesPointersFollowRewrite() throws IOException {
+        assertTrue(repository.getTask("t1").table().hasStoredNotes(repository.getTask("t1").row()));
+        assertTrue(repository.deleteTask("t2"));
+        assertTrue(repository.deleteTask("t3"));
+        assertTrue(repository.deleteTask("t4"));
+        repository.compact();
+
+        // Rewritten rows point into the new file, which is patched from here on
+        Task t1 = repository.getTask("t1");
+        assertTrue(t1.table().hasStoredNotes(t1.row()));
+        assertEquals("read \"chapter 3\", then answer", repository.getNotes("t1"));
+
+        repository.addTask(task("t5", "Lab", "bring goggles"));
+        assertTrue(repository.setStatus("t1", Status.IN_PROGRESS));
+        repository.compact();
+        assertEquals(0, tombstones());
+        assertEquals("read \"chapter 3\", then answer", repository.getNotes("t1"));
+        assertEquals("bring goggles", repository.getNotes("t5"));
+    }
+
+    @Test
+    void patchedFileMatchesFullRewriteAfterReload() throws IOException {
+        assertTrue(repository.setStatus("t4", Status.COMPLETED));
+        assertTrue(repository.updateTask("t2", t -> t.setNotes("new, \"quoted\" notes")));
+        assertTrue(repository.deleteTask("t1"));
+        repository.addTask(task("t5", "Lab", "bring goggles"));
+        repository.compact();
+        assertTrue(repository.updateTask("t3", t -> t.setPriority(Priority.LOW)));
+        repository.compact();
+        assertTrue(tombstones() > 0);
+
+        TaskManager taskManager = new TaskManager(dataDir);
+        Map<String, String> expected = rows(repository, taskManager);
+        Path rewritten = tempDir.resolve("rewritten");
+        assertTrue(new TaskManager(rewritten).saveTasks(repository.getAllTasks().stream()
+            .map(t -> repository.getTaskSnapshot(t.getTaskId())).toList()));
+
+        assertEquals(expected, rows(dataDir));
+        assertEquals(expected, rows(rewritten));
+
+        repository.shutdown();
+        repository = new TaskRepository(new TaskManager(dataDir));
+        assertEquals(expected, rows(repository, taskManager));
+        assertArrayEquals(rows(rewritten).values().toArray(), rows(repository, taskManager).values().toArray());
+    }
+}
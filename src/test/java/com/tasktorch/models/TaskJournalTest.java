@@ -0,0 +1,73 @@
+package com.tasktorch.models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskJournalTest {
+    @TempDir
+    Path tempDir;
+
+    private static Task task(String id, String title, String notes) {
+        return new Task(id, title, LocalDate.of(2030, 5, 1), "CS101", notes, Status.PENDING, Priority.MEDIUM);
+    }
+
+    private Path journalFile() {
+        return tempDir.resolve("tasks.journal");
+    }
+
+    private void appendRaw(String bytes) throws IOException {
+        Files.writeString(journalFile(), bytes, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void tornRecordIsSkippedAndCutOffByNextAppend() throws IOException {
+        TaskManager taskManager = new TaskManager(tempDir);
+        TaskJournal journal = new TaskJournal(taskManager);
+        journal.append(List.of(task("t1", "Essay", "line one\nline two"), task("t2", "Quiz", "")), List.of());
+        long intact = journal.size();
+        // A crash while appending left half a record, cut inside its quoted notes
+        appendRaw("U,t3,Lab,2030-05-02,CHEM,\"goggles,\nand");
+
+        Map<String, Task> tasks = new HashMap<>();
+        assertEquals(2, journal.replay(tasks));
+        assertEquals("line one\nline two", tasks.get("t1").getNotes());
+        assertFalse(tasks.containsKey("t3"));
+
+        journal.append(List.of(task("t4", "Reading", "")), List.of("t2"));
+        String content = Files.readString(journalFile(), StandardCharsets.UTF_8);
+        assertFalse(content.contains("goggles"));
+        assertTrue(journal.size() > intact);
+
+        Map<String, Task> replayed = new HashMap<>();
+        TaskJournal reopened = new TaskJournal(taskManager);
+        assertEquals(4, reopened.replay(replayed));
+        assertEquals(List.of("t1", "t4"), replayed.keySet().stream().sorted().toList());
+        assertEquals("Reading", replayed.get("t4").getTitle());
+    }
+
+    @Test
+    void journalEndingInsideRecordKeepsEarlierRecords() throws IOException {
+        TaskManager taskManager = new TaskManager(tempDir);
+        TaskJournal journal = new TaskJournal(taskManager);
+        journal.append(List.of(task("t1", "Essay", "")), List.of());
+        appendRaw("D,t1"); // No line break: the delete never completed
+
+        Map<String, Task> tasks = new HashMap<>();
+        assertEquals(1, journal.replay(tasks));
+        assertTrue(tasks.containsKey("t1"));
+    }
+}
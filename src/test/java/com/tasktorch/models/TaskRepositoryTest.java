@@ -0,0 +1,95 @@
+package com.tasktorch.models;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskRepositoryTest {
+    private static final long TIMEOUT_MS = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    private TaskRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        TaskRepository first = new TaskRepository(new TaskManager(tempDir));
+        first.addTask(new Task("t1", "Lab report", LocalDate.of(2025, 4, 2), "CHEM",
+            "titration curves and buffers", Status.PENDING, Priority.MEDIUM));
+        first.addTask(new Task("t2", "Essay", LocalDate.of(2025, 4, 3), "ENG",
+            "compare both novels", Status.PENDING, Priority.LOW));
+        first.shutdown();
+        // Reopened from tasks.csv, notes stay in the file
+        repository = new TaskRepository(new TaskManager(tempDir));
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.shutdown();
+    }
+
+    private boolean hasStoredNotes(String taskId) {
+        Task task = repository.getTask(taskId);
+        return task.table().hasStoredNotes(task.row());
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getTaskId).toList();
+    }
+
+    private void awaitSearch(String query, List<String> expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!ids(repository.search(query, 10, null, null, null)).equals(expected)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Search for " + query + " never returned " + expected);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void statusChangeLeavesStoredNotesOnDisk() {
+        assertTrue(hasStoredNotes("t1"));
+        long textVersion = repository.getTask("t1").table().textVersion();
+
+        assertTrue(repository.setStatus("t1", Status.COMPLETED));
+        assertTrue(repository.updateTask("t1", t -> t.setPriority(Priority.HIGH)));
+
+        assertTrue(hasStoredNotes("t1"));
+        assertEquals(textVersion, repository.getTask("t1").table().textVersion());
+        assertEquals(List.of("t1"), ids(repository.search("titration", 10, null, null, null)));
+        assertEquals(List.of("t1"), ids(repository.search("titration", 10, Status.COMPLETED, null, null)));
+    }
+
+    @Test
+    void titleChangeIsSearchableWithStoredNotes() throws InterruptedException {
+        assertTrue(repository.updateTask("t1", t -> t.setTitle("Chemistry write-up")));
+
+        assertTrue(hasStoredNotes("t1"));
+        awaitSearch("chemistry", List.of("t1"));
+        assertEquals(List.of("t1"), ids(repository.search("buffers", 10, null, null, null)));
+        assertTrue(repository.search("lab report", 10, null, null, null).isEmpty());
+    }
+
+    @Test
+    void notesChangeIsSearchableAtOnce() {
+        assertTrue(repository.updateTask("t2", t -> t.setNotes("outline the argument")));
+
+        assertFalse(hasStoredNotes("t2"));
+        assertEquals(List.of("t2"), ids(repository.search("argument", 10, null, null, null)));
+        assertTrue(repository.search("novels", 10, null, null, null).isEmpty());
+        assertEquals("outline the argument", repository.getNotes("t2"));
+        assertEquals("titration curves and buffers", repository.getNotes("t1"));
+        assertEquals("titration curves and buffers", repository.getTaskSnapshot("t1").getNotes());
+    }
+}
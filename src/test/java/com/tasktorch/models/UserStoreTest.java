@@ -0,0 +1,73 @@
+package com.tasktorch.models;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private UserStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Two accounts share a name, as a hand-edited users.csv may have
+        Files.writeString(tempDir.resolve("users.csv"),
+            "username,password\nalice,first\nbob,secret\nAlice,second\n", StandardCharsets.UTF_8);
+        store = new UserStore(new UserManager(tempDir));
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.stopWatching();
+    }
+
+    @Test
+    void loginTriesEveryAccountWithTheName() {
+        User first = store.authenticate("alice", "first");
+        assertNotNull(first);
+        assertEquals("first", first.getPassword());
+
+        User second = store.authenticate("alice", "second");
+        assertNotNull(second);
+        assertEquals("Alice", second.getUsername());
+        assertEquals("second", second.getPassword());
+
+        assertNotNull(store.authenticate("ALICE", "second"));
+    }
+
+    @Test
+    void wrongPasswordIsRejectedForEveryAccount() {
+        assertNull(store.authenticate("alice", "secret"));
+        assertTrue(store.usernameExists("alice"));
+        assertNull(store.authenticate("carol", "first"));
+        assertFalse(store.usernameExists("carol"));
+    }
+
+    @Test
+    void signUpRejectsTakenNames() throws IOException {
+        assertFalse(store.addUser("ALICE", "third"));
+        assertTrue(store.addUser("carol", "pw3"));
+
+        UserStore reloaded = new UserStore(new UserManager(tempDir));
+        try {
+            assertNotNull(reloaded.authenticate("carol", "pw3"));
+            assertNotNull(reloaded.authenticate("alice", "second"));
+        } finally {
+            reloaded.stopWatching();
+        }
+    }
+}
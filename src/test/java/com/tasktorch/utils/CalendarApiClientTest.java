@@ -0,0 +1,121 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.Priority;
+import com.tasktorch.models.Status;
+import com.tasktorch.models.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarApiClientTest {
+    private static final String EVENTS_PATH = "/calendar/v3/calendars/primary/events";
+
+    private FakeCalendarServer server;
+    private CalendarApiClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeCalendarServer();
+        System.setProperty(CalendarApiClient.BASE_URL_PROPERTY, server.baseUrl());
+        client = new CalendarApiClient(CalendarApiClient.configuredBaseUri(), () -> "test-token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(CalendarApiClient.BASE_URL_PROPERTY);
+        server.close();
+    }
+
+    private static Task task(String taskId) {
+        return new Task(taskId, "Essay", LocalDate.of(2025, 3, 10), "ENG", "Draft",
+            Status.PENDING, Priority.HIGH);
+    }
+
+    @Test
+    void sendsSeveralRequestsAsOneMultipartBatch() throws Exception {
+        // Answer out of order; responses must still line up with the requests
+        server.setHandler(call -> FakeCalendarServer.batchReply(
+            List.of("<response-item2>", "<response-item0>", "<response-item1>"),
+            List.of(204, 200, 404),
+            List.of("", "{\"id\":\"ev0\"}", "{\"error\":\"notFound\"}")));
+
+        List<CalendarApiClient.Response> responses = client.executeBatch(List.of(
+            CalendarApiClient.Request.insert(task("t1"), "ev0"),
+            CalendarApiClient.Request.update(task("t2"), "ev1"),
+            CalendarApiClient.Request.delete("ev2")));
+
+        List<FakeCalendarServer.Call> calls = server.calls();
+        assertEquals(1, calls.size());
+        FakeCalendarServer.Call call = calls.get(0);
+        assertTrue(call.isBatch());
+        assertTrue(call.contentType.startsWith("multipart/mixed; boundary=batch_"));
+        assertEquals("Bearer test-token", call.authorization);
+
+        List<FakeCalendarServer.Part> parts = call.parts();
+        assertEquals(3, parts.size());
+        assertEquals("<item0>", parts.get(0).contentId);
+        assertEquals("POST " + EVENTS_PATH + " HTTP/1.1", parts.get(0).requestLine);
+        assertTrue(parts.get(0).body.contains("\"id\":\"ev0\""));
+        assertTrue(parts.get(0).body.contains("\"taskTorchId\":\"t1\""));
+        assertEquals("<item1>", parts.get(1).contentId);
+        assertEquals("PUT " + EVENTS_PATH + "/ev1 HTTP/1.1", parts.get(1).requestLine);
+        assertEquals("<item2>", parts.get(2).contentId);
+        assertEquals("DELETE " + EVENTS_PATH + "/ev2 HTTP/1.1", parts.get(2).requestLine);
+        assertEquals("", parts.get(2).body);
+
+        assertEquals(3, responses.size());
+        assertEquals(200, responses.get(0).status);
+        assertEquals("{\"id\":\"ev0\"}", responses.get(0).body);
+        assertEquals(404, responses.get(1).status);
+        assertFalse(responses.get(1).isSuccess());
+        assertEquals(204, responses.get(2).status);
+    }
+
+    @Test
+    void failedBatchIsReportedForEveryRequest() throws Exception {
+        server.setHandler(call -> FakeCalendarServer.Reply.json(503, "{\"error\":\"backendError\"}"));
+
+        List<CalendarApiClient.Response> responses = client.executeBatch(List.of(
+            CalendarApiClient.Request.delete("ev1"),
+            CalendarApiClient.Request.delete("ev2")));
+
+        assertEquals(2, responses.size());
+        for (CalendarApiClient.Response response : responses) {
+            assertEquals(503, response.status);
+            assertTrue(response.body.contains("backendError"));
+        }
+    }
+
+    @Test
+    void missingResponsePartIsAnError() {
+        server.setHandler(call -> FakeCalendarServer.batchReply(
+            List.of("<response-item0>"), List.of(204), List.of("")));
+
+        assertThrows(IOException.class, () -> client.executeBatch(List.of(
+            CalendarApiClient.Request.delete("ev1"),
+            CalendarApiClient.Request.delete("ev2"))));
+    }
+
+    @Test
+    void singleRequestIsSentWithoutBatch() throws Exception {
+        server.setHandler(call -> new FakeCalendarServer.Reply(204, "application/json", ""));
+
+        List<CalendarApiClient.Response> responses = client.executeBatch(
+            List.of(CalendarApiClient.Request.delete("ev1")));
+
+        List<FakeCalendarServer.Call> calls = server.calls();
+        assertEquals(1, calls.size());
+        assertEquals("DELETE", calls.get(0).method);
+        assertEquals(EVENTS_PATH + "/ev1", calls.get(0).uri);
+        assertEquals(204, responses.get(0).status);
+    }
+}
@@ -0,0 +1,73 @@
+package com.tasktorch.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarOutboxTest {
+    // An imported iCalendar UID; nothing stops one from holding CSV syntax
+    private static final String ODD_UID = "event,1@example.com\n\"quoted\"";
+
+    @TempDir
+    Path tempDir;
+
+    private CalendarOutbox outbox() {
+        return new CalendarOutbox(tempDir.resolve("calendar.outbox"));
+    }
+
+    @Test
+    void replayKeepsTaskIdsWithCommasAndNewlines() throws IOException {
+        CalendarOutbox outbox = outbox();
+        outbox.append(List.of(
+            new CalendarOutbox.Entry("op1", ODD_UID, false, "ev1"),
+            new CalendarOutbox.Entry("op2", "plain", true, "ev2"),
+            new CalendarOutbox.Entry("op3", ODD_UID, true, "ev3")), List.of());
+        outbox.append(List.of(), List.of("op2"));
+
+        List<CalendarOutbox.Entry> pending = outbox().replay();
+
+        assertEquals(2, pending.size());
+        assertEquals("op1", pending.get(0).opId);
+        assertEquals(ODD_UID, pending.get(0).taskId);
+        assertFalse(pending.get(0).delete);
+        assertEquals("ev1", pending.get(0).eventId);
+        assertEquals("op3", pending.get(1).opId);
+        assertEquals(ODD_UID, pending.get(1).taskId);
+        assertTrue(pending.get(1).delete);
+    }
+
+    @Test
+    void rewriteKeepsEscapedRecords() throws IOException {
+        CalendarOutbox outbox = outbox();
+        outbox.rewrite(List.of(new CalendarOutbox.Entry("op1", ODD_UID, false, "ev1")));
+
+        List<CalendarOutbox.Entry> pending = outbox().replay();
+
+        assertEquals(1, pending.size());
+        assertEquals(ODD_UID, pending.get(0).taskId);
+    }
+
+    @Test
+    void tornRecordIsIgnored() throws IOException {
+        CalendarOutbox outbox = outbox();
+        outbox.append(List.of(new CalendarOutbox.Entry("op1", ODD_UID, false, "ev1")), List.of());
+        // A crash cut the next record off inside its quoted task id
+        Files.writeString(tempDir.resolve("calendar.outbox"), "U,op2,\"half\nof an id",
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<CalendarOutbox.Entry> pending = outbox().replay();
+
+        assertEquals(1, pending.size());
+        assertEquals("op1", pending.get(0).opId);
+    }
+}
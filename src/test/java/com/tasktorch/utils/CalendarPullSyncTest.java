@@ -0,0 +1,135 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.Priority;
+import com.tasktorch.models.Status;
+import com.tasktorch.models.Task;
+import com.tasktorch.models.TaskManager;
+import com.tasktorch.models.TaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarPullSyncTest {
+    private static final String EVENTS_PATH = "/calendar/v3/calendars/primary/events";
+
+    @TempDir
+    Path tempDir;
+
+    private FakeCalendarServer server;
+    private CalendarPullSync pullSync;
+    private Path stateFile;
+    private TaskRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeCalendarServer();
+        System.setProperty(CalendarApiClient.BASE_URL_PROPERTY, server.baseUrl());
+        CalendarApiClient client = new CalendarApiClient(CalendarApiClient.configuredBaseUri(), () -> "test-token");
+        stateFile = tempDir.resolve("calendar-sync.properties");
+        repository = new TaskRepository(new TaskManager(tempDir.resolve("data")));
+        CalendarSyncQueue queue = new CalendarSyncQueue(client, repository, () -> true, () -> { },
+            new CalendarOutbox(tempDir.resolve("calendar.outbox")));
+        pullSync = new CalendarPullSync(client, repository, queue, () -> true, stateFile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(CalendarApiClient.BASE_URL_PROPERTY);
+        server.close();
+        repository.shutdown();
+    }
+
+    private String addLinkedTask(String eventId) {
+        String taskId = "pull-" + UUID.randomUUID();
+        repository.addTask(new Task(taskId, "Essay", LocalDate.of(2025, 3, 10), "ENG", "",
+            Status.PENDING, Priority.HIGH, eventId));
+        return taskId;
+    }
+
+    private void writeSyncToken(String token) throws IOException {
+        Files.writeString(stateFile, "alice.syncToken=" + token + "\n", StandardCharsets.UTF_8);
+    }
+
+    private String storedSyncToken() throws IOException {
+        Properties state = new Properties();
+        try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+            state.load(reader);
+        }
+        return state.getProperty("alice.syncToken");
+    }
+
+    private static String event(String eventId, String summary, String date) {
+        return "{\"id\":\"" + eventId + "\",\"status\":\"confirmed\",\"summary\":\"" + summary
+            + "\",\"start\":{\"date\":\"" + date + "\"}}";
+    }
+
+    @Test
+    void expiredSyncTokenFallsBackToFullListing() throws Exception {
+        String eventId = "ev" + UUID.randomUUID().toString().replace("-", "");
+        String taskId = addLinkedTask(eventId);
+        writeSyncToken("expired");
+        server.setHandler(call -> {
+            if (call.uri.contains("syncToken=expired")) {
+                return FakeCalendarServer.Reply.json(410, "{\"error\":\"fullSyncRequired\"}");
+            }
+            if (!call.uri.contains("pageToken=")) {
+                return FakeCalendarServer.Reply.json(200, "{\"items\":[" + event(eventId, "ENG: Essay draft", "2025-03-12")
+                    + "],\"nextPageToken\":\"page2\"}");
+            }
+            return FakeCalendarServer.Reply.json(200, "{\"items\":[],\"nextSyncToken\":\"fresh\"}");
+        });
+
+        assertEquals(1, pullSync.pull("Alice"));
+
+        List<FakeCalendarServer.Call> calls = server.calls();
+        assertEquals(3, calls.size());
+        assertEquals(EVENTS_PATH + "?maxResults=250&syncToken=expired", calls.get(0).uri);
+        assertEquals(EVENTS_PATH + "?maxResults=250&showDeleted=true", calls.get(1).uri);
+        assertEquals(EVENTS_PATH + "?maxResults=250&showDeleted=true&pageToken=page2", calls.get(2).uri);
+        Task task = repository.getTaskSnapshot(taskId);
+        assertEquals("Essay draft", task.getTitle());
+        assertEquals(LocalDate.of(2025, 3, 12), task.getDueDate());
+        assertEquals("fresh", storedSyncToken());
+    }
+
+    @Test
+    void incrementalPullUnlinksCancelledEvents() throws Exception {
+        String eventId = "ev" + UUID.randomUUID().toString().replace("-", "");
+        String taskId = addLinkedTask(eventId);
+        writeSyncToken("current");
+        server.setHandler(call -> FakeCalendarServer.Reply.json(200, "{\"items\":[{\"id\":\"" + eventId
+            + "\",\"status\":\"cancelled\"}],\"nextSyncToken\":\"next\"}"));
+
+        assertEquals(1, pullSync.pull("alice"));
+
+        assertEquals(1, server.calls().size());
+        assertTrue(server.calls().get(0).uri.contains("syncToken=current"));
+        assertEquals("", repository.getTaskSnapshot(taskId).getGoogleCalendarEventId());
+        assertEquals("Essay", repository.getTaskSnapshot(taskId).getTitle());
+        assertEquals("next", storedSyncToken());
+    }
+
+    @Test
+    void failedListingKeepsSyncToken() throws Exception {
+        writeSyncToken("current");
+        server.setHandler(call -> FakeCalendarServer.Reply.json(500, "{\"error\":\"backendError\"}"));
+
+        assertThrows(IOException.class, () -> pullSync.pull("alice"));
+        assertEquals("current", storedSyncToken());
+    }
+}
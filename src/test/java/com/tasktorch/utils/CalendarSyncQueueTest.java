@@ -0,0 +1,177 @@
+package com.tasktorch.utils;
+
+import com.tasktorch.models.Priority;
+import com.tasktorch.models.Status;
+import com.tasktorch.models.Task;
+import com.tasktorch.models.TaskManager;
+import com.tasktorch.models.TaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarSyncQueueTest {
+    private static final long TIMEOUT_MS = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    private FakeCalendarServer server;
+    private CalendarApiClient client;
+    private TaskRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeCalendarServer();
+        System.setProperty(CalendarApiClient.BASE_URL_PROPERTY, server.baseUrl());
+        client = new CalendarApiClient(CalendarApiClient.configuredBaseUri(), () -> "test-token");
+        repository = new TaskRepository(new TaskManager(tempDir.resolve("data")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(CalendarApiClient.BASE_URL_PROPERTY);
+        server.close();
+        repository.shutdown();
+    }
+
+    private CalendarSyncQueue newQueue(BooleanSupplier connected) {
+        return new CalendarSyncQueue(client, repository, connected, () -> { },
+            new CalendarOutbox(tempDir.resolve("calendar.outbox")));
+    }
+
+    private List<String> outboxTaskIds() {
+        return new CalendarOutbox(tempDir.resolve("calendar.outbox")).replay().stream()
+            .map(entry -> entry.taskId).toList();
+    }
+
+    private String addTask() {
+        String taskId = "sync-" + UUID.randomUUID();
+        repository.addTask(new Task(taskId, "Lab report", LocalDate.of(2025, 4, 2), "CHEM", "",
+            Status.PENDING, Priority.MEDIUM));
+        return taskId;
+    }
+
+    private String eventId(String taskId) {
+        String eventId = repository.getTaskSnapshot(taskId).getGoogleCalendarEventId();
+        return eventId != null ? eventId : "";
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for the sync queue");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void retriesFailedBatchWithBackoffAndStoresEventIds() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        server.setHandler(call -> batches.incrementAndGet() == 1
+            ? FakeCalendarServer.Reply.json(503, "{\"error\":\"backendError\"}")
+            : FakeCalendarServer.batchReply(call, 200));
+        CalendarSyncQueue queue = newQueue(() -> true);
+        String first = addTask();
+        String second = addTask();
+
+        queue.enqueueUpsert(first);
+        queue.enqueueUpsert(second);
+        queue.enqueueUpsert(first); // Already queued; sent once
+        await(() -> !eventId(first).isEmpty() && !eventId(second).isEmpty());
+
+        List<FakeCalendarServer.Call> calls = server.calls();
+        assertEquals(2, calls.size());
+        for (FakeCalendarServer.Call call : calls) {
+            assertTrue(call.isBatch());
+            assertEquals(2, call.parts().size());
+        }
+        // Jittered backoff waits at least half of the one-second base delay
+        assertTrue(calls.get(1).receivedAt - calls.get(0).receivedAt >= 500);
+        // The retry reuses the client-side event ids, so a lost response can't duplicate events
+        assertEquals(calls.get(0).parts().get(0).body, calls.get(1).parts().get(0).body);
+        assertTrue(calls.get(1).parts().get(0).body.contains("\"id\":\"" + eventId(first) + "\""));
+        assertTrue(calls.get(1).parts().get(1).body.contains("\"id\":\"" + eventId(second) + "\""));
+        await(() -> queue.pendingCount() == 0 && !queue.hasPendingChange(first));
+    }
+
+    @Test
+    void permanentFailureIsNotRetried() throws Exception {
+        server.setHandler(call -> FakeCalendarServer.Reply.json(400, "{\"error\":\"invalid\"}"));
+        CalendarSyncQueue queue = newQueue(() -> true);
+        String taskId = addTask();
+
+        queue.enqueueUpsert(taskId);
+        // A retried operation goes back into the queue; an acknowledged one leaves it
+        await(() -> !server.calls().isEmpty() && !queue.hasPendingChange(taskId));
+
+        assertEquals(1, server.calls().size());
+        assertEquals("", eventId(taskId));
+    }
+
+    @Test
+    void rejectedCredentialsHoldOperationsUntilTokenChanges() throws Exception {
+        AtomicReference<String> token = new AtomicReference<>("expired");
+        AtomicInteger tokenReads = new AtomicInteger();
+        AtomicInteger invalidations = new AtomicInteger();
+        client = new CalendarApiClient(CalendarApiClient.configuredBaseUri(), () -> {
+            tokenReads.incrementAndGet();
+            return token.get();
+        });
+        server.setHandler(call -> "Bearer fresh".equals(call.authorization)
+            ? FakeCalendarServer.batchReply(call, 200)
+            : FakeCalendarServer.Reply.json(401, "{\"error\":\"authError\"}"));
+        CalendarSyncQueue queue = new CalendarSyncQueue(client, repository, () -> true,
+            invalidations::incrementAndGet, new CalendarOutbox(tempDir.resolve("calendar.outbox")));
+        String first = addTask();
+
+        queue.enqueueUpsert(first);
+        await(() -> invalidations.get() == 1);
+        // The next drain only looks at the token and sends nothing
+        int reads = tokenReads.get();
+        await(() -> tokenReads.get() > reads);
+
+        assertEquals(1, server.calls().size());
+        assertTrue(queue.hasPendingChange(first));
+        await(() -> outboxTaskIds().contains(first));
+
+        token.set("fresh");
+        String second = addTask();
+        queue.enqueueUpsert(second);
+        await(() -> !eventId(first).isEmpty() && !eventId(second).isEmpty());
+
+        List<FakeCalendarServer.Call> calls = server.calls();
+        assertEquals(2, calls.size());
+        assertEquals("Bearer fresh", calls.get(1).authorization);
+        assertEquals(2, calls.get(1).parts().size());
+        assertEquals(1, invalidations.get());
+        await(() -> queue.pendingCount() == 0 && outboxTaskIds().isEmpty());
+    }
+
+    @Test
+    void nothingIsQueuedWhileDisconnected() {
+        CalendarSyncQueue queue = newQueue(() -> false);
+        String taskId = addTask();
+
+        queue.enqueueUpsert(taskId);
+        queue.enqueueDelete(taskId, "ev1");
+
+        assertEquals(0, queue.pendingCount());
+        assertTrue(server.calls().isEmpty());
+        assertTrue(new CalendarOutbox(tempDir.resolve("calendar.outbox")).replay().isEmpty());
+    }
+}
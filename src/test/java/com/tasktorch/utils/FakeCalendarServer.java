@@ -0,0 +1,211 @@
+package com.tasktorch.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in of the Calendar API for tests, served by the JDK HttpServer.
+ * Every call is recorded, and the replies come from a handler the test sets.
+ */
+final class FakeCalendarServer implements AutoCloseable {
+    static final String BATCH_BOUNDARY = "batch_fake";
+
+    private final HttpServer server;
+    private final List<Call> calls = new ArrayList<>();
+    private volatile Function<Call, Reply> handler = call -> new Reply(404, "application/json", "{}");
+
+    /**
+     * One request received by the server.
+     */
+    static final class Call {
+        final String method;
+        final String uri;
+        final String authorization;
+        final String contentType;
+        final String body;
+        final long receivedAt;
+
+        Call(String method, String uri, String authorization, String contentType, String body) {
+            this.method = method;
+            this.uri = uri;
+            this.authorization = authorization;
+            this.contentType = contentType;
+            this.body = body;
+            this.receivedAt = System.currentTimeMillis();
+        }
+
+        boolean isBatch() {
+            return "POST".equals(method) && uri.equals("/batch/calendar/v3");
+        }
+
+        /**
+         * Split a batch request into its parts.
+         *
+         * @return Parts in the order they were sent
+         */
+        List<Part> parts() {
+            String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            List<Part> parts = new ArrayList<>();
+            for (String raw : body.split("--" + Pattern.quote(boundary))) {
+                int headersEnd = raw.indexOf("\r\n\r\n");
+                if (headersEnd < 0) {
+                    continue;
+                }
+                String contentId = null;
+                for (String header : raw.substring(0, headersEnd).split("\r\n")) {
+                    if (header.startsWith("Content-ID: ")) {
+                        contentId = header.substring("Content-ID: ".length());
+                    }
+                }
+                String http = raw.substring(headersEnd + 4);
+                String requestLine = http.substring(0, http.indexOf("\r\n"));
+                int bodyStart = http.indexOf("\r\n\r\n");
+                String partBody = bodyStart >= 0 ? http.substring(bodyStart + 4).trim() : "";
+                parts.add(new Part(contentId, requestLine, partBody));
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * One request inside a batch request.
+     */
+    static final class Part {
+        final String contentId;
+        final String requestLine;
+        final String body;
+
+        Part(String contentId, String requestLine, String body) {
+            this.contentId = contentId;
+            this.requestLine = requestLine;
+            this.body = body;
+        }
+
+        /**
+         * Get the Content-ID the response to this part must carry.
+         *
+         * @return e.g. "<response-item0>"
+         */
+        String responseId() {
+            return "<response-" + contentId.substring(1);
+        }
+    }
+
+    /**
+     * Status, content type and body sent back for a call.
+     */
+    static final class Reply {
+        final int status;
+        final String contentType;
+        final String body;
+
+        Reply(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Reply json(int status, String body) {
+            return new Reply(status, "application/json; charset=UTF-8", body);
+        }
+    }
+
+    FakeCalendarServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Get the base URL to configure through CalendarApiClient.BASE_URL_PROPERTY.
+     *
+     * @return e.g. http://127.0.0.1:41234
+     */
+    String baseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    void setHandler(Function<Call, Reply> handler) {
+        this.handler = handler;
+    }
+
+    List<Call> calls() {
+        synchronized (calls) {
+            return new ArrayList<>(calls);
+        }
+    }
+
+    /**
+     * Build a multipart batch response out of per-part statuses and bodies.
+     *
+     * @param contentIds Content-ID of each response part, e.g. "<response-item1>"
+     * @param statuses HTTP status of each part
+     * @param bodies JSON body of each part
+     * @return The reply
+     */
+    static Reply batchReply(List<String> contentIds, List<Integer> statuses, List<String> bodies) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < contentIds.size(); i++) {
+            sb.append("--").append(BATCH_BOUNDARY).append("\r\n");
+            sb.append("Content-Type: application/http\r\n");
+            sb.append("Content-ID: ").append(contentIds.get(i)).append("\r\n\r\n");
+            sb.append("HTTP/1.1 ").append(statuses.get(i)).append(" Status\r\n");
+            sb.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
+            sb.append(bodies.get(i)).append("\r\n");
+        }
+        sb.append("--").append(BATCH_BOUNDARY).append("--\r\n");
+        return new Reply(200, "multipart/mixed; boundary=" + BATCH_BOUNDARY, sb.toString());
+    }
+
+    /**
+     * Answer every part of a batch request with the same status.
+     *
+     * @param call Batch request
+     * @param status Status of each part
+     * @return The reply
+     */
+    static Reply batchReply(Call call, int status) {
+        List<String> contentIds = new ArrayList<>();
+        List<Integer> statuses = new ArrayList<>();
+        List<String> bodies = new ArrayList<>();
+        for (Part part : call.parts()) {
+            contentIds.add(part.responseId());
+            statuses.add(status);
+            bodies.add(part.body.isEmpty() ? "{}" : part.body);
+        }
+        return batchReply(contentIds, statuses, bodies);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Call call = new Call(exchange.getRequestMethod(), exchange.getRequestURI().toString(),
+            exchange.getRequestHeaders().getFirst("Authorization"),
+            exchange.getRequestHeaders().getFirst("Content-Type"), body);
+        synchronized (calls) {
+            calls.add(call);
+        }
+        Reply reply = handler.apply(call);
+        byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", reply.contentType);
+        exchange.sendResponseHeaders(reply.status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}